@@ -0,0 +1,88 @@
+#!/usr/bin/env bash
+# Cold-start comparison of the packaged application in the three ways it can be launched:
+#   jar      java -jar on the fat jar (the old image)
+#   aot      the extracted jar with the AOT-processed context
+#   aot+cds  the same plus the class-data-sharing archive from a training run (the production image)
+# For each it records the startup time Spring logs ("Started ... in N seconds") and the wall-clock
+# time from launching the JVM to the first successful HTTP response (the liveness probe), and
+# prints the median of RUNS launches. Build first with: ./mvnw -Paot -DskipTests package
+#
+# Environment: RUNS (default 5), PORT (default 18080), APP_ARGS (extra application arguments, e.g.
+# --spring.data.mongodb.uri=...; point it at a reachable Mongo so index creation is part of the
+# measurement, or pass --wishlist.mongo.create-indexes=false to leave Mongo out), JAVA (default java).
+# See docs/container-image.md.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${RUNS:-5}
+PORT=${PORT:-18080}
+APP_ARGS=${APP_ARGS:-}
+JAVA=${JAVA:-java}
+JAR=$(ls target/wishlist-backend-*.jar | grep -v plain | head -n 1)
+WORK=target/startup
+
+if [ ! -d target/spring-aot ]; then
+    echo "No AOT output in target/; build with ./mvnw -Paot -DskipTests package first" >&2
+    exit 1
+fi
+
+# Same layout as the container image: thin jar plus lib/, then a training run for the archive
+rm -rf "$WORK"
+"$JAVA" -Djarmode=tools -jar "$JAR" extract --destination "$WORK"
+EXTRACTED_JAR=$(basename "$JAR")
+(cd "$WORK" && "$JAVA" -XX:ArchiveClassesAtExit=app.jsa -Dspring.aot.enabled=true -Dspring.context.exit=onRefresh \
+    -jar "$EXTRACTED_JAR" $APP_ARGS > training.log 2>&1) || { cat "$WORK/training.log" >&2; exit 1; }
+
+now_ms() {
+    date +%s%3N
+}
+
+# Prints "<spring startup seconds> <ms to first response>" for one launch
+launch() {
+    local dir=$1
+    shift
+    local log
+    log=$(mktemp)
+    local start
+    start=$(now_ms)
+    (cd "$dir" && exec "$JAVA" "$@" --server.port="$PORT" $APP_ARGS) > "$log" 2>&1 &
+    local pid=$!
+    until curl -fs -o /dev/null "http://localhost:$PORT/actuator/health/liveness"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            cat "$log" >&2
+            echo "Application exited before answering" >&2
+            exit 1
+        fi
+        sleep 0.02
+    done
+    local first=$(( $(now_ms) - start ))
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    local started
+    started=$(grep -o 'Started WishlistBackendApplication in [0-9.]* seconds' "$log" | grep -o '[0-9.]*' | head -n 1)
+    rm -f "$log"
+    echo "${started:-?} $first"
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+measure() {
+    local name=$1
+    shift
+    local results=()
+    for _ in $(seq "$RUNS"); do
+        results+=("$(launch "$@")")
+    done
+    local started first
+    started=$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)
+    first=$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)
+    printf '%-8s  %10s  %14s\n' "$name" "${started}s" "${first}ms"
+}
+
+printf '%-8s  %10s  %14s\n' "mode" "started in" "first response"
+measure jar . -jar "$JAR"
+measure aot "$WORK" -Dspring.aot.enabled=true -jar "$EXTRACTED_JAR"
+measure aot+cds "$WORK" -XX:SharedArchiveFile=app.jsa -Dspring.aot.enabled=true -jar "$EXTRACTED_JAR"
+echo "Median of $RUNS launches each; JVM: $("$JAVA" -version 2>&1 | head -n 1)"
@@ -0,0 +1,84 @@
+package com.wishlistapp.benchmarks;
+
+import com.wishlistapp.benchmarks.support.ServiceFixture;
+import com.wishlistapp.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request token resolution (with and without the principal cache) and the BCrypt cost of a login
+ * at the configured strength and one step above it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+public class AuthBenchmark {
+
+    @State(Scope.Thread)
+    public static class TokenState {
+        @Param({"true", "false"})
+        private boolean principalCacheEnabled;
+
+        private ServiceFixture fixture;
+        private String token;
+
+        @Setup
+        public void setUp() {
+            fixture = new ServiceFixture(4, principalCacheEnabled);
+            fixture.registerUser("owner", "secret");
+            token = fixture.userService.loginUser("owner", "secret");
+        }
+
+        @TearDown
+        public void tearDown() {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LoginState {
+        @Param({"10", "12"})
+        private int bcryptStrength;
+
+        private ServiceFixture fixture;
+
+        @Setup
+        public void setUp() {
+            fixture = new ServiceFixture(bcryptStrength, true);
+            fixture.registerUser("owner", "secret");
+        }
+
+        @TearDown
+        public void tearDown() {
+            fixture.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Optional<User> getUserByToken(TokenState state) {
+        return state.fixture.userService.getUserByToken(state.token);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 5, time = 5)
+    public String login(LoginState state) {
+        return state.fixture.userService.loginUser("owner", "secret");
+    }
+}
@@ -0,0 +1,83 @@
+package com.wishlistapp.benchmarks;
+
+import com.wishlistapp.benchmarks.support.ServiceFixture;
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product add/update/remove through {@code WishlistService} on wishlists of increasing size. The store
+ * copies the whole document per call like the driver decodes it, so the numbers grow with the size of
+ * the embedded products array.
+ *
+ * <p>Adding on its own would grow the wishlist by one product per invocation, so add is measured
+ * together with the removal that restores the original size.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WishlistProductBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int productCount;
+
+    private ServiceFixture fixture;
+    private User owner;
+    private Wishlist wishlist;
+    private String middleProductId;
+    private Product changes;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        fixture = new ServiceFixture(4, true);
+        owner = fixture.registerUser("owner", "secret");
+        wishlist = fixture.createWishlist(owner, productCount);
+        middleProductId = wishlist.getProducts().get(productCount / 2).getId();
+        changes = ServiceFixture.product(owner, -1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Optional<Wishlist> addThenRemoveProduct() {
+        Product product = ServiceFixture.product(owner, counter++);
+        fixture.wishlistService.addProductToWishlist(wishlist, product, owner);
+        return fixture.wishlistService.removeProductFromWishlist(wishlist, product.getId());
+    }
+
+    @Benchmark
+    public Optional<Wishlist> updateProduct() {
+        changes.setPrice(counter++ % 100);
+        return fixture.wishlistService.updateProductInWishlist(wishlist, middleProductId, changes);
+    }
+
+    @Benchmark
+    public Optional<Wishlist> updateProductWithIfMatch() {
+        // The If-Match path: read the current version, then a conditional write
+        long version = fixture.wishlistService.getWishlistVersionForMember(wishlist.getId(), owner.getId()).orElseThrow();
+        changes.setPrice(counter++ % 100);
+        return fixture.wishlistService.updateProductInWishlist(wishlist, middleProductId, changes, version);
+    }
+}
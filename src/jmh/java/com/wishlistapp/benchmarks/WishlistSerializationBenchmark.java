@@ -0,0 +1,94 @@
+package com.wishlistapp.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wishlistapp.benchmarks.support.ServiceFixture;
+import com.wishlistapp.controllers.SparseFieldsets;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /api/wishlists}: loading the caller's wishlists and writing them as JSON with an
+ * {@link ObjectMapper} configured the way Spring MVC configures its own, as JSON, as CBOR and with a
+ * {@code fields=} selection. The summary view is measured alongside for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WishlistSerializationBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int wishlistCount;
+
+    @Param({"10", "100", "1000"})
+    private int productsPerWishlist;
+
+    private ServiceFixture fixture;
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private SparseFieldsets cardFields;
+    private String userId;
+
+    @Setup
+    public void setUp() {
+        fixture = new ServiceFixture(4, true);
+        objectMapper = SparseFieldsets.register(Jackson2ObjectMapperBuilder.json()).build();
+        cborMapper = SparseFieldsets.register(Jackson2ObjectMapperBuilder.cbor()).build();
+        cardFields = SparseFieldsets.parse("title,productCount,products.name,products.price,products.imageUrl");
+        User owner = fixture.registerUser("owner", "secret");
+        for (int i = 0; i < wishlistCount; i++) {
+            fixture.createWishlist(owner, productsPerWishlist);
+        }
+        userId = owner.getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public List<Wishlist> getUserWishlists() {
+        return fixture.wishlistService.getUserWishlists(userId);
+    }
+
+    @Benchmark
+    public byte[] getUserWishlistsAsJson() throws Exception {
+        return objectMapper.writeValueAsBytes(fixture.wishlistService.getUserWishlists(userId));
+    }
+
+    @Benchmark
+    public byte[] getUserWishlistsAsCbor() throws Exception {
+        return cborMapper.writeValueAsBytes(fixture.wishlistService.getUserWishlists(userId));
+    }
+
+    // ?fields=title,productCount,products.name,products.price,products.imageUrl
+    @Benchmark
+    public byte[] getUserWishlistsAsSparseJson() throws Exception {
+        return objectMapper.writer(cardFields.filters())
+                .writeValueAsBytes(fixture.wishlistService.getUserWishlists(userId, cardFields.projection()));
+    }
+
+    @Benchmark
+    public byte[] getUserWishlistSummariesAsJson() throws Exception {
+        return objectMapper.writeValueAsBytes(fixture.wishlistService.getUserWishlistSummaries(userId, null, null));
+    }
+}
@@ -0,0 +1,69 @@
+package com.wishlistapp.benchmarks.support;
+
+import com.wishlistapp.repositories.UserRepository;
+import com.wishlistapp.repositories.WishlistRepository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mongo-free stand-ins for the repository interfaces. Each call is routed to the store method with the
+ * same name and parameters; anything the store doesn't implement throws
+ * {@link UnsupportedOperationException}, so a benchmark that wanders onto an unmodelled query fails loudly
+ * instead of measuring nothing.
+ */
+public final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    public static WishlistRepository wishlists(InMemoryWishlistStore store) {
+        return proxy(WishlistRepository.class, store);
+    }
+
+    public static UserRepository users(InMemoryUserStore store) {
+        return proxy(UserRepository.class, store);
+    }
+
+    private static <R> R proxy(Class<R> repositoryType, Object store) {
+        Map<Method, Method> targets = new ConcurrentHashMap<>();
+        Object proxy = Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> self == args[0];
+                    case "hashCode" -> System.identityHashCode(self);
+                    default -> repositoryType.getSimpleName() + " backed by " + store;
+                };
+            }
+            Method target = targets.computeIfAbsent(method, m -> resolve(store, m));
+            if (target == null) {
+                throw new UnsupportedOperationException(repositoryType.getSimpleName() + "." + method.getName()
+                        + " is not modelled by the in-memory store");
+            }
+            try {
+                return target.invoke(store, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        return repositoryType.cast(proxy);
+    }
+
+    private static Method resolve(Object store, Method method) {
+        try {
+            return store.getClass().getMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            // Inherited CRUD methods erase their generics to Object (save(S), findById(ID)), so fall back
+            // to name and arity; the stores avoid same-arity overloads to keep this unambiguous
+            return Arrays.stream(store.getClass().getMethods())
+                    .filter(candidate -> candidate.getName().equals(method.getName())
+                            && candidate.getParameterCount() == method.getParameterCount())
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.wishlistapp.benchmarks.support;
+
+import com.wishlistapp.models.User;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory model of the users collection, including the unique email and username indexes that
+ * {@code UserService.registerUser} relies on to reject duplicates.
+ */
+public class InMemoryUserStore {
+
+    private final Map<String, User> documents = new ConcurrentHashMap<>();
+
+    public synchronized User insert(User user) {
+        if (user.getId() == null) {
+            user.setId(UUID.randomUUID().toString());
+        }
+        boolean clash = documents.values().stream().anyMatch(existing ->
+                existing.getId().equals(user.getId())
+                        || existing.getEmail().equals(user.getEmail())
+                        || existing.getUsername().equals(user.getUsername()));
+        if (clash) {
+            throw new DuplicateKeyException("E11000 duplicate key error collection: users");
+        }
+        documents.put(user.getId(), copy(user));
+        return user;
+    }
+
+    public User save(User user) {
+        if (user.getId() == null) {
+            return insert(user);
+        }
+        documents.put(user.getId(), copy(user));
+        return user;
+    }
+
+    public Optional<User> findById(String id) {
+        return Optional.ofNullable(documents.get(id)).map(InMemoryUserStore::copy);
+    }
+
+    public boolean existsById(String id) {
+        return documents.containsKey(id);
+    }
+
+    public long count() {
+        return documents.size();
+    }
+
+    public void deleteAll() {
+        documents.clear();
+    }
+
+    public Optional<User> findByEmail(String email) {
+        return documents.values().stream().filter(u -> email.equals(u.getEmail())).findFirst().map(InMemoryUserStore::copy);
+    }
+
+    public Optional<User> findByUsername(String username) {
+        return documents.values().stream().filter(u -> username.equals(u.getUsername())).findFirst().map(InMemoryUserStore::copy);
+    }
+
+    public List<User> findTop2ByEmailOrUsername(String email, String username) {
+        return documents.values().stream()
+                .filter(u -> email.equals(u.getEmail()) || username.equals(u.getUsername()))
+                .limit(2)
+                .map(InMemoryUserStore::copy)
+                .toList();
+    }
+
+    public List<User> findByEmailIn(Collection<String> emails) {
+        return documents.values().stream().filter(u -> emails.contains(u.getEmail())).map(InMemoryUserStore::copy).toList();
+    }
+
+    private static User copy(User source) {
+        User copy = new User();
+        copy.setId(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setEmail(source.getEmail());
+        copy.setPasswordHash(source.getPasswordHash());
+        return copy;
+    }
+}
@@ -0,0 +1,328 @@
+package com.wishlistapp.benchmarks.support;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistSummary;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.AddedCollaborators;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ProductChanges;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ReconcileBatch;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory model of the wishlists collection with the same semantics as the Mongo repository:
+ * every mutation is atomic per document and bumps {@code version}, and a non-null expected version
+ * makes it conditional.
+ *
+ * <p>Documents are copied on the way in and out, like the driver encoding and decoding them, so a
+ * caller can never mutate stored state and the cost of large embedded product arrays stays visible.</p>
+ */
+public class InMemoryWishlistStore {
+
+    private final Map<String, Wishlist> documents = new ConcurrentHashMap<>();
+
+    public Wishlist save(Wishlist wishlist) {
+        if (wishlist.getId() == null) {
+            wishlist.setId(UUID.randomUUID().toString());
+        }
+        Wishlist stored = copy(wishlist);
+        stored.recomputeAggregates();
+        documents.put(wishlist.getId(), stored);
+        return wishlist;
+    }
+
+    public Wishlist insert(Wishlist wishlist) {
+        return save(wishlist);
+    }
+
+    public Optional<Wishlist> findById(String id) {
+        return Optional.ofNullable(documents.get(id)).map(InMemoryWishlistStore::copy);
+    }
+
+    public boolean existsById(String id) {
+        return documents.containsKey(id);
+    }
+
+    public long count() {
+        return documents.size();
+    }
+
+    public void deleteAll() {
+        documents.clear();
+    }
+
+    public List<Wishlist> findByOwnerIdOrCollaboratorIdsContaining(String ownerId, String collaboratorId) {
+        return documents.values().stream()
+                .filter(w -> ownerId.equals(w.getOwnerId()) || w.getCollaboratorIds().contains(collaboratorId))
+                .map(InMemoryWishlistStore::copy)
+                .toList();
+    }
+
+    // Whole copies: the projection only saves decoding, and the response filter drops the rest anyway
+    public List<Wishlist> findForMember(String userId, Collection<String> fields) {
+        return findByOwnerIdOrCollaboratorIdsContaining(userId, userId);
+    }
+
+    public Optional<Wishlist> findByIdForMember(String id, String userId) {
+        return Optional.ofNullable(documents.get(id)).filter(w -> isMember(w, userId)).map(InMemoryWishlistStore::copy);
+    }
+
+    public Optional<Wishlist> findByIdAndOwnerId(String id, String ownerId) {
+        return Optional.ofNullable(documents.get(id)).filter(w -> ownerId.equals(w.getOwnerId())).map(InMemoryWishlistStore::copy);
+    }
+
+    public Optional<Wishlist> findVersionForMember(String id, String userId) {
+        return Optional.ofNullable(documents.get(id)).filter(w -> isMember(w, userId)).map(InMemoryWishlistStore::versionOnly);
+    }
+
+    public List<Wishlist> findVersionsForMember(String userId) {
+        return documents.values().stream()
+                .filter(w -> isMember(w, userId))
+                .map(InMemoryWishlistStore::versionOnly)
+                .toList();
+    }
+
+    public long removeById(String id) {
+        return documents.remove(id) != null ? 1 : 0;
+    }
+
+    public long removeByIdAndVersion(String id, long version) {
+        AtomicBoolean removed = new AtomicBoolean();
+        documents.computeIfPresent(id, (key, stored) -> {
+            if (stored.getVersion() != version) {
+                return stored;
+            }
+            removed.set(true);
+            return null;
+        });
+        return removed.get() ? 1 : 0;
+    }
+
+    public List<WishlistSummary> findSummariesForMember(String userId, String afterId, int limit) {
+        return documents.values().stream()
+                .filter(w -> isMember(w, userId) && (afterId == null || w.getId().compareTo(afterId) > 0))
+                .sorted(Comparator.comparing(Wishlist::getId))
+                .limit(limit)
+                .map(w -> {
+                    WishlistSummary summary = new WishlistSummary();
+                    summary.setId(w.getId());
+                    summary.setTitle(w.getTitle());
+                    summary.setOwnerId(w.getOwnerId());
+                    summary.setOwnerUsername(w.getOwnerUsername());
+                    summary.setProductCount(w.getProductCount());
+                    summary.setTotalPrice(w.getTotalPrice());
+                    summary.setMinPrice(w.getMinPrice());
+                    summary.setMaxPrice(w.getMaxPrice());
+                    return summary;
+                })
+                .toList();
+    }
+
+    public List<WishlistSummary> findSummariesForMember(String userId) {
+        return findSummariesForMember(userId, null, Integer.MAX_VALUE);
+    }
+
+    // Aggregates here are recomputed by every mutation, so there is never anything to repair
+    public ReconcileBatch reconcileAggregates(String afterId, int limit) {
+        List<String> ids = documents.keySet().stream().filter(id -> afterId == null || id.compareTo(afterId) > 0).sorted().limit(limit).toList();
+        return new ReconcileBatch(ids.isEmpty() ? null : ids.get(ids.size() - 1), ids.size(), List.of());
+    }
+
+    public ProductPage findProductsPage(String wishlistId, String cursor, int limit) {
+        Wishlist stored = documents.get(wishlistId);
+        if (stored == null) {
+            return new ProductPage(List.of(), null);
+        }
+        List<Product> products = List.copyOf(stored.getProducts());
+        int offset = cursor != null ? Integer.parseInt(cursor) : 0;
+        List<Product> page = products.stream().skip(offset).limit(limit).map(InMemoryWishlistStore::copy).toList();
+        return new ProductPage(page, offset + limit < products.size() ? String.valueOf(offset + limit) : null);
+    }
+
+    public Optional<Product> findProduct(String wishlistId, String productId) {
+        return Optional.ofNullable(documents.get(wishlistId))
+                .flatMap(w -> w.getProducts().stream().filter(p -> productId.equals(p.getId())).findFirst())
+                .map(InMemoryWishlistStore::copy);
+    }
+
+    // Only the layout marker changes here; like the real migration it leaves the version alone
+    public Optional<Wishlist> migrateProductsToCollection(String wishlistId) {
+        return Optional.ofNullable(documents.computeIfPresent(wishlistId, (id, stored) -> {
+            Wishlist migrated = copy(stored);
+            migrated.setProductStorage(ProductStorage.COLLECTION);
+            return migrated;
+        })).map(InMemoryWishlistStore::copy);
+    }
+
+    public void deleteProducts(String wishlistId) {
+        // Products only ever live in the documents here
+    }
+
+    public Optional<Wishlist> updateDetails(String wishlistId, String title, String description, List<String> collaboratorIds, Long expectedVersion) {
+        return modify(wishlistId, expectedVersion, stored -> {
+            stored.setTitle(title);
+            stored.setDescription(description);
+            stored.setCollaboratorIds(new ArrayList<>(collaboratorIds));
+            return stored;
+        });
+    }
+
+    public Optional<AddedCollaborators> addCollaborators(String wishlistId, String ownerId, Collection<String> userIds) {
+        Wishlist stored = documents.get(wishlistId);
+        if (stored == null || !ownerId.equals(stored.getOwnerId())) {
+            return Optional.empty();
+        }
+        List<String> addedIds = new ArrayList<>();
+        Optional<Wishlist> updated = modify(wishlistId, null, wishlist -> {
+            addedIds.clear();
+            userIds.stream().filter(userId -> !wishlist.getCollaboratorIds().contains(userId)).forEach(addedIds::add);
+            wishlist.getCollaboratorIds().addAll(addedIds);
+            return addedIds.isEmpty() ? null : wishlist;
+        });
+        return Optional.of(new AddedCollaborators(updated.orElseGet(() -> copy(stored)), List.copyOf(addedIds)));
+    }
+
+    public Optional<Wishlist> pushProduct(String wishlistId, Product product, Long expectedVersion) {
+        return modify(wishlistId, expectedVersion, stored -> {
+            stored.getProducts().add(copy(product));
+            return stored;
+        });
+    }
+
+    public Optional<Wishlist> setProductFields(String wishlistId, String productId, Product changes, LocalDateTime editedAt, Long expectedVersion) {
+        return modify(wishlistId, expectedVersion, stored -> {
+            Optional<Product> target = stored.getProducts().stream().filter(p -> productId.equals(p.getId())).findFirst();
+            if (target.isEmpty()) {
+                return null;
+            }
+            target.get().setName(changes.getName());
+            target.get().setImageUrl(changes.getImageUrl());
+            target.get().setPrice(changes.getPrice());
+            target.get().setLastEditedAt(editedAt);
+            return stored;
+        });
+    }
+
+    public Optional<Wishlist> setProductFields(String wishlistId, Map<String, Product> changesByProductId) {
+        return modify(wishlistId, null, stored -> {
+            boolean matched = false;
+            for (Product product : stored.getProducts()) {
+                Product changes = changesByProductId.get(product.getId());
+                if (changes != null) {
+                    product.setName(changes.getName());
+                    product.setImageUrl(changes.getImageUrl());
+                    product.setPrice(changes.getPrice());
+                    product.setLastEditedAt(changes.getLastEditedAt());
+                    matched = true;
+                }
+            }
+            return matched ? stored : null;
+        });
+    }
+
+    public Optional<Wishlist> pullProduct(String wishlistId, String productId, Long expectedVersion) {
+        return modify(wishlistId, expectedVersion, stored -> stored.getProducts().removeIf(p -> productId.equals(p.getId())) ? stored : null);
+    }
+
+    public Optional<Wishlist> applyProductChanges(String wishlistId, ProductChanges changes, Long expectedVersion) {
+        return modify(wishlistId, expectedVersion, stored -> {
+            stored.getProducts().removeIf(p -> changes.removedIds().contains(p.getId()));
+            for (Product product : stored.getProducts()) {
+                Product edit = changes.edits().get(product.getId());
+                if (edit != null) {
+                    product.setName(edit.getName());
+                    product.setImageUrl(edit.getImageUrl());
+                    product.setPrice(edit.getPrice());
+                    product.setLastEditedAt(edit.getLastEditedAt());
+                }
+            }
+            changes.added().forEach(product -> stored.getProducts().add(copy(product)));
+            return stored;
+        });
+    }
+
+    // Applies the change to a private copy and swaps it in; a null result from the change means "no match"
+    private Optional<Wishlist> modify(String wishlistId, Long expectedVersion, UnaryOperator<Wishlist> change) {
+        Wishlist[] result = new Wishlist[1];
+        boolean[] stale = new boolean[1];
+        documents.computeIfPresent(wishlistId, (id, stored) -> {
+            if (expectedVersion != null && stored.getVersion() != expectedVersion) {
+                stale[0] = true;
+                return stored;
+            }
+            Wishlist updated = change.apply(copy(stored));
+            if (updated == null) {
+                return stored;
+            }
+            updated.setVersion(stored.getVersion() + 1);
+            updated.recomputeAggregates();
+            result[0] = updated;
+            return updated;
+        });
+        if (stale[0]) {
+            throw new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion);
+        }
+        return Optional.ofNullable(result[0]).map(InMemoryWishlistStore::copy);
+    }
+
+    private static boolean isMember(Wishlist wishlist, String userId) {
+        return userId.equals(wishlist.getOwnerId()) || wishlist.getCollaboratorIds().contains(userId);
+    }
+
+    private static Wishlist versionOnly(Wishlist stored) {
+        Wishlist projected = new Wishlist();
+        projected.setId(stored.getId());
+        projected.setVersion(stored.getVersion());
+        projected.setCollaboratorIds(null);
+        projected.setProducts(null);
+        return projected;
+    }
+
+    static Wishlist copy(Wishlist source) {
+        Wishlist copy = new Wishlist();
+        copy.setId(source.getId());
+        copy.setTitle(source.getTitle());
+        copy.setDescription(source.getDescription());
+        copy.setOwnerId(source.getOwnerId());
+        copy.setOwnerUsername(source.getOwnerUsername());
+        copy.setCollaboratorIds(source.getCollaboratorIds() == null ? new ArrayList<>() : new ArrayList<>(source.getCollaboratorIds()));
+        List<Product> products = new ArrayList<>(source.getProducts() == null ? 0 : source.getProducts().size() + 1);
+        if (source.getProducts() != null) {
+            source.getProducts().forEach(product -> products.add(copy(product)));
+        }
+        copy.setProducts(products);
+        copy.setVersion(source.getVersion());
+        copy.setProductCount(source.getProductCount());
+        copy.setTotalPrice(source.getTotalPrice());
+        copy.setMinPrice(source.getMinPrice());
+        copy.setMaxPrice(source.getMaxPrice());
+        copy.setProductStorage(source.getProductStorage());
+        return copy;
+    }
+
+    static Product copy(Product source) {
+        Product copy = new Product();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setPrice(source.getPrice());
+        copy.setAddedByUserId(source.getAddedByUserId());
+        copy.setAddedByUsername(source.getAddedByUsername());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setLastEditedAt(source.getLastEditedAt());
+        return copy;
+    }
+}
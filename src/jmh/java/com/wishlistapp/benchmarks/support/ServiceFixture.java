@@ -0,0 +1,102 @@
+package com.wishlistapp.benchmarks.support;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.services.InMemoryWishlistEventBus;
+import com.wishlistapp.services.PasswordHashingService;
+import com.wishlistapp.services.PrincipalCache;
+import com.wishlistapp.services.UserService;
+import com.wishlistapp.services.WishlistCache;
+import com.wishlistapp.services.WishlistService;
+import com.wishlistapp.services.WishlistWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The services wired the way the application context wires them, minus Spring and Mongo: field
+ * injection is replayed reflectively and the repositories are the in-memory stand-ins.
+ */
+public class ServiceFixture implements AutoCloseable {
+
+    public final InMemoryWishlistStore wishlistStore = new InMemoryWishlistStore();
+    public final InMemoryUserStore userStore = new InMemoryUserStore();
+    public final PrincipalCache principalCache;
+    public final PasswordHashingService passwordHashingService;
+    public final WishlistCache wishlistCache;
+    public final WishlistService wishlistService = new WishlistService();
+    public final UserService userService = new UserService();
+
+    public ServiceFixture(int bcryptStrength, boolean principalCacheEnabled) {
+        this(bcryptStrength, principalCacheEnabled, true);
+    }
+
+    public ServiceFixture(int bcryptStrength, boolean principalCacheEnabled, boolean wishlistCacheEnabled) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.principalCache = new PrincipalCache(principalCacheEnabled, 10_000, Duration.ofMinutes(5));
+        this.passwordHashingService = new PasswordHashingService(new BCryptPasswordEncoder(bcryptStrength), meterRegistry,
+                bcryptStrength, 0, 64, Duration.ofSeconds(30));
+
+        ReflectionTestUtils.setField(wishlistService, "wishlistRepository", InMemoryRepositories.wishlists(wishlistStore));
+        ReflectionTestUtils.setField(wishlistService, "userRepository", InMemoryRepositories.users(userStore));
+        InMemoryWishlistEventBus eventBus = new InMemoryWishlistEventBus();
+        ReflectionTestUtils.setField(wishlistService, "eventBus", eventBus);
+        this.wishlistCache = new WishlistCache(eventBus, wishlistCacheEnabled, 200_000, Duration.ofMinutes(5));
+        wishlistCache.start();
+        ReflectionTestUtils.setField(wishlistService, "wishlistCache", wishlistCache);
+        ReflectionTestUtils.setField(wishlistService, "writeBuffer", new WishlistWriteBuffer(InMemoryRepositories.wishlists(wishlistStore),
+                eventBus, wishlistCache, meterRegistry, false, Duration.ofMillis(250), 10_000));
+        ReflectionTestUtils.setField(wishlistService, "defaultSummaryPageSize", 50);
+        ReflectionTestUtils.setField(wishlistService, "maxSummaryPageSize", 200);
+        ReflectionTestUtils.setField(wishlistService, "defaultProductPageSize", 50);
+        ReflectionTestUtils.setField(wishlistService, "maxProductPageSize", 200);
+        ReflectionTestUtils.setField(wishlistService, "newWishlistStorage", ProductStorage.EMBEDDED);
+
+        ReflectionTestUtils.setField(userService, "userRepository", InMemoryRepositories.users(userStore));
+        ReflectionTestUtils.setField(userService, "passwordHashingService", passwordHashingService);
+        ReflectionTestUtils.setField(userService, "principalCache", principalCache);
+    }
+
+    // Registers through UserService so the stored hash is a real BCrypt hash at the configured strength
+    public User registerUser(String username, String password) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash(password);
+        return userService.registerUser(user).orElseThrow();
+    }
+
+    public Wishlist createWishlist(User owner, int productCount) {
+        Wishlist wishlist = new Wishlist();
+        wishlist.setTitle("Wishlist of " + owner.getUsername());
+        wishlist.setDescription("Benchmark fixture");
+        for (int i = 0; i < productCount; i++) {
+            wishlist.getProducts().add(product(owner, i));
+        }
+        return wishlistService.createWishlist(wishlist, owner.getId());
+    }
+
+    public static Product product(User addedBy, int index) {
+        Product product = new Product();
+        product.setId(UUID.randomUUID().toString());
+        product.setName("Product " + index);
+        product.setImageUrl("https://img.example.com/products/" + index + ".jpg");
+        product.setPrice(10 + index % 90);
+        product.setAddedByUserId(addedBy.getId());
+        product.setAddedByUsername(addedBy.getUsername());
+        product.setCreatedAt(LocalDateTime.now());
+        product.setLastEditedAt(product.getCreatedAt());
+        return product;
+    }
+
+    @Override
+    public void close() {
+        passwordHashingService.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.wishlistapp.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram and response status counts for one endpoint; safe to record from any worker
+final class EndpointStats {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Histogram latencies = new ConcurrentHistogram(MAX_TRACKABLE_NANOS, 3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    void record(long elapsedNanos, int status) {
+        latencies.recordValue(Math.min(elapsedNanos, MAX_TRACKABLE_NANOS));
+        statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+    }
+
+    long count() {
+        return latencies.getTotalCount();
+    }
+
+    double percentileMillis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    double maxMillis() {
+        return latencies.getMaxValue() / 1_000_000.0;
+    }
+
+    // Status 0 stands for requests that never got a response (I/O errors, timeouts)
+    Map<Integer, Long> statuses() {
+        Map<Integer, Long> snapshot = new TreeMap<>();
+        statuses.forEach((status, count) -> snapshot.put(status, count.sum()));
+        return snapshot;
+    }
+
+    void reset() {
+        latencies.reset();
+        statuses.clear();
+    }
+}
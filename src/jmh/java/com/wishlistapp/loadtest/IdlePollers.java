@@ -0,0 +1,328 @@
+package com.wishlistapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Many mostly idle dashboard clients against an app started on its own: every poller holds one
+ * keep-alive connection and sends {@code GET /api/wishlists?view=summary} on it once per interval.
+ * Meant for comparing the servlet and reactive stacks (docs/reactive.md). With {@code --server-pid}
+ * it samples that process's thread count and RSS from /proc (Linux) once a second and reports the peaks.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec@idlepollers -Didlepollers.options="--connections=1000 --server-pid=1234"
+ * </pre>
+ *
+ * <p>Options: {@code --base-url} (http://localhost:8080), {@code --connections} (1000), {@code --interval}
+ * (5 s), {@code --duration} (60 s, measured after one interval of ramp-up while the connections open),
+ * {@code --users} (20, each owning {@code --wishlists} (5) of {@code --products} (20)), {@code --server-pid}.
+ * Pollers run on virtual threads with plain blocking sockets, so the client side costs next to nothing per
+ * connection. When the server has closed an idle connection, the poll is retried once on a new one, as
+ * HTTP clients do; the report counts the connections opened.</p>
+ */
+public final class IdlePollers {
+
+    private static final String PASSWORD = "idle-pollers-password";
+    private static final String PATH = "/api/wishlists?view=summary";
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final URI baseUrl;
+    private final Map<String, String> options;
+    private final EndpointStats stats = new EndpointStats();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean measuring;
+
+    private IdlePollers(Map<String, String> options) {
+        this.options = options;
+        this.baseUrl = URI.create(options.getOrDefault("base-url", "http://localhost:8080"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        List<String> known = List.of("base-url", "connections", "interval", "duration", "users", "wishlists", "products", "server-pid");
+        if (!known.containsAll(options.keySet())) {
+            throw new IllegalArgumentException("Unknown options; expected some of " + known);
+        }
+        new IdlePollers(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int connections = intOption("connections", 1000);
+        Duration interval = Duration.ofSeconds(intOption("interval", 5));
+        Duration duration = Duration.ofSeconds(intOption("duration", 60));
+        List<String> tokens = seed(intOption("users", 20), intOption("wishlists", 5), intOption("products", 20));
+
+        System.out.printf("Opening %d connections polling every %ds, measuring for %ds after %ds of ramp-up%n",
+                connections, interval.toSeconds(), duration.toSeconds(), interval.toSeconds());
+        long start = System.nanoTime();
+        long measureStart = start + interval.toNanos();
+        long end = measureStart + duration.toNanos();
+        try (ExecutorService pollers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                // Spread over the interval, so the requests arrive evenly rather than in bursts
+                long firstPoll = start + interval.toNanos() * i / connections;
+                String token = tokens.get(i % tokens.size());
+                pollers.execute(() -> poll(token, firstPoll, interval.toNanos(), end));
+            }
+            sleepUntil(measureStart);
+            stats.reset();
+            errors.set(0);
+            measuring = true;
+            Map<String, Long> peaks = sampleServer(end);
+            measuring = false;
+            report(connections, duration, peaks);
+        }
+    }
+
+    private void poll(String token, long firstPoll, long intervalNanos, long end) {
+        byte[] request = ("GET " + PATH + " HTTP/1.1\r\nHost: " + baseUrl.getHost() + "\r\nAccept: application/json\r\n"
+                + "Authorization: Bearer " + token + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        Connection connection = null;
+        try {
+            for (long next = firstPoll; next < end; next += intervalNanos) {
+                sleepUntil(next);
+                long sent = System.nanoTime();
+                int status = 0;
+                try {
+                    if (connection != null) {
+                        try {
+                            status = connection.exchange(request);
+                        } catch (IOException e) {
+                            // The server may close a keep-alive connection while it sits idle; like any HTTP
+                            // client, retry the GET once on a fresh connection
+                            connection.close();
+                            connection = null;
+                        }
+                    }
+                    if (connection == null) {
+                        connection = connect();
+                        status = connection.exchange(request);
+                    }
+                    if (connection.closeRequested) {
+                        connection.close();
+                        connection = null;
+                    }
+                } catch (IOException e) {
+                    if (connection != null) {
+                        connection.close();
+                        connection = null; // Reconnects on the next poll
+                    }
+                } finally {
+                    if (measuring) {
+                        stats.record(System.nanoTime() - sent, status);
+                        if (status != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private Connection connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(baseUrl.getHost(), baseUrl.getPort()), 30_000);
+            socket.setSoTimeout(30_000);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        open.incrementAndGet();
+        return new Connection(socket);
+    }
+
+    // One keep-alive connection: sends a request and reads the response, handling Content-Length and chunked bodies
+    private static final class Connection {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        // The server answered with Connection: close
+        private boolean closeRequested;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        int exchange(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+            int status = Integer.parseInt(readLine(in).split(" ")[1]);
+            long contentLength = -1;
+            boolean chunked = false;
+            for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+                String name = header.substring(0, header.indexOf(':')).trim().toLowerCase();
+                String value = header.substring(header.indexOf(':') + 1).trim();
+                if (name.equals("content-length")) {
+                    contentLength = Long.parseLong(value);
+                } else if (name.equals("transfer-encoding") && value.equalsIgnoreCase("chunked")) {
+                    chunked = true;
+                } else if (name.equals("connection") && value.equalsIgnoreCase("close")) {
+                    closeRequested = true;
+                }
+            }
+            if (chunked) {
+                for (long size = chunkSize(in); size > 0; size = chunkSize(in)) {
+                    in.skipNBytes(size);
+                    readLine(in);
+                }
+                readLine(in); // The empty trailer
+            } else if (contentLength > 0) {
+                in.skipNBytes(contentLength);
+            }
+            return status;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
+        }
+    }
+
+    private static long chunkSize(InputStream in) throws IOException {
+        return Long.parseLong(readLine(in).split(";")[0].trim(), 16);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    // Peak thread count and RSS of the server until the end of the run; empty without a PID
+    private Map<String, Long> sampleServer(long end) throws InterruptedException {
+        Map<String, Long> peaks = new HashMap<>();
+        String pid = options.get("server-pid");
+        while (System.nanoTime() < end) {
+            if (pid != null) {
+                try {
+                    for (String line : Files.readAllLines(Path.of("/proc", pid, "status"))) {
+                        if (line.startsWith("Threads:") || line.startsWith("VmRSS:")) {
+                            String key = line.substring(0, line.indexOf(':'));
+                            long value = Long.parseLong(line.substring(line.indexOf(':') + 1).replace("kB", "").trim());
+                            peaks.merge(key, value, Math::max);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            Thread.sleep(1000);
+        }
+        return peaks;
+    }
+
+    private void report(int connections, Duration duration, Map<String, Long> peaks) {
+        System.out.printf("%nConnections opened: %d for %d pollers (more means reconnects)%n", open.get(), connections);
+        System.out.printf("Polls: %d (%.1f/s), errors: %d, statuses: %s%n", stats.count(), stats.count() / (double) duration.toSeconds(),
+                errors.get(), stats.statuses());
+        System.out.printf("Latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f%n", stats.percentileMillis(50), stats.percentileMillis(99),
+                stats.percentileMillis(99.9), stats.maxMillis());
+        if (!peaks.isEmpty()) {
+            System.out.printf("Server peak: %d threads, %d MB RSS%n", peaks.get("Threads"), peaks.get("VmRSS") / 1024);
+        }
+    }
+
+    // ---- Seeding through the public API: users, each owning a few wishlists of products
+
+    private List<String> seed(int users, int wishlists, int products) throws Exception {
+        System.out.printf("Seeding %d users with %d wishlists of %d products each%n", users, wishlists, products);
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        List<String> tokens = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            String username = "poller-" + runId + "-" + u;
+            send("/api/auth/signup", null, Map.of("username", username, "email", username + "@load.test", "passwordHash", PASSWORD));
+            String token = send("/api/auth/login", null, Map.of("emailOrUsername", username, "password", PASSWORD)).path("token").asText();
+            for (int w = 0; w < wishlists; w++) {
+                String wishlistId = send("/api/wishlists", token, Map.of("title", "Wishlist " + w, "description", "Idle pollers " + runId)).path("id").asText();
+                for (int p = 0; p < products; p++) {
+                    send("/api/wishlists/" + wishlistId + "/products", token, Map.of("name", "Product " + p, "price", 1 + p));
+                }
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private JsonNode send(String path, String token, Map<String, ?> body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(response.statusCode() + " from " + path + ": " + response.body());
+        }
+        return json.readTree(response.body());
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.wishlistapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.wishlistapp.WishlistBackendApplication;
+import com.wishlistapp.benchmarks.support.InMemoryRepositories;
+import com.wishlistapp.benchmarks.support.InMemoryUserStore;
+import com.wishlistapp.benchmarks.support.InMemoryWishlistStore;
+import com.wishlistapp.repositories.UserRepository;
+import com.wishlistapp.repositories.WishlistRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * End-to-end load test: boots the full application on a random port, seeds users and shared wishlists
+ * over HTTP, then drives a closed-loop mix of logins, dashboard reads, wishlist reads, product writes
+ * and invites from {@code --concurrency} workers. Reports throughput and latency percentiles per
+ * endpoint, plus the number of acknowledged writes missing from the final documents.
+ *
+ * <p>With {@code --store=memory} (the default) the repositories are the in-memory stand-ins from the
+ * benchmarks; {@code --store=mongo} uses whatever {@code spring.data.mongodb.uri} points at.
+ * Contention is controlled by {@code --shared-wishlists}: every user collaborates on every shared
+ * wishlist, so fewer of them means more concurrent writers per document. See docs/load-testing.md.</p>
+ */
+public final class LoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+
+    private final LoadTestOptions options;
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final WriteLedger ledger = new WriteLedger();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    private String baseUrl;
+    private final List<Member> users = new ArrayList<>();
+    private final List<Member> invitees = new ArrayList<>();
+    private final AtomicInteger nextInvitee = new AtomicInteger();
+    private final List<String> wishlistIds = new ArrayList<>();
+    private final Map<String, Member> owners = new ConcurrentHashMap<>();
+    private volatile boolean measuring;
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        // Devtools is on the classpath here; its restarter would re-run main in a second classloader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        try (ConfigurableApplicationContext context = boot(options)) {
+            LoadTest loadTest = new LoadTest(options);
+            loadTest.baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            loadTest.seed();
+            Map<String, Object> result = loadTest.run();
+            loadTest.report(result);
+        }
+        System.exit(0); // Driver threads (e.g. the reactive client's event loops) shouldn't keep the JVM alive
+    }
+
+    private static ConfigurableApplicationContext boot(LoadTestOptions options) {
+        // Passed as command-line arguments so they take precedence over application.properties
+        List<String> arguments = new ArrayList<>(List.of("--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN"));
+        arguments.add("--wishlist.products.write-coalescing.enabled=" + options.writeCoalescing());
+        // Every worker shares one IP and a few users, so the production budgets would throttle the run
+        arguments.add("--wishlist.rate-limit.enabled=" + options.rateLimit());
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(WishlistBackendApplication.class);
+        if (options.store().equals("memory")) {
+            arguments.add("--wishlist.mongo.create-indexes=false");
+            arguments.add("--wishlist.mongo.verify-query-plans=false");
+            // Registered as primary so they win over the Mongo-backed repositories wherever those are injected
+            builder.initializers(context -> {
+                GenericApplicationContext generic = (GenericApplicationContext) context;
+                InMemoryWishlistStore wishlistStore = new InMemoryWishlistStore();
+                InMemoryUserStore userStore = new InMemoryUserStore();
+                generic.registerBean("inMemoryWishlistRepository", WishlistRepository.class,
+                        () -> InMemoryRepositories.wishlists(wishlistStore), definition -> definition.setPrimary(true));
+                generic.registerBean("inMemoryUserRepository", UserRepository.class,
+                        () -> InMemoryRepositories.users(userStore), definition -> definition.setPrimary(true));
+            });
+        }
+        return builder.run(arguments.toArray(String[]::new));
+    }
+
+    // ---- Seeding: everything here goes through the public API so the run starts from a realistic state
+
+    private void seed() {
+        System.out.printf("Seeding %d users, %d invitees, %d shared wishlists with %d products each%n",
+                options.users(), options.invitees(), options.sharedWishlists(), options.initialProducts());
+        users.addAll(register("user", options.users()));
+        invitees.addAll(register("invitee", options.invitees()));
+        for (int i = 0; i < options.sharedWishlists(); i++) {
+            Member owner = users.get(i % users.size());
+            JsonNode created = send(null, owner, HttpRequest.newBuilder(uri("/api/wishlists"))
+                    .POST(body(Map.of("title", "Shared wishlist " + i, "description", "Load test " + runId))));
+            String wishlistId = created.path("id").asText();
+            wishlistIds.add(wishlistId);
+            owners.put(wishlistId, owner);
+            for (Member user : users) {
+                if (user != owner) {
+                    send(null, owner, HttpRequest.newBuilder(uri("/api/wishlists/" + wishlistId + "/invite"))
+                            .POST(body(Map.of("email", user.email))));
+                }
+            }
+            for (int p = 0; p < options.initialProducts(); p++) {
+                addProduct(null, owner, wishlistId, null);
+            }
+        }
+    }
+
+    // Sign-ups hash passwords, so run them in parallel to keep seeding short
+    private List<Member> register(String prefix, int count) {
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()))) {
+            List<Future<Member>> futures = IntStream.range(0, count)
+                    .mapToObj(i -> executor.submit(() -> {
+                        String username = prefix + "-" + runId + "-" + i;
+                        String email = username + "@load.test";
+                        JsonNode signup = send(null, null, HttpRequest.newBuilder(uri("/api/auth/signup"))
+                                .POST(body(Map.of("username", username, "email", email, "passwordHash", PASSWORD))));
+                        Member member = new Member(signup.path("userId").asText(), username, email);
+                        member.token = login(null, member);
+                        return member;
+                    }))
+                    .toList();
+            List<Member> members = new ArrayList<>();
+            for (Future<Member> future : futures) {
+                members.add(future.get());
+            }
+            return members;
+        } catch (Exception e) {
+            throw new IllegalStateException("Seeding failed", e);
+        }
+    }
+
+    // ---- The run
+
+    private Map<String, Object> run() throws InterruptedException {
+        int[] weights = new int[Operation.values().length];
+        int totalWeight = 0;
+        for (Operation operation : Operation.values()) {
+            totalWeight += options.mix().getOrDefault(operation, 0);
+            weights[operation.ordinal()] = totalWeight;
+        }
+        int weightSum = totalWeight;
+
+        long warmupEnd = System.nanoTime() + options.warmup().toNanos();
+        long end = warmupEnd + options.duration().toNanos();
+        AtomicLong failures = new AtomicLong();
+        System.out.printf("Running %d workers for %ss (after %ss warm-up), store=%s, if-match=%s, write-coalescing=%s, rate-limit=%s%n",
+                options.concurrency(), options.duration().toSeconds(), options.warmup().toSeconds(), options.store(), options.ifMatch(),
+                options.writeCoalescing(), options.rateLimit());
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency());
+        for (int w = 0; w < options.concurrency(); w++) {
+            workers.execute(() -> {
+                Map<String, String> etags = new ConcurrentHashMap<>();
+                while (System.nanoTime() < end) {
+                    int roll = ThreadLocalRandom.current().nextInt(weightSum);
+                    Operation operation = Operation.values()[0];
+                    for (Operation candidate : Operation.values()) {
+                        if (roll < weights[candidate.ordinal()]) {
+                            operation = candidate;
+                            break;
+                        }
+                    }
+                    try {
+                        execute(operation, etags);
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(warmupEnd - System.nanoTime())));
+        stats.values().forEach(EndpointStats::reset);
+        measuring = true;
+        long measureStart = System.nanoTime();
+        workers.shutdown();
+        workers.awaitTermination(options.duration().toSeconds() + 120, TimeUnit.SECONDS);
+        measuring = false;
+        double measuredSeconds = (System.nanoTime() - measureStart) / 1e9;
+
+        Map<String, JsonNode> finalWishlists = new LinkedHashMap<>();
+        for (String wishlistId : wishlistIds) {
+            finalWishlists.put(wishlistId, send(null, owners.get(wishlistId), HttpRequest.newBuilder(uri("/api/wishlists/" + wishlistId)).GET()));
+        }
+        return result(measuredSeconds, failures.get(), ledger.anomalies(finalWishlists));
+    }
+
+    private void execute(Operation operation, Map<String, String> etags) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Member user = users.get(random.nextInt(users.size()));
+        String wishlistId = wishlistIds.get(random.nextInt(wishlistIds.size()));
+        WriteLedger.WishlistLedger wishlist = ledger.of(wishlistId);
+        switch (operation) {
+            case LOGIN -> login(Operation.LOGIN, user);
+            case LIST -> send(Operation.LIST, user, HttpRequest.newBuilder(uri("/api/wishlists?view=summary")).GET());
+            case OPEN -> open(user, wishlistId, etags);
+            case ADD -> addProduct(Operation.ADD, user, wishlistId, etags);
+            case EDIT -> {
+                String productId = wishlist.liveProducts.peekLast();
+                if (productId == null) {
+                    return;
+                }
+                String token = "edit-" + UUID.randomUUID();
+                HttpResponse<String> response = exchange(Operation.EDIT, user, ifMatch(HttpRequest.newBuilder(
+                        uri("/api/wishlists/" + wishlistId + "/products/" + productId)), wishlistId, etags)
+                        .PUT(body(Map.of("name", token, "imageUrl", "https://img.load.test/" + token, "price", random.nextInt(1, 500)))));
+                rememberETag(response, wishlistId, etags);
+                if (response.statusCode() == 200) {
+                    wishlist.acknowledgedEdits.add(productId);
+                }
+            }
+            case REMOVE -> {
+                String productId = wishlist.liveProducts.pollFirst();
+                if (productId == null) {
+                    return;
+                }
+                HttpResponse<String> response = exchange(Operation.REMOVE, user, ifMatch(HttpRequest.newBuilder(
+                        uri("/api/wishlists/" + wishlistId + "/products/" + productId)), wishlistId, etags).DELETE());
+                rememberETag(response, wishlistId, etags);
+                if (response.statusCode() == 200) {
+                    wishlist.acknowledgedRemoves.add(productId);
+                } else {
+                    wishlist.liveProducts.addFirst(productId); // Not removed; let someone else try
+                }
+            }
+            case INVITE -> {
+                int next = nextInvitee.getAndIncrement();
+                if (next >= invitees.size()) {
+                    return; // Pool used up; invites stop rather than re-inviting members
+                }
+                Member invitee = invitees.get(next);
+                HttpResponse<String> response = exchange(Operation.INVITE, owners.get(wishlistId), HttpRequest.newBuilder(
+                        uri("/api/wishlists/" + wishlistId + "/invite")).POST(body(Map.of("email", invitee.email))));
+                if (response.statusCode() == 200) {
+                    wishlist.acknowledgedInvites.add(invitee.id);
+                }
+            }
+        }
+    }
+
+    private String login(Operation operation, Member member) {
+        return send(operation, null, HttpRequest.newBuilder(uri("/api/auth/login"))
+                .POST(body(Map.of("emailOrUsername", member.username, "password", PASSWORD)))).path("token").asText(null);
+    }
+
+    private void open(Member user, String wishlistId, Map<String, String> etags) {
+        HttpResponse<String> response = exchange(Operation.OPEN, user, HttpRequest.newBuilder(uri("/api/wishlists/" + wishlistId)).GET());
+        rememberETag(response, wishlistId, etags);
+    }
+
+    private void addProduct(Operation operation, Member user, String wishlistId, Map<String, String> etags) {
+        String name = "p-" + UUID.randomUUID();
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri("/api/wishlists/" + wishlistId + "/products"));
+        if (etags != null) {
+            ifMatch(request, wishlistId, etags);
+        }
+        HttpResponse<String> response = exchange(operation, user, request.POST(body(Map.of(
+                "name", name, "imageUrl", "https://img.load.test/" + name, "price", ThreadLocalRandom.current().nextInt(1, 500)))));
+        if (etags != null) {
+            rememberETag(response, wishlistId, etags);
+        }
+        if (response.statusCode() == 201) {
+            for (JsonNode product : parse(response).path("products")) {
+                if (name.equals(product.path("name").asText())) {
+                    ledger.of(wishlistId).added(product.path("id").asText(), name);
+                    return;
+                }
+            }
+            // Acknowledged, but the returned document doesn't contain it: count it without knowing its ID
+            ledger.of(wishlistId).added("missing-" + name, name);
+        }
+    }
+
+    // Clients send the last ETag they saw; a 412 makes them re-read before their next write
+    private HttpRequest.Builder ifMatch(HttpRequest.Builder request, String wishlistId, Map<String, String> etags) {
+        String etag = etags.get(wishlistId);
+        if (options.ifMatch() && etag != null) {
+            request.header("If-Match", etag);
+        }
+        return request;
+    }
+
+    private static void rememberETag(HttpResponse<String> response, String wishlistId, Map<String, String> etags) {
+        if (response.statusCode() == 412) {
+            etags.remove(wishlistId);
+        } else {
+            response.headers().firstValue("ETag").ifPresent(etag -> etags.put(wishlistId, etag));
+        }
+    }
+
+    // ---- HTTP plumbing
+
+    private JsonNode send(Operation operation, Member user, HttpRequest.Builder request) {
+        HttpResponse<String> response = exchange(operation, user, request);
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(response.statusCode() + " from " + response.request().uri());
+        }
+        return parse(response);
+    }
+
+    private HttpResponse<String> exchange(Operation operation, Member user, HttpRequest.Builder request) {
+        request.timeout(Duration.ofSeconds(30)).header("Content-Type", "application/json");
+        if (user != null) {
+            request.header("Authorization", "Bearer " + user.token);
+        }
+        long start = System.nanoTime();
+        int status = 0;
+        try {
+            HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+            return response;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            if (operation != null && measuring) {
+                stats.get(operation).record(System.nanoTime() - start, status);
+            }
+        }
+    }
+
+    private JsonNode parse(HttpResponse<String> response) {
+        try {
+            return response.body().isEmpty() ? json.createObjectNode() : json.readTree(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest.BodyPublisher body(Map<String, ?> value) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    // ---- Reporting
+
+    private Map<String, Object> result(double measuredSeconds, long clientFailures, Map<String, Long> anomalies) {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            EndpointStats endpoint = stats.get(operation);
+            total += endpoint.count();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", operation.endpoint);
+            row.put("requests", endpoint.count());
+            row.put("throughputPerSecond", endpoint.count() / measuredSeconds);
+            row.put("p50Millis", endpoint.percentileMillis(50));
+            row.put("p99Millis", endpoint.percentileMillis(99));
+            row.put("p999Millis", endpoint.percentileMillis(99.9));
+            row.put("maxMillis", endpoint.maxMillis());
+            row.put("statuses", endpoint.statuses());
+            endpoints.put(operation.name().toLowerCase(), row);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("measuredSeconds", measuredSeconds);
+        result.put("requests", total);
+        result.put("throughputPerSecond", total / measuredSeconds);
+        result.put("clientFailures", clientFailures);
+        result.put("endpoints", endpoints);
+        result.put("anomalies", anomalies);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void report(Map<String, Object> result) throws IOException {
+        System.out.printf("%n%-52s %9s %9s %9s %9s %9s  %s%n", "Endpoint", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "statuses");
+        for (Object value : ((Map<String, Object>) result.get("endpoints")).values()) {
+            Map<String, Object> row = (Map<String, Object>) value;
+            System.out.printf("%-52s %9.1f %9.2f %9.2f %9.2f %9.2f  %s%n", row.get("endpoint"), row.get("throughputPerSecond"),
+                    row.get("p50Millis"), row.get("p99Millis"), row.get("p999Millis"), row.get("maxMillis"), row.get("statuses"));
+        }
+        System.out.printf("%nTotal: %.1f req/s over %.1fs, client-side failures: %d%n",
+                result.get("throughputPerSecond"), result.get("measuredSeconds"), result.get("clientFailures"));
+        System.out.println("Lost-update anomalies: " + result.get("anomalies"));
+
+        Path file = Path.of(options.resultFile());
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        json.copy().enable(SerializationFeature.INDENT_OUTPUT).registerModule(new JavaTimeModule())
+                .writeValue(file.toFile(), result);
+        System.out.println("Result written to " + file.toAbsolutePath());
+    }
+
+    private static final class Member {
+        private final String id;
+        private final String username;
+        private final String email;
+        private volatile String token;
+
+        private Member(String id, String username, String email) {
+            this.id = id;
+            this.username = username;
+            this.email = email;
+        }
+    }
+}
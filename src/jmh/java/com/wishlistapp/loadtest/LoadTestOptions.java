@@ -0,0 +1,98 @@
+package com.wishlistapp.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command-line options of the load test, given as {@code --name=value}. Unknown options are rejected
+ * so a typo doesn't silently run the defaults.
+ */
+record LoadTestOptions(
+        String store,
+        int concurrency,
+        Duration duration,
+        Duration warmup,
+        int users,
+        int sharedWishlists,
+        int initialProducts,
+        int invitees,
+        boolean ifMatch,
+        boolean writeCoalescing,
+        boolean rateLimit,
+        Map<Operation, Integer> mix,
+        String resultFile) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                values.getOrDefault("store", "memory"),
+                intValue(values.remove("concurrency"), 32),
+                durationValue(values.remove("duration"), Duration.ofSeconds(30)),
+                durationValue(values.remove("warmup"), Duration.ofSeconds(5)),
+                intValue(values.remove("users"), 20),
+                intValue(values.remove("shared-wishlists"), 2),
+                intValue(values.remove("initial-products"), 50),
+                intValue(values.remove("invitees"), 200),
+                Boolean.parseBoolean(values.get("if-match")),
+                Boolean.parseBoolean(values.get("write-coalescing")),
+                Boolean.parseBoolean(values.get("rate-limit")),
+                mixValue(values.remove("mix")),
+                values.getOrDefault("result-file", "target/loadtest-result.json"));
+        values.keySet().removeAll(Set.of("store", "if-match", "write-coalescing", "rate-limit", "result-file"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        if (!options.store.equals("memory") && !options.store.equals("mongo")) {
+            throw new IllegalArgumentException("--store must be memory or mongo");
+        }
+        return options;
+    }
+
+    private static int intValue(String value, int defaultValue) {
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    // Accepts 30s, 2m, 500ms or a plain number of seconds
+    private static Duration durationValue(String value, Duration defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    // --mix=list:25,open:25,add:18,... ; operations left out keep their default weight
+    private static Map<Operation, Integer> mixValue(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            mix.put(operation, operation.defaultWeight);
+        }
+        if (value != null) {
+            for (String entry : value.split(",")) {
+                String[] parts = entry.split(":");
+                mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+            }
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,20 @@
+package com.wishlistapp.loadtest;
+
+// One kind of request in the traffic mix; the label is what shows up in the per-endpoint report
+enum Operation {
+    LOGIN("POST /api/auth/login", 2),
+    LIST("GET /api/wishlists?view=summary", 25),
+    OPEN("GET /api/wishlists/{id}", 25),
+    ADD("POST /api/wishlists/{id}/products", 18),
+    EDIT("PUT /api/wishlists/{id}/products/{productId}", 15),
+    REMOVE("DELETE /api/wishlists/{id}/products/{productId}", 10),
+    INVITE("POST /api/wishlists/{id}/invite", 5);
+
+    final String endpoint;
+    final int defaultWeight;
+
+    Operation(String endpoint, int defaultWeight) {
+        this.endpoint = endpoint;
+        this.defaultWeight = defaultWeight;
+    }
+}
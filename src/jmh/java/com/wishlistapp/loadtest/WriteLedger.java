@@ -0,0 +1,87 @@
+package com.wishlistapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Every write the server acknowledged during the run, per wishlist, so the final documents can be
+ * checked for writes that were confirmed to a client and then silently overwritten.
+ *
+ * <p>Edits set the product name to a token unique to the request. Whatever the interleaving, once
+ * any edit of a product was acknowledged its final name must be one of the edit tokens; finding the
+ * original name instead means every acknowledged edit was lost.</p>
+ */
+final class WriteLedger {
+
+    private final Map<String, WishlistLedger> wishlists = new ConcurrentHashMap<>();
+
+    WishlistLedger of(String wishlistId) {
+        return wishlists.computeIfAbsent(wishlistId, id -> new WishlistLedger());
+    }
+
+    static final class WishlistLedger {
+        // Products a worker may still edit or remove; removal takes from the head so no two workers remove the same one
+        final ConcurrentLinkedDeque<String> liveProducts = new ConcurrentLinkedDeque<>();
+        final Map<String, String> originalNames = new ConcurrentHashMap<>();
+        final Set<String> acknowledgedAdds = ConcurrentHashMap.newKeySet();
+        final Set<String> acknowledgedRemoves = ConcurrentHashMap.newKeySet();
+        final Set<String> acknowledgedEdits = ConcurrentHashMap.newKeySet();
+        final Set<String> acknowledgedInvites = ConcurrentHashMap.newKeySet();
+
+        void added(String productId, String name) {
+            originalNames.put(productId, name);
+            acknowledgedAdds.add(productId);
+            liveProducts.addLast(productId);
+        }
+    }
+
+    // Compares acknowledged writes with the wishlists as finally stored; the argument maps ID to document
+    Map<String, Long> anomalies(Map<String, JsonNode> finalWishlists) {
+        long lostAdds = 0;
+        long resurrectedRemoves = 0;
+        long lostEdits = 0;
+        long lostInvites = 0;
+        for (Map.Entry<String, WishlistLedger> entry : wishlists.entrySet()) {
+            WishlistLedger ledger = entry.getValue();
+            JsonNode wishlist = finalWishlists.get(entry.getKey());
+            Map<String, String> finalNames = new LinkedHashMap<>();
+            Set<String> collaborators = ConcurrentHashMap.newKeySet();
+            if (wishlist != null) {
+                wishlist.path("products").forEach(p -> finalNames.put(p.path("id").asText(), p.path("name").asText()));
+                wishlist.path("collaboratorIds").forEach(c -> collaborators.add(c.asText()));
+            }
+            for (String productId : ledger.acknowledgedAdds) {
+                if (!ledger.acknowledgedRemoves.contains(productId) && !finalNames.containsKey(productId)) {
+                    lostAdds++;
+                }
+            }
+            for (String productId : ledger.acknowledgedRemoves) {
+                if (finalNames.containsKey(productId)) {
+                    resurrectedRemoves++;
+                }
+            }
+            for (String productId : ledger.acknowledgedEdits) {
+                String finalName = finalNames.get(productId);
+                if (finalName != null && finalName.equals(ledger.originalNames.get(productId))) {
+                    lostEdits++;
+                }
+            }
+            for (String userId : ledger.acknowledgedInvites) {
+                if (!collaborators.contains(userId)) {
+                    lostInvites++;
+                }
+            }
+        }
+        Map<String, Long> anomalies = new LinkedHashMap<>();
+        anomalies.put("lostProductAdds", lostAdds);
+        anomalies.put("resurrectedProductRemoves", resurrectedRemoves);
+        anomalies.put("lostProductEdits", lostEdits);
+        anomalies.put("lostInvites", lostInvites);
+        return anomalies;
+    }
+}
@@ -0,0 +1,18 @@
+package com.wishlistapp.config;
+
+import com.wishlistapp.services.InMemoryWishlistEventBus;
+import com.wishlistapp.services.WishlistEventBus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EventBusConfig {
+
+    // Stand-in until a cross-node bus bean is defined; any WishlistEventBus bean replaces it
+    @Bean
+    @ConditionalOnMissingBean(WishlistEventBus.class)
+    public WishlistEventBus wishlistEventBus() {
+        return new InMemoryWishlistEventBus();
+    }
+}
@@ -0,0 +1,29 @@
+package com.wishlistapp.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wishlistapp.controllers.SparseFieldsets;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@Configuration
+public class JacksonConfig {
+
+    // fields= filtering for every mapper Boot builds, the JSON and CBOR converters included
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer sparseFieldsetsCustomizer() {
+        return SparseFieldsets::register;
+    }
+
+    /**
+     * Serves {@code Accept: application/cbor} with the same settings as JSON (date format, filters);
+     * Spring's default CBOR converter would use a bare mapper. Replaces it in place, so JSON stays
+     * the default for clients that accept anything.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
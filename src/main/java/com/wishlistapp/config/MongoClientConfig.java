@@ -0,0 +1,29 @@
+package com.wishlistapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoClientConfig {
+
+    // With virtual threads the request count is no longer capped by Tomcat, so the driver's
+    // connection pool becomes the real concurrency limit. Only applied when set explicitly.
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(
+            @Value("${wishlist.mongo.pool.max-size:#{null}}") Integer maxSize,
+            @Value("${wishlist.mongo.pool.max-wait:#{null}}") Duration maxWait) {
+        return builder -> builder.applyToConnectionPoolSettings(pool -> {
+            if (maxSize != null) {
+                pool.maxSize(maxSize);
+            }
+            if (maxWait != null) {
+                pool.maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package com.wishlistapp.config;
+
+import com.wishlistapp.models.ProductEntry;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} on the mapped models at startup.
+ * Spring Boot leaves automatic index creation off, so without this the annotations are documentation only.
+ */
+@Component
+@Order(0)
+public class MongoIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    private static final List<Class<?>> INDEXED_TYPES = List.of(User.class, Wishlist.class, ProductEntry.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mongoMappingContext;
+
+    // Read at runtime rather than as a bean condition, which an AOT-processed build would fix at build time
+    @Value("${wishlist.mongo.create-indexes:true}")
+    private boolean enabled;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void createIndexes() {
+        if (!enabled) {
+            return;
+        }
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoMappingContext);
+        for (Class<?> type : INDEXED_TYPES) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            // createIndex is a no-op when an identical index already exists
+            resolver.resolveIndexFor(type).forEach(index -> {
+                String name = indexOps.createIndex(index);
+                log.debug("Ensured index {} on {}", name, mongoTemplate.getCollectionName(type));
+            });
+        }
+    }
+}
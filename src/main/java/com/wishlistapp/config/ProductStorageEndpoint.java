@@ -0,0 +1,35 @@
+package com.wishlistapp.config;
+
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.services.WishlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Operator hook for moving one wishlist's products to their own collection ahead of the
+ * {@code wishlist.products.storage.migrate-above} threshold, via
+ * {@code POST /actuator/productstorage/{wishlistId}}. Not exposed over the web by default.
+ */
+@Component
+@Endpoint(id = "productstorage")
+@Profile("!reactive") // The reactive repositories only support the EMBEDDED layout
+public class ProductStorageEndpoint {
+
+    @Autowired
+    private WishlistService wishlistService;
+
+    public record MigrationReport(String wishlistId, ProductStorage productStorage, int productCount) {
+    }
+
+    // Null (404) when the wishlist doesn't exist; a wishlist that changed meanwhile fails and can be retried
+    @WriteOperation
+    public MigrationReport migrate(@Selector String wishlistId) {
+        return wishlistService.migrateProductStorage(wishlistId)
+                .map(wishlist -> new MigrationReport(wishlist.getId(), wishlist.getProductStorage(), wishlist.getProducts().size()))
+                .orElse(null);
+    }
+}
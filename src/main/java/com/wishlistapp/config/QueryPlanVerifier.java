@@ -0,0 +1,111 @@
+package com.wishlistapp.config;
+
+import com.wishlistapp.models.ProductEntry;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Explains the filters behind the hot repository queries and reports any whose winning plan
+ * contains a collection scan. Runs once at startup (when enabled) and on demand via the
+ * {@code queryplans} actuator endpoint.
+ */
+@Component
+@Endpoint(id = "queryplans")
+public class QueryPlanVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanVerifier.class);
+
+    // Placeholder values only shape the filter; the plan doesn't depend on them
+    private static final String SAMPLE = "__plan_check__";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${wishlist.mongo.verify-query-plans:true}")
+    private boolean verifyOnStartup;
+
+    public record QueryPlanReport(String query, String collection, List<String> stages, boolean indexBacked) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup() {
+        if (!verifyOnStartup) {
+            return;
+        }
+        for (QueryPlanReport report : verify()) {
+            if (!report.indexBacked()) {
+                log.warn("Query {} on {} is not index-backed (plan stages: {})", report.query(), report.collection(), report.stages());
+            }
+        }
+    }
+
+    @ReadOperation
+    public List<QueryPlanReport> verify() {
+        String users = mongoTemplate.getCollectionName(User.class);
+        String wishlists = mongoTemplate.getCollectionName(Wishlist.class);
+        String products = mongoTemplate.getCollectionName(ProductEntry.class);
+        Document memberFilter = new Document("$or", List.of(
+                new Document("ownerId", SAMPLE), new Document("collaboratorIds", SAMPLE)));
+
+        List<QueryPlanReport> reports = new ArrayList<>();
+        reports.add(explain("UserRepository.findByEmail", users, new Document("email", SAMPLE), null));
+        reports.add(explain("UserRepository.findByUsername", users, new Document("username", SAMPLE), null));
+        reports.add(explain("UserRepository.findTop2ByEmailOrUsername", users, new Document("$or", List.of(
+                new Document("email", SAMPLE), new Document("username", SAMPLE))), null));
+        reports.add(explain("UserRepository.findByEmailIn", users, new Document("email", new Document("$in", List.of(SAMPLE))), null));
+        reports.add(explain("WishlistRepository.findByOwnerIdOrCollaboratorIdsContaining", wishlists, memberFilter, null));
+        reports.add(explain("WishlistRepository.findByIdForMember", wishlists,
+                new Document("_id", SAMPLE).append("$or", memberFilter.get("$or")), null));
+        reports.add(explain("WishlistRepository.findSummariesForMember", wishlists, memberFilter, new Document("_id", 1)));
+        // The two halves of the product search: the member's wishlists, then the products each COLLECTION one joins
+        reports.add(explain("WishlistRepository.searchProducts (wishlists)", wishlists, new Document("$and", List.of(memberFilter,
+                new Document("productStorage", ProductStorage.COLLECTION.name()))), null));
+        reports.add(explain("WishlistRepository.searchProducts (products join)", products, new Document("wishlistId", SAMPLE)
+                .append("$and", List.of(new Document("price", new Document("$gte", 0.0)),
+                        new Document("name", new Document("$regex", SAMPLE).append("$options", "i")))), null));
+        reports.add(explain("WishlistProductsCollection.findPage", products,
+                new Document("wishlistId", SAMPLE).append("position", new Document("$gt", 0L)), new Document("position", 1)));
+        return reports;
+    }
+
+    private QueryPlanReport explain(String query, String collection, Document filter, Document sort) {
+        Document find = new Document("find", collection).append("filter", filter);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        Document result = mongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+        Document planner = result.get("queryPlanner", Document.class);
+        List<String> stages = new ArrayList<>();
+        collectStages(planner != null ? planner.get("winningPlan") : null, stages);
+        // EOF means the collection doesn't exist yet, which can't be scanned either
+        return new QueryPlanReport(query, collection, stages, !stages.contains("COLLSCAN"));
+    }
+
+    // Plans nest as inputStage/inputStages (and queryPlan on the slot-based engine); walk them all
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            Object stage = document.get("stage");
+            if (stage instanceof String name) {
+                stages.add(name);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
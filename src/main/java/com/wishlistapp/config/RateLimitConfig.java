@@ -0,0 +1,40 @@
+package com.wishlistapp.config;
+
+import com.wishlistapp.controllers.RateLimitInterceptor;
+import com.wishlistapp.services.InMemoryRateLimitStore;
+import com.wishlistapp.services.RateLimitStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class RateLimitConfig {
+
+    // Per-node buckets until a shared store bean is defined; any RateLimitStore bean replaces it
+    @Bean
+    @ConditionalOnMissingBean(RateLimitStore.class)
+    public InMemoryRateLimitStore rateLimitStore(@Value("${wishlist.rate-limit.memory.max-keys:100000}") int maxKeys,
+                                                 @Value("${wishlist.rate-limit.memory.sweep-interval:1m}") Duration sweepInterval) {
+        return new InMemoryRateLimitStore(maxKeys, sweepInterval);
+    }
+
+    @Configuration
+    @Profile("!reactive") // The reactive controllers are not rate limited
+    static class RateLimitInterceptorConfig implements WebMvcConfigurer {
+
+        @Autowired
+        private RateLimitInterceptor rateLimitInterceptor;
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/api/**");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.wishlistapp.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.NettyRouteProvider;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    /**
+     * Serves the reactive profile on Reactor Netty. Tomcat is on the classpath for the servlet stack, and
+     * Boot prefers it for reactive apps too, which would put WebFlux behind Tomcat's connector and its
+     * keep-alive timeout. The server.* and server.netty.* properties still apply through Boot's customizers.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(ObjectProvider<NettyRouteProvider> routes,
+            ObjectProvider<NettyServerCustomizer> customizers) {
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+        routes.orderedStream().forEach(factory::addRouteProviders);
+        factory.getServerCustomizers().addAll(customizers.orderedStream().toList());
+        return factory;
+    }
+}
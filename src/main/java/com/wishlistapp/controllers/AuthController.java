@@ -1,8 +1,12 @@
 package com.wishlistapp.controllers;
 
 import com.wishlistapp.models.User;
+import com.wishlistapp.services.PasswordHashingBusyException;
+import com.wishlistapp.services.RateLimiter.EndpointClass;
 import com.wishlistapp.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +16,7 @@ import java.util.Map;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive") // ReactiveAuthController serves these paths under the reactive profile
 @RequestMapping("/api/auth")
 @CrossOrigin(origins = {"http://localhost:3000", "https://wishlist-frontend.netlify.app"})  // Allow React app to access
 public class AuthController {
@@ -20,7 +25,11 @@ public class AuthController {
     private UserService userService;
 
     @PostMapping("/signup")
+    @RateLimited(EndpointClass.AUTH)
     public ResponseEntity<?> signup(@RequestBody User user) {
+        if (!hasSignupFields(user)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Username, email and password are required"));
+        }
         Optional<User> registeredUser = userService.registerUser(user);
         if (registeredUser.isPresent()) {
             Map<String, String> response = new HashMap<>();
@@ -37,6 +46,7 @@ public class AuthController {
     }
 
     @PostMapping("/login")
+    @RateLimited(EndpointClass.AUTH)
     public ResponseEntity<?> login(@RequestBody Map<String, String> credentials) {
         String emailOrUsername = credentials.get("emailOrUsername");
         String password = credentials.get("password");
@@ -59,6 +69,14 @@ public class AuthController {
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
     }
 
+    // Checked before hashing. The unique username/email indexes aren't sparse, so a user missing either
+    // would be indexed as null and lock every later sign-up without it out with a false "already exists"
+    static boolean hasSignupFields(User user) {
+        return user != null && user.getUsername() != null && !user.getUsername().isBlank()
+                && user.getEmail() != null && !user.getEmail().isBlank()
+                && user.getPasswordHash() != null && !user.getPasswordHash().isEmpty();
+    }
+
     // A simple endpoint to validate a token and get user info (for frontend)
     @GetMapping("/validate")
     public ResponseEntity<?> validateToken(@RequestHeader(name = "Authorization") String tokenHeader) {
@@ -78,4 +96,12 @@ public class AuthController {
         }
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid token"));
     }
+
+    // Login/signup storms saturate the hashing pool; tell clients to back off instead of queueing
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<?> handleHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", "Authentication is temporarily overloaded, please retry later"));
+    }
 }
@@ -0,0 +1,110 @@
+package com.wishlistapp.controllers;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ETag helpers for wishlist conditional requests; a wishlist's ETag is its version number. JSON and
+ * CBOR are negotiated on the same URLs, so the CBOR representation gets its own tag (the version plus
+ * {@code -cbor}) and the reads that send ETags also send {@code Vary: Accept}.
+ */
+final class ConditionalRequests {
+
+    private static final Pattern ENTITY_TAG = Pattern.compile("\\s*(W/)?\"([^\"]*)\"\\s*(,|$)");
+    private static final String CBOR_SUFFIX = "-cbor";
+
+    private ConditionalRequests() {
+    }
+
+    static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String etag(String opaqueTag) {
+        return "\"" + opaqueTag + "\"";
+    }
+
+    static String etag(long version, boolean cbor) {
+        return etag(String.valueOf(version), cbor);
+    }
+
+    static String etag(String opaqueTag, boolean cbor) {
+        return etag(cbor ? opaqueTag + CBOR_SUFFIX : opaqueTag);
+    }
+
+    // Whether content negotiation will answer this Accept header with CBOR: the most specific, highest
+    // quality type decides, and JSON wins when that type accepts both (JSON's converter comes first)
+    static boolean isCbor(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptable);
+        for (MediaType type : acceptable) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-None-Match uses weak comparison: W/"3" and "3" both match version 3
+    static boolean noneMatch(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return true;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return false;
+        }
+        String opaque = etag.substring(1, etag.length() - 1);
+        Matcher matcher = ENTITY_TAG.matcher(ifNoneMatch);
+        while (matcher.lookingAt()) {
+            if (matcher.group(2).equals(opaque)) {
+                return false;
+            }
+            matcher.region(matcher.end(), ifNoneMatch.length());
+        }
+        return true;
+    }
+
+    /**
+     * Expected version from an If-Match header: null when absent or "*", -1 when the header can't
+     * match any version (weak tag, several tags, or a malformed value).
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        // If-Match requires strong comparison, so weak tags never match
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return -1L;
+        }
+        String opaque = value.substring(1, value.length() - 1);
+        // Either representation's tag names the same version of the wishlist
+        if (opaque.endsWith(CBOR_SUFFIX)) {
+            opaque = opaque.substring(0, opaque.length() - CBOR_SUFFIX.length());
+        }
+        try {
+            return Long.parseLong(opaque);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.wishlistapp.controllers;
+
+import com.wishlistapp.models.User;
+import com.wishlistapp.services.RateLimiter;
+import com.wishlistapp.services.RateLimiter.EndpointClass;
+import com.wishlistapp.services.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces {@link RateLimited} before the handler runs, so a refused request never reaches the
+ * hashing pool or Mongo. The client IP is {@code request.getRemoteAddr()}: behind a load balancer,
+ * set {@code server.forward-headers-strategy} so that it is the client's address and not the proxy's.
+ */
+@Component
+@Profile("!reactive")
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String REJECTED_BODY = "{\"error\":\"Too many requests, please retry later\"}";
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!rateLimiter.isEnabled() || !(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        RateLimited rateLimited = method.getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return true;
+        }
+        long waitNanos = rateLimiter.tryAcquire(rateLimited.value(), clientKey(rateLimited.value(), request));
+        if (waitNanos == 0) {
+            return true;
+        }
+        // Whole seconds, rounded up so a client that waits exactly that long finds a token
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(REJECTED_BODY);
+        return false;
+    }
+
+    // Writes are counted per user, so users behind one NAT don't share a budget; anything unauthenticated per IP
+    private String clientKey(EndpointClass endpointClass, HttpServletRequest request) {
+        if (endpointClass == EndpointClass.WRITE) {
+            String tokenHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+            if (tokenHeader != null && tokenHeader.startsWith("Bearer ")) {
+                // Served by the principal cache, so the controller's own lookup right after is free
+                User user = userService.getUserByToken(tokenHeader.substring(7)).orElse(null);
+                if (user != null) {
+                    return "user:" + user.getId();
+                }
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
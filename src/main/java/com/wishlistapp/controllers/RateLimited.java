@@ -0,0 +1,19 @@
+package com.wishlistapp.controllers;
+
+import com.wishlistapp.services.RateLimiter.EndpointClass;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler method whose requests take a token from the caller's bucket for the given
+ * endpoint class; {@link RateLimitInterceptor} answers 429 when the bucket is empty.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    EndpointClass value();
+}
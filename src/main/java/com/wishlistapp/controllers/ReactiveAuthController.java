@@ -0,0 +1,87 @@
+package com.wishlistapp.controllers;
+
+import com.wishlistapp.models.User;
+import com.wishlistapp.services.PasswordHashingBusyException;
+import com.wishlistapp.services.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Same endpoints and JSON as AuthController, served by WebFlux under the reactive profile
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/auth")
+@CrossOrigin(origins = {"http://localhost:3000", "https://wishlist-frontend.netlify.app"})  // Allow React app to access
+public class ReactiveAuthController {
+
+    @Autowired
+    private ReactiveUserService userService;
+
+    @PostMapping("/signup")
+    public Mono<ResponseEntity<?>> signup(@RequestBody User user) {
+        if (!AuthController.hasSignupFields(user)) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "Username, email and password are required")));
+        }
+        return userService.registerUser(user)
+                .<ResponseEntity<?>>map(registeredUser -> {
+                    Map<String, String> response = new HashMap<>();
+                    response.put("message", "User registered successfully");
+                    response.put("userId", registeredUser.getId());
+                    response.put("username", registeredUser.getUsername());
+                    response.put("email", registeredUser.getEmail());
+                    return ResponseEntity.status(HttpStatus.CREATED).body(response);
+                })
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "User with this email or username already exists")));
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<?>> login(@RequestBody Map<String, String> credentials) {
+        String emailOrUsername = credentials.get("emailOrUsername");
+        String password = credentials.get("password");
+
+        return userService.loginUser(emailOrUsername, password)
+                .flatMap(token -> userService.getUserByToken(token)
+                        .<ResponseEntity<?>>map(user -> {
+                            Map<String, String> response = new HashMap<>();
+                            response.put("token", token);
+                            response.put("userId", user.getId());
+                            response.put("username", user.getUsername());
+                            response.put("email", user.getEmail());
+                            return ResponseEntity.ok(response);
+                        }))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid credentials")));
+    }
+
+    @GetMapping("/validate")
+    public Mono<ResponseEntity<?>> validateToken(@RequestHeader(name = "Authorization") String tokenHeader) {
+        if (tokenHeader == null || !tokenHeader.startsWith("Bearer ")) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid or missing token")));
+        }
+        String token = tokenHeader.substring(7); // Remove "Bearer " prefix
+
+        return userService.getUserByToken(token)
+                .<ResponseEntity<?>>map(user -> {
+                    Map<String, String> response = new HashMap<>();
+                    response.put("userId", user.getId());
+                    response.put("username", user.getUsername());
+                    response.put("email", user.getEmail());
+                    return ResponseEntity.ok(response);
+                })
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid token")));
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<?> handleHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", "Authentication is temporarily overloaded, please retry later"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.wishlistapp.controllers;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.services.ReactiveUserService;
+import com.wishlistapp.services.ReactiveWishlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// Same endpoints and JSON as WishlistController, served by WebFlux under the reactive profile
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/wishlists")
+@CrossOrigin(origins = {"http://localhost:3000", "https://wishlist-frontend.netlify.app"})  // Allow React app to access
+public class ReactiveWishlistController {
+
+    @Autowired
+    private ReactiveWishlistService wishlistService;
+
+    @Autowired
+    private ReactiveUserService userService;
+
+    // Helper to resolve the authenticated user from the token; empty when missing or invalid
+    private Mono<User> getUserFromToken(String tokenHeader) {
+        if (tokenHeader != null && tokenHeader.startsWith("Bearer ")) {
+            return userService.getUserByToken(tokenHeader.substring(7));
+        }
+        return Mono.empty();
+    }
+
+    private static <T> ResponseEntity<T> status(HttpStatus status) {
+        return ResponseEntity.status(status).build();
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<?>> getUserWishlists(
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> "summary".equals(view)
+                        ? wishlistService.getUserWishlistSummaries(user.getId(), cursor, limit).<ResponseEntity<?>>map(ResponseEntity::ok)
+                        : wishlistService.getUserWishlists(user.getId()).collectList().<ResponseEntity<?>>map(ResponseEntity::ok))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Wishlist>> getWishlistById(@PathVariable String id, @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForMember(id, user.getId())
+                        .map(ResponseEntity::ok)
+                        .switchIfEmpty(wishlistService.wishlistExists(id)
+                                .map(exists -> exists ? ReactiveWishlistController.<Wishlist>status(HttpStatus.FORBIDDEN)
+                                        : ResponseEntity.notFound().<Wishlist>build())))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Wishlist>> createWishlist(@RequestBody Wishlist wishlist, @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.createWishlist(wishlist, user.getId()))
+                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Wishlist>> updateWishlist(@PathVariable String id, @RequestBody Wishlist wishlist, @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForOwner(id, user.getId())
+                        .flatMap(existing -> wishlistService.updateWishlist(existing, wishlist)
+                                .map(ResponseEntity::ok)
+                                .defaultIfEmpty(ResponseEntity.notFound().build()))
+                        .defaultIfEmpty(status(HttpStatus.FORBIDDEN)))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteWishlist(@PathVariable String id, @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForOwner(id, user.getId())
+                        .flatMap(existing -> wishlistService.deleteWishlist(existing)
+                                .map(deleted -> deleted ? ResponseEntity.noContent().<Void>build() : ResponseEntity.notFound().<Void>build()))
+                        .defaultIfEmpty(status(HttpStatus.FORBIDDEN)))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    // Product CRUD operations
+    @PostMapping("/{wishlistId}/products")
+    public Mono<ResponseEntity<Wishlist>> addProductToWishlist(@PathVariable String wishlistId, @RequestBody Product product, @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForMember(wishlistId, user.getId())
+                        .flatMap(wishlist -> wishlistService.addProductToWishlist(wishlist, product, user)
+                                .map(updated -> ResponseEntity.status(HttpStatus.CREATED).body(updated))
+                                .defaultIfEmpty(ResponseEntity.notFound().build())
+                                .onErrorReturn(RuntimeException.class, status(HttpStatus.BAD_REQUEST)))
+                        .defaultIfEmpty(status(HttpStatus.FORBIDDEN)))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    @PutMapping("/{wishlistId}/products/{productId}")
+    public Mono<ResponseEntity<Wishlist>> updateProductInWishlist(
+            @PathVariable String wishlistId,
+            @PathVariable String productId,
+            @RequestBody Product product,
+            @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForMember(wishlistId, user.getId())
+                        .flatMap(wishlist -> wishlistService.updateProductInWishlist(wishlist, productId, product)
+                                .map(ResponseEntity::ok)
+                                .defaultIfEmpty(ResponseEntity.notFound().build()))
+                        .defaultIfEmpty(status(HttpStatus.FORBIDDEN)))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    @DeleteMapping("/{wishlistId}/products/{productId}")
+    public Mono<ResponseEntity<Wishlist>> removeProductFromWishlist(
+            @PathVariable String wishlistId,
+            @PathVariable String productId,
+            @RequestHeader("Authorization") String tokenHeader) {
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForMember(wishlistId, user.getId())
+                        .flatMap(wishlist -> wishlistService.removeProductFromWishlist(wishlist, productId))
+                        .map(ResponseEntity::ok)
+                        .defaultIfEmpty(status(HttpStatus.FORBIDDEN)))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    // Mock invite endpoint
+    @PostMapping("/{wishlistId}/invite")
+    public Mono<ResponseEntity<?>> inviteUserToWishlist(@PathVariable String wishlistId, @RequestBody Map<String, String> inviteRequest, @RequestHeader("Authorization") String tokenHeader) {
+        String invitedEmail = inviteRequest.get("email");
+        return getUserFromToken(tokenHeader)
+                .flatMap(user -> wishlistService.getWishlistForOwner(wishlistId, user.getId())
+                        .flatMap(wishlist -> invite(wishlist, invitedEmail))
+                        .switchIfEmpty(wishlistService.wishlistExists(wishlistId)
+                                .map(exists -> exists
+                                        ? ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Only the wishlist owner can invite others."))
+                                        : ResponseEntity.notFound().build())))
+                .defaultIfEmpty(status(HttpStatus.UNAUTHORIZED));
+    }
+
+    private Mono<ResponseEntity<?>> invite(Wishlist wishlist, String invitedEmail) {
+        return userService.findByEmail(invitedEmail)
+                .flatMap(invitedUser -> {
+                    if (wishlist.getCollaboratorIds().contains(invitedUser.getId()) || wishlist.getOwnerId().equals(invitedUser.getId())) {
+                        return Mono.<ResponseEntity<?>>just(ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(Map.of("message", "User " + invitedEmail + " is already a member or owner of this wishlist.")));
+                    }
+                    return wishlistService.inviteCollaborator(wishlist, invitedUser.getId())
+                            .<ResponseEntity<?>>thenReturn(ResponseEntity.ok(Map.of("message", "User " + invitedEmail + " invited to wishlist (mock update).")));
+                })
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "User with email " + invitedEmail + " not found.")));
+    }
+}
@@ -0,0 +1,151 @@
+package com.wishlistapp.controllers;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code fields=} parameter of the wishlist reads: comma-separated Wishlist properties, where
+ * {@code products.<name>} selects Product properties and a bare {@code products} keeps all of them.
+ * IDs are always written so clients can key what they get. The selection is applied as Jackson
+ * filters on the response and can be handed to the repository as a Mongo projection.
+ */
+public final class SparseFieldsets {
+
+    static final String WISHLIST_FILTER = "wishlistFields";
+    static final String PRODUCT_FILTER = "productFields";
+
+    private static final String PRODUCTS = "products";
+
+    // The serialized property names, as Jackson sees them (ignored properties left out)
+    private static final Set<String> WISHLIST_PROPERTIES = propertiesOf(Wishlist.class);
+    private static final Set<String> PRODUCT_PROPERTIES = propertiesOf(Product.class);
+
+    private final Set<String> wishlistFields; // Null: all
+    private final Set<String> productFields; // Null: all
+
+    private SparseFieldsets(Set<String> wishlistFields, Set<String> productFields) {
+        this.wishlistFields = wishlistFields;
+        this.productFields = productFields;
+    }
+
+    @JsonFilter(WISHLIST_FILTER)
+    private interface WishlistFields {
+    }
+
+    @JsonFilter(PRODUCT_FILTER)
+    private interface ProductFields {
+    }
+
+    /**
+     * Attaches the filter IDs to the models. Mappers without a selection write every property, so
+     * the models themselves stay free of web annotations and plain ObjectMappers keep working on them.
+     */
+    public static Jackson2ObjectMapperBuilder register(Jackson2ObjectMapperBuilder builder) {
+        return builder
+                .mixIn(Wishlist.class, WishlistFields.class)
+                .mixIn(Product.class, ProductFields.class)
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    /**
+     * Parses a {@code fields=} value; null or blank selects everything.
+     *
+     * @throws IllegalArgumentException naming the first property that isn't a Wishlist/Product property
+     */
+    public static SparseFieldsets parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return new SparseFieldsets(null, null);
+        }
+        Set<String> wishlistFields = new LinkedHashSet<>();
+        Set<String> productFields = new LinkedHashSet<>();
+        boolean allProductFields = false;
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (name.startsWith(PRODUCTS + ".")) {
+                String productField = name.substring(PRODUCTS.length() + 1);
+                if (!PRODUCT_PROPERTIES.contains(productField)) {
+                    throw new IllegalArgumentException("Unknown field: " + name);
+                }
+                wishlistFields.add(PRODUCTS);
+                productFields.add(productField);
+            } else if (WISHLIST_PROPERTIES.contains(name)) {
+                wishlistFields.add(name);
+                allProductFields |= name.equals(PRODUCTS);
+            } else {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+        }
+        wishlistFields.add("id");
+        if (!productFields.isEmpty()) {
+            productFields.add("id");
+        }
+        return new SparseFieldsets(wishlistFields, allProductFields || productFields.isEmpty() ? null : productFields);
+    }
+
+    public boolean isAll() {
+        return wishlistFields == null;
+    }
+
+    /**
+     * The selection as dotted document paths, for a Mongo projection; null when everything is selected.
+     */
+    public List<String> projection() {
+        if (wishlistFields == null) {
+            return null;
+        }
+        List<String> paths = new ArrayList<>();
+        for (String field : wishlistFields) {
+            if (field.equals(PRODUCTS) && productFields != null) {
+                productFields.forEach(productField -> paths.add(PRODUCTS + "." + productField));
+            } else {
+                paths.add(field);
+            }
+        }
+        return paths;
+    }
+
+    public FilterProvider filters() {
+        return new SimpleFilterProvider()
+                .addFilter(WISHLIST_FILTER, filterOf(wishlistFields))
+                .addFilter(PRODUCT_FILTER, filterOf(productFields));
+    }
+
+    // The body for the message converters (JSON and CBOR alike); the body itself when nothing is filtered
+    public Object apply(Object body) {
+        if (isAll()) {
+            return body;
+        }
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(filters());
+        return value;
+    }
+
+    private static SimpleBeanPropertyFilter filterOf(Set<String> fields) {
+        return fields == null ? SimpleBeanPropertyFilter.serializeAll() : SimpleBeanPropertyFilter.filterOutAllExcept(fields);
+    }
+
+    private static Set<String> propertiesOf(Class<?> type) {
+        ObjectMapper mapper = new ObjectMapper();
+        return mapper.getSerializationConfig().introspect(mapper.constructType(type)).findProperties().stream()
+                .filter(BeanPropertyDefinition::couldSerialize)
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
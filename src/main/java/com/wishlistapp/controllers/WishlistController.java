@@ -1,20 +1,35 @@
 package com.wishlistapp.controllers;
 
+import com.wishlistapp.models.BulkInviteRequest;
+import com.wishlistapp.models.BulkInviteResult;
+import com.wishlistapp.models.BulkProductRequest;
+import com.wishlistapp.models.BulkProductResult;
 import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductOperation;
 import com.wishlistapp.models.User;
 import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistRollup;
+import com.wishlistapp.services.RateLimiter.EndpointClass;
 import com.wishlistapp.services.UserService;
+import com.wishlistapp.services.WishlistChangeFeed;
 import com.wishlistapp.services.WishlistService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive") // ReactiveWishlistController serves these paths under the reactive profile
 @RequestMapping("/api/wishlists")
 @CrossOrigin(origins = {"http://localhost:3000", "https://wishlist-frontend.netlify.app"})  // Allow React app to access
 public class WishlistController {
@@ -25,82 +40,219 @@ public class WishlistController {
     @Autowired
     private UserService userService;
 
-    // Helper to extract user ID from token (for authenticated requests)
-    private String getUserIdFromToken(String tokenHeader) {
+    @Autowired
+    private WishlistChangeFeed changeFeed;
+
+    // Helper to resolve the authenticated user from the token (for authenticated requests)
+    private User getUserFromToken(String tokenHeader) {
         if (tokenHeader != null && tokenHeader.startsWith("Bearer ")) {
             String token = tokenHeader.substring(7);
-            Optional<User> userOptional = userService.getUserByToken(token);
-            return userOptional.map(User::getId).orElse(null);
+            return userService.getUserByToken(token).orElse(null);
         }
         return null;
     }
 
+    // Helper to extract user ID from token (for authenticated requests)
+    private String getUserIdFromToken(String tokenHeader) {
+        User user = getUserFromToken(tokenHeader);
+        return user != null ? user.getId() : null;
+    }
+
+    // If-Match names a version other than the one we just loaded; no point attempting the write
+    private static boolean preconditionFails(Long expectedVersion, Wishlist current) {
+        return expectedVersion != null && expectedVersion != current.getVersion();
+    }
+
+    private static ResponseEntity<Wishlist> withETag(Wishlist wishlist, HttpStatus status) {
+        return ResponseEntity.status(status).eTag(ConditionalRequests.etag(wishlist.getVersion())).body(wishlist);
+    }
+
+    // A concurrent write moved the version on between our check and the conditional update
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleVersionConflict(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+    }
+
     @GetMapping
-    public ResponseEntity<List<Wishlist>> getUserWishlists(@RequestHeader("Authorization") String tokenHeader) {
+    public ResponseEntity<?> getUserWishlists(
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader("Authorization") String tokenHeader) {
+        String userId = getUserIdFromToken(tokenHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        SparseFieldsets fieldsets;
+        try {
+            fieldsets = SparseFieldsets.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+        // Derived from the (id, version) pairs only, so an unchanged dashboard costs one small projection
+        String etag = ConditionalRequests.etag(wishlistService.getUserWishlistsTag(userId), ConditionalRequests.isCbor(accept));
+        if (!ConditionalRequests.noneMatch(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        if ("summary".equals(view)) {
+            // Dashboard mode: title/owner/count/total only, one page at a time
+            return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(wishlistService.getUserWishlistSummaries(userId, cursor, limit));
+        }
+        // Only the selected properties are read from Mongo, then only those are written
+        List<Wishlist> wishlists = wishlistService.getUserWishlists(userId, fieldsets.projection());
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(fieldsets.apply(wishlists));
+    }
+
+    // Product count and total/min/max price across all of the user's wishlists
+    @GetMapping("/rollup")
+    public ResponseEntity<WishlistRollup> getUserRollup(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader("Authorization") String tokenHeader) {
+        String userId = getUserIdFromToken(tokenHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // The rollup changes exactly when the wishlist list does, so it shares its validator
+        String etag = ConditionalRequests.etag(wishlistService.getUserWishlistsTag(userId), ConditionalRequests.isCbor(accept));
+        if (!ConditionalRequests.noneMatch(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(wishlistService.getUserRollup(userId));
+    }
+
+    // Ranked product search across all of the user's wishlists, by name terms and/or price range
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProducts(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        List<Wishlist> wishlists = wishlistService.getUserWishlists(userId);
-        return ResponseEntity.ok(wishlists);
+        try {
+            return ResponseEntity.ok(wishlistService.searchProducts(userId, q, minPrice, maxPrice, cursor, limit));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid cursor."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Wishlist> getWishlistById(@PathVariable String id, @RequestHeader("Authorization") String tokenHeader) {
+    public ResponseEntity<?> getWishlistById(
+            @PathVariable String id,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        // Add authorization check: only owner or collaborator can view
-        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistById(id);
-        if (wishlistOptional.isPresent()) {
-            Wishlist wishlist = wishlistOptional.get();
-            if (wishlist.getOwnerId().equals(userId) || wishlist.getCollaboratorIds().contains(userId)) {
-                return ResponseEntity.ok(wishlist);
-            } else {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build(); // Not authorized to view this wishlist
+        SparseFieldsets fieldsets;
+        try {
+            fieldsets = SparseFieldsets.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+        boolean cbor = ConditionalRequests.isCbor(accept);
+        if (ifNoneMatch != null) {
+            // Revalidation: compare against a version-only projection before reading the products
+            Optional<Long> version = wishlistService.getWishlistVersionForMember(id, userId);
+            if (version.isPresent() && !ConditionalRequests.noneMatch(ifNoneMatch, ConditionalRequests.etag(version.get(), cbor))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ConditionalRequests.etag(version.get(), cbor)).varyBy(HttpHeaders.ACCEPT).build();
             }
         }
+        // Only owner or collaborator can view; the membership check is part of the query
+        // Filtered on the way out only: the whole document is what the read-through cache keeps
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForMember(id, userId);
+        if (wishlistOptional.isPresent()) {
+            return ResponseEntity.ok().eTag(ConditionalRequests.etag(wishlistOptional.get().getVersion(), cbor)).varyBy(HttpHeaders.ACCEPT)
+                    .body(fieldsets.apply(wishlistOptional.get()));
+        }
+        if (wishlistService.wishlistExists(id)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build(); // Not authorized to view this wishlist
+        }
         return ResponseEntity.notFound().build();
     }
 
+    // Server-sent stream of coalesced deltas for collaborators watching this wishlist
+    @GetMapping(value = "/{id}/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamWishlistChanges(@PathVariable String id, @RequestHeader("Authorization") String tokenHeader) {
+        String userId = getUserIdFromToken(tokenHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // Same rule as viewing: only owner or collaborator can watch
+        if (wishlistService.getWishlistVersionForMember(id, userId).isEmpty()) {
+            return ResponseEntity.status(wishlistService.wishlistExists(id) ? HttpStatus.FORBIDDEN : HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(changeFeed.subscribe(id, userId));
+    }
+
     @PostMapping
+    @RateLimited(EndpointClass.WRITE)
     public ResponseEntity<Wishlist> createWishlist(@RequestBody Wishlist wishlist, @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         Wishlist createdWishlist = wishlistService.createWishlist(wishlist, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdWishlist);
+        return withETag(createdWishlist, HttpStatus.CREATED);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Wishlist> updateWishlist(@PathVariable String id, @RequestBody Wishlist wishlist, @RequestHeader("Authorization") String tokenHeader) {
+    @RateLimited(EndpointClass.WRITE)
+    public ResponseEntity<Wishlist> updateWishlist(
+            @PathVariable String id,
+            @RequestBody Wishlist wishlist,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        // Add authorization check: only owner can update core wishlist details
-        Optional<Wishlist> existingWishlistOptional = wishlistService.getWishlistById(id);
-        if (existingWishlistOptional.isEmpty() || !existingWishlistOptional.get().getOwnerId().equals(userId)) {
+        // Only owner can update core wishlist details
+        Optional<Wishlist> existingWishlistOptional = wishlistService.getWishlistForOwner(id, userId);
+        if (existingWishlistOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
-        Optional<Wishlist> updatedWishlist = wishlistService.updateWishlist(id, wishlist);
-        return updatedWishlist.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        Long expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        if (preconditionFails(expectedVersion, existingWishlistOptional.get())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        Optional<Wishlist> updatedWishlist = wishlistService.updateWishlist(existingWishlistOptional.get(), wishlist, expectedVersion);
+        return updatedWishlist.map(wl -> withETag(wl, HttpStatus.OK)).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteWishlist(@PathVariable String id, @RequestHeader("Authorization") String tokenHeader) {
+    @RateLimited(EndpointClass.WRITE)
+    public ResponseEntity<Void> deleteWishlist(
+            @PathVariable String id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        // Add authorization check: only owner can delete
-        Optional<Wishlist> existingWishlistOptional = wishlistService.getWishlistById(id);
-        if (existingWishlistOptional.isEmpty() || !existingWishlistOptional.get().getOwnerId().equals(userId)) {
+        // Only owner can delete
+        Optional<Wishlist> existingWishlistOptional = wishlistService.getWishlistForOwner(id, userId);
+        if (existingWishlistOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
-        if (wishlistService.deleteWishlist(id)) {
+        Long expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        if (preconditionFails(expectedVersion, existingWishlistOptional.get())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        if (wishlistService.deleteWishlist(existingWishlistOptional.get(), expectedVersion)) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
@@ -108,66 +260,169 @@ public class WishlistController {
 
     // Product CRUD operations
     @PostMapping("/{wishlistId}/products")
-    public ResponseEntity<Wishlist> addProductToWishlist(@PathVariable String wishlistId, @RequestBody Product product, @RequestHeader("Authorization") String tokenHeader) {
-        String userId = getUserIdFromToken(tokenHeader);
-        if (userId == null) {
+    @RateLimited(EndpointClass.WRITE)
+    public ResponseEntity<Wishlist> addProductToWishlist(
+            @PathVariable String wishlistId,
+            @RequestBody Product product,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestHeader("Authorization") String tokenHeader) {
+        User user = getUserFromToken(tokenHeader);
+        if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        // Check if user is owner or collaborator of the wishlist
-        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistById(wishlistId);
-        if (wishlistOptional.isEmpty() || (!wishlistOptional.get().getOwnerId().equals(userId) && !wishlistOptional.get().getCollaboratorIds().contains(userId))) {
+        // User must be owner or collaborator of the wishlist
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForMember(wishlistId, user.getId());
+        if (wishlistOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
+        Long expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        if (preconditionFails(expectedVersion, wishlistOptional.get())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+
         try {
-            Optional<Wishlist> updatedWishlist = wishlistService.addProductToWishlist(wishlistId, product, userId);
-            return updatedWishlist.map(wl -> ResponseEntity.status(HttpStatus.CREATED).body(wl)).orElseGet(() -> ResponseEntity.notFound().build());
+            Optional<Wishlist> updatedWishlist = wishlistService.addProductToWishlist(wishlistOptional.get(), product, user, expectedVersion);
+            return updatedWishlist.map(wl -> withETag(wl, HttpStatus.CREATED)).orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null); // Or a more specific error
         }
     }
 
+    // Many product adds/updates/deletes in one request, persisted as a single atomic write
+    @PatchMapping("/{wishlistId}/products")
+    @RateLimited(EndpointClass.WRITE)
+    public ResponseEntity<?> applyProductOperations(
+            @PathVariable String wishlistId,
+            @RequestBody BulkProductRequest request,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestHeader("Authorization") String tokenHeader) {
+        User user = getUserFromToken(tokenHeader);
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        List<ProductOperation> operations = request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "No operations given."));
+        }
+        if (operations.size() > wishlistService.getMaxBulkOperations()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "At most " + wishlistService.getMaxBulkOperations() + " operations per request."));
+        }
+        // User must be owner or collaborator of the wishlist
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForMember(wishlistId, user.getId());
+        if (wishlistOptional.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        Long expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        if (preconditionFails(expectedVersion, wishlistOptional.get())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+
+        try {
+            Optional<BulkProductResult> result = wishlistService.applyProductOperations(wishlistOptional.get(), operations, user, expectedVersion);
+            return result.<ResponseEntity<?>>map(r -> ResponseEntity.ok().eTag(ConditionalRequests.etag(r.getWishlist().getVersion())).body(r))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (OptimisticLockingFailureException e) {
+            // Only an If-Match makes the batch conditional; without one it merges with other writers
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    // Products one page at a time, for wishlists too large to load in one go; the cursor comes from the previous page
+    @GetMapping("/{wishlistId}/products")
+    public ResponseEntity<?> getProducts(
+            @PathVariable String wishlistId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader("Authorization") String tokenHeader) {
+        String userId = getUserIdFromToken(tokenHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // Same rule as viewing the wishlist, checked without loading its products
+        if (wishlistService.getWishlistVersionForMember(wishlistId, userId).isEmpty()) {
+            return ResponseEntity.status(wishlistService.wishlistExists(wishlistId) ? HttpStatus.FORBIDDEN : HttpStatus.NOT_FOUND).build();
+        }
+        try {
+            return ResponseEntity.ok(wishlistService.getProductsPage(wishlistId, cursor, limit));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid cursor."));
+        }
+    }
+
+    @GetMapping("/{wishlistId}/products/{productId}")
+    public ResponseEntity<Product> getProduct(
+            @PathVariable String wishlistId,
+            @PathVariable String productId,
+            @RequestHeader("Authorization") String tokenHeader) {
+        String userId = getUserIdFromToken(tokenHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (wishlistService.getWishlistVersionForMember(wishlistId, userId).isEmpty()) {
+            return ResponseEntity.status(wishlistService.wishlistExists(wishlistId) ? HttpStatus.FORBIDDEN : HttpStatus.NOT_FOUND).build();
+        }
+        return wishlistService.getProduct(wishlistId, productId).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @PutMapping("/{wishlistId}/products/{productId}")
+    @RateLimited(EndpointClass.WRITE)
     public ResponseEntity<Wishlist> updateProductInWishlist(
             @PathVariable String wishlistId,
             @PathVariable String productId,
             @RequestBody Product product,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        // Check if user is owner or collaborator of the wishlist
-        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistById(wishlistId);
-        if (wishlistOptional.isEmpty() || (!wishlistOptional.get().getOwnerId().equals(userId) && !wishlistOptional.get().getCollaboratorIds().contains(userId))) {
+        // User must be owner or collaborator of the wishlist
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForMember(wishlistId, userId);
+        if (wishlistOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        Optional<Wishlist> updatedWishlist = wishlistService.updateProductInWishlist(wishlistId, productId, product);
-        return updatedWishlist.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        Long expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        if (preconditionFails(expectedVersion, wishlistOptional.get())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+
+        Optional<Wishlist> updatedWishlist = wishlistService.updateProductInWishlist(wishlistOptional.get(), productId, product, expectedVersion);
+        return updatedWishlist.map(wl -> withETag(wl, HttpStatus.OK)).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{wishlistId}/products/{productId}")
+    @RateLimited(EndpointClass.WRITE)
     public ResponseEntity<Wishlist> removeProductFromWishlist(
             @PathVariable String wishlistId,
             @PathVariable String productId,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        // Check if user is owner or collaborator of the wishlist
-        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistById(wishlistId);
-        if (wishlistOptional.isEmpty() || (!wishlistOptional.get().getOwnerId().equals(userId) && !wishlistOptional.get().getCollaboratorIds().contains(userId))) {
+        // User must be owner or collaborator of the wishlist
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForMember(wishlistId, userId);
+        if (wishlistOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        Optional<Wishlist> updatedWishlist = wishlistService.removeProductFromWishlist(wishlistId, productId);
-        return updatedWishlist.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        Long expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        if (preconditionFails(expectedVersion, wishlistOptional.get())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+
+        Optional<Wishlist> updatedWishlist = wishlistService.removeProductFromWishlist(wishlistOptional.get(), productId, expectedVersion);
+        return updatedWishlist.map(wl -> withETag(wl, HttpStatus.OK)).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
-    // Mock invite endpoint
     @PostMapping("/{wishlistId}/invite")
+    @RateLimited(EndpointClass.WRITE)
     public ResponseEntity<?> inviteUserToWishlist(@PathVariable String wishlistId, @RequestBody Map<String, String> inviteRequest, @RequestHeader("Authorization") String tokenHeader) {
         String userId = getUserIdFromToken(tokenHeader);
         if (userId == null) {
@@ -175,29 +430,55 @@ public class WishlistController {
         }
         String invitedEmail = inviteRequest.get("email");
 
-        // For now, mock the invitation logic
-        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistById(wishlistId);
-        if (wishlistOptional.isPresent()) {
-            Wishlist wishlist = wishlistOptional.get();
-            // Ensure only owner can invite
-            if (!wishlist.getOwnerId().equals(userId)) {
+        // Ensure only owner can invite
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForOwner(wishlistId, userId);
+        if (wishlistOptional.isEmpty()) {
+            if (wishlistService.wishlistExists(wishlistId)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Only the wishlist owner can invite others."));
             }
+            return ResponseEntity.notFound().build();
+        }
+
+        // A batch of one, so it gets the same atomic set-add as bulk invites
+        Optional<BulkInviteResult> result = wishlistService.inviteCollaborators(wishlistOptional.get(), Collections.singletonList(invitedEmail));
+        if (result.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return switch (result.get().getResults().get(0).getStatus()) {
+            case INVITED -> ResponseEntity.ok(Map.of("message", "User " + invitedEmail + " invited to wishlist."));
+            case ALREADY_MEMBER -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "User " + invitedEmail + " is already a member or owner of this wishlist."));
+            case NOT_FOUND -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "User with email " + invitedEmail + " not found."));
+            case INVALID -> ResponseEntity.badRequest().body(Map.of("message", "No email given."));
+        };
+    }
+
+    // Invites many people at once; the outcome of each email is reported in request order
+    @PostMapping("/{wishlistId}/invites")
+    @RateLimited(EndpointClass.WRITE)
+    public ResponseEntity<?> inviteUsersToWishlist(@PathVariable String wishlistId, @RequestBody BulkInviteRequest request, @RequestHeader("Authorization") String tokenHeader) {
+        String userId = getUserIdFromToken(tokenHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        List<String> emails = request.getEmails();
+        if (emails == null || emails.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "No emails given."));
+        }
+        if (emails.size() > wishlistService.getMaxInvites()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "At most " + wishlistService.getMaxInvites() + " emails per request."));
+        }
 
-            Optional<User> invitedUserOptional = userService.findByEmail(invitedEmail); // Assume we have this method in UserService
-            if (invitedUserOptional.isPresent()) {
-                User invitedUser = invitedUserOptional.get();
-                if (!wishlist.getCollaboratorIds().contains(invitedUser.getId()) && !wishlist.getOwnerId().equals(invitedUser.getId())) {
-                    wishlist.getCollaboratorIds().add(invitedUser.getId());
-                    wishlistService.updateWishlist(wishlistId, wishlist); // Update to persist collaborator
-                    return ResponseEntity.ok(Map.of("message", "User " + invitedEmail + " invited to wishlist (mock update)."));
-                } else {
-                    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "User " + invitedEmail + " is already a member or owner of this wishlist."));
-                }
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "User with email " + invitedEmail + " not found."));
+        // Ensure only owner can invite
+        Optional<Wishlist> wishlistOptional = wishlistService.getWishlistForOwner(wishlistId, userId);
+        if (wishlistOptional.isEmpty()) {
+            if (wishlistService.wishlistExists(wishlistId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Only the wishlist owner can invite others."));
             }
+            return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.notFound().build();
+
+        return wishlistService.inviteCollaborators(wishlistOptional.get(), emails)
+                .<ResponseEntity<?>>map(r -> ResponseEntity.ok().eTag(ConditionalRequests.etag(r.getWishlist().getVersion())).body(r))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
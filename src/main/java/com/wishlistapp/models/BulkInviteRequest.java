@@ -0,0 +1,11 @@
+package com.wishlistapp.models;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkInviteRequest {
+    private List<String> emails = new ArrayList<>();
+}
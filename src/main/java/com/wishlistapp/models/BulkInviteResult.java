@@ -0,0 +1,13 @@
+package com.wishlistapp.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BulkInviteResult {
+    private Wishlist wishlist; // State after the invites; unchanged when nobody new was added
+    private List<InviteResult> results;
+}
@@ -0,0 +1,11 @@
+package com.wishlistapp.models;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkProductRequest {
+    private List<ProductOperation> operations = new ArrayList<>(); // Applied in order
+}
@@ -0,0 +1,13 @@
+package com.wishlistapp.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BulkProductResult {
+    private Wishlist wishlist; // State after the batch; unchanged when no operation applied
+    private List<ProductOperationResult> results;
+}
@@ -0,0 +1,20 @@
+package com.wishlistapp.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class InviteResult {
+    private String email; // As given in the request
+    private String userId; // Null when no user has that email
+    private Status status;
+
+    public enum Status {
+        @JsonProperty("invited") INVITED,
+        @JsonProperty("already_member") ALREADY_MEMBER, // Owner or existing collaborator
+        @JsonProperty("not_found") NOT_FOUND,
+        @JsonProperty("invalid") INVALID
+    }
+}
@@ -0,0 +1,57 @@
+package com.wishlistapp.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// A product of a wishlist stored in the COLLECTION layout; position keeps the wishlist's product order
+@Document(collection = "wishlist_products")
+@CompoundIndex(name = "wishlist_position", def = "{ 'wishlistId': 1, 'position': 1 }", unique = true)
+// Cheapest and dearest product of a wishlist, for the stored min/max after the current one goes; the
+// product search bounds the price range on it and checks the name terms on the index keys before fetching
+@CompoundIndex(name = "wishlist_price_name", def = "{ 'wishlistId': 1, 'price': 1, 'name': 1 }")
+@Data
+public class ProductEntry {
+    @Id
+    private String id; // The product ID, so lookups by product ID are a primary key hit
+    private String wishlistId;
+    private long position;
+    private String name;
+    private String imageUrl;
+    private double price;
+    private String addedByUserId;
+    private String addedByUsername;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastEditedAt;
+
+    public static ProductEntry of(String wishlistId, long position, Product product) {
+        ProductEntry entry = new ProductEntry();
+        entry.setId(product.getId());
+        entry.setWishlistId(wishlistId);
+        entry.setPosition(position);
+        entry.setName(product.getName());
+        entry.setImageUrl(product.getImageUrl());
+        entry.setPrice(product.getPrice());
+        entry.setAddedByUserId(product.getAddedByUserId());
+        entry.setAddedByUsername(product.getAddedByUsername());
+        entry.setCreatedAt(product.getCreatedAt());
+        entry.setLastEditedAt(product.getLastEditedAt());
+        return entry;
+    }
+
+    public Product toProduct() {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setImageUrl(imageUrl);
+        product.setPrice(price);
+        product.setAddedByUserId(addedByUserId);
+        product.setAddedByUsername(addedByUsername);
+        product.setCreatedAt(createdAt);
+        product.setLastEditedAt(lastEditedAt);
+        return product;
+    }
+}
@@ -0,0 +1,18 @@
+package com.wishlistapp.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+// One entry of a bulk product request: add needs a product, update needs productId and product, delete needs productId
+@Data
+public class ProductOperation {
+    private Type op;
+    private String productId;
+    private Product product;
+
+    public enum Type {
+        @JsonProperty("add") ADD,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE
+    }
+}
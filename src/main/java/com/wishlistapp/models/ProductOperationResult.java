@@ -0,0 +1,20 @@
+package com.wishlistapp.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProductOperationResult {
+    private int index; // Position of the operation in the request
+    private ProductOperation.Type op;
+    private String productId; // For adds, the ID the new product was given
+    private Status status;
+
+    public enum Status {
+        @JsonProperty("applied") APPLIED,
+        @JsonProperty("not_found") NOT_FOUND,
+        @JsonProperty("invalid") INVALID
+    }
+}
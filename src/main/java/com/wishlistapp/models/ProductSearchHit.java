@@ -0,0 +1,14 @@
+package com.wishlistapp.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// One matching product and the wishlist it was found in; a higher score is a better match
+@Data
+@AllArgsConstructor
+public class ProductSearchHit {
+    private String wishlistId;
+    private String wishlistTitle;
+    private Product product;
+    private int score;
+}
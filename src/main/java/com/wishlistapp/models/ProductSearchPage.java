@@ -0,0 +1,13 @@
+package com.wishlistapp.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductSearchPage {
+    private List<ProductSearchHit> items;
+    private String nextCursor; // Pass back as ?cursor= with the same query to get the next page; null on the last page
+}
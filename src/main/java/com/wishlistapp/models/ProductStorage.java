@@ -0,0 +1,9 @@
+package com.wishlistapp.models;
+
+// Where a wishlist's products live; wishlists without the field predate it and are EMBEDDED
+public enum ProductStorage {
+    // In the wishlist document's products array
+    EMBEDDED,
+    // One ProductEntry document per product in the wishlist_products collection
+    COLLECTION
+}
@@ -1,7 +1,10 @@
 package com.wishlistapp.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -14,8 +17,31 @@ public class Wishlist {
     private String id;
     private String title;
     private String description;
+    @Indexed
     private String ownerId; // User ID of the creator
     private String ownerUsername; // For display
+    @Indexed // Multikey: one entry per collaborator
     private List<String> collaboratorIds = new ArrayList<>(); // List of User IDs
     private List<Product> products = new ArrayList<>();
+    private long version; // Bumped on every mutation; documents written before it existed read as 0
+    // Aggregates over products, kept up to date by every product write so dashboards never need the products
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private int productCount;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private double totalPrice;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Double minPrice; // Null without products
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Double maxPrice;
+    @JsonIgnore
+    private ProductStorage productStorage; // Null (older documents) means EMBEDDED; products are loaded either way
+
+    // Sets the aggregates from the products in memory, for documents built or changed outside a product write
+    public void recomputeAggregates() {
+        List<Product> all = products != null ? products : List.of();
+        productCount = all.size();
+        totalPrice = all.stream().mapToDouble(Product::getPrice).sum();
+        minPrice = all.isEmpty() ? null : all.stream().mapToDouble(Product::getPrice).min().getAsDouble();
+        maxPrice = all.isEmpty() ? null : all.stream().mapToDouble(Product::getPrice).max().getAsDouble();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.wishlistapp.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+// Small delta pushed to collaborators watching a wishlist; only the fields relevant to the type are set
+@Data
+@NoArgsConstructor
+public class WishlistChangeEvent {
+
+    public enum Type {
+        PRODUCT_ADDED,
+        PRODUCT_UPDATED,
+        PRODUCT_REMOVED,
+        COLLABORATOR_INVITED,
+        METADATA_CHANGED,
+        WISHLIST_DELETED,
+        RESYNC // Deltas were dropped for this subscriber; refetch the wishlist
+    }
+
+    private Type type;
+    private String wishlistId;
+    private long version; // Wishlist version after the change
+    private Instant occurredAt;
+    private String productId;
+    private Product product;
+    private String collaboratorId;
+    private String title;
+    private String description;
+    private String ownerId;
+    private List<String> collaboratorIds;
+
+    public WishlistChangeEvent(Type type, Wishlist wishlist) {
+        this.type = type;
+        this.wishlistId = wishlist.getId();
+        this.version = wishlist.getVersion();
+        this.occurredAt = Instant.now();
+    }
+
+    // Events are shared between subscribers, so coalescing works on copies
+    public WishlistChangeEvent withType(Type newType) {
+        WishlistChangeEvent copy = new WishlistChangeEvent();
+        copy.setType(newType);
+        copy.setWishlistId(wishlistId);
+        copy.setVersion(version);
+        copy.setOccurredAt(occurredAt);
+        copy.setProductId(productId);
+        copy.setProduct(product);
+        copy.setCollaboratorId(collaboratorId);
+        copy.setTitle(title);
+        copy.setDescription(description);
+        copy.setOwnerId(ownerId);
+        copy.setCollaboratorIds(collaboratorIds);
+        return copy;
+    }
+
+    public static WishlistChangeEvent productAdded(Wishlist wishlist, Product product) {
+        WishlistChangeEvent event = new WishlistChangeEvent(Type.PRODUCT_ADDED, wishlist);
+        event.setProductId(product.getId());
+        event.setProduct(product);
+        return event;
+    }
+
+    public static WishlistChangeEvent productUpdated(Wishlist wishlist, String productId) {
+        WishlistChangeEvent event = new WishlistChangeEvent(Type.PRODUCT_UPDATED, wishlist);
+        event.setProductId(productId);
+        wishlist.getProducts().stream()
+                .filter(p -> productId.equals(p.getId()))
+                .findFirst()
+                .ifPresent(event::setProduct);
+        return event;
+    }
+
+    public static WishlistChangeEvent productRemoved(Wishlist wishlist, String productId) {
+        WishlistChangeEvent event = new WishlistChangeEvent(Type.PRODUCT_REMOVED, wishlist);
+        event.setProductId(productId);
+        return event;
+    }
+
+    public static WishlistChangeEvent collaboratorInvited(Wishlist wishlist, String collaboratorId) {
+        WishlistChangeEvent event = new WishlistChangeEvent(Type.COLLABORATOR_INVITED, wishlist);
+        event.setCollaboratorId(collaboratorId);
+        return event;
+    }
+
+    public static WishlistChangeEvent metadataChanged(Wishlist wishlist) {
+        WishlistChangeEvent event = new WishlistChangeEvent(Type.METADATA_CHANGED, wishlist);
+        event.setTitle(wishlist.getTitle());
+        event.setDescription(wishlist.getDescription());
+        event.setOwnerId(wishlist.getOwnerId());
+        event.setCollaboratorIds(wishlist.getCollaboratorIds());
+        return event;
+    }
+
+    public static WishlistChangeEvent deleted(Wishlist wishlist) {
+        return new WishlistChangeEvent(Type.WISHLIST_DELETED, wishlist);
+    }
+
+    public static WishlistChangeEvent resync(String wishlistId, long version) {
+        WishlistChangeEvent event = new WishlistChangeEvent();
+        event.setType(Type.RESYNC);
+        event.setWishlistId(wishlistId);
+        event.setVersion(version);
+        event.setOccurredAt(Instant.now());
+        return event;
+    }
+}
@@ -0,0 +1,13 @@
+package com.wishlistapp.models;
+
+import lombok.Data;
+
+// Totals across every wishlist a user owns or collaborates on, built from the stored per-wishlist aggregates
+@Data
+public class WishlistRollup {
+    private int wishlistCount;
+    private int productCount;
+    private double totalPrice;
+    private Double minPrice; // Null when none of the wishlists has products
+    private Double maxPrice;
+}
@@ -0,0 +1,16 @@
+package com.wishlistapp.models;
+
+import lombok.Data;
+
+// Lightweight dashboard view of a wishlist; built by projection, never stored
+@Data
+public class WishlistSummary {
+    private String id;
+    private String title;
+    private String ownerId;
+    private String ownerUsername;
+    private int productCount;
+    private double totalPrice;
+    private Double minPrice; // Null without products
+    private Double maxPrice;
+}
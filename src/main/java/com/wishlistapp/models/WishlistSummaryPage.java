@@ -0,0 +1,13 @@
+package com.wishlistapp.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class WishlistSummaryPage {
+    private List<WishlistSummary> items;
+    private String nextCursor; // Pass back as ?cursor= to get the next page; null on the last page
+}
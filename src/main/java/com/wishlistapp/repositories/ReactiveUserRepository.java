@@ -0,0 +1,15 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.User;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Mirrors UserRepository for the reactive profile
+@Repository
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, String> {
+    Mono<User> findByEmail(String email);
+    Mono<User> findByUsername(String username);
+    Flux<User> findTop2ByEmailOrUsername(String email, String username);
+}
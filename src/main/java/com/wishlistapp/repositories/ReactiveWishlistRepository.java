@@ -0,0 +1,21 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Wishlist;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Mirrors WishlistRepository for the reactive profile
+@Repository
+public interface ReactiveWishlistRepository extends ReactiveMongoRepository<Wishlist, String>, ReactiveWishlistRepositoryCustom {
+    Flux<Wishlist> findByOwnerIdOrCollaboratorIdsContaining(String ownerId, String collaboratorId);
+
+    @Query("{ '_id': ?0, '$or': [ { 'ownerId': ?1 }, { 'collaboratorIds': ?1 } ] }")
+    Mono<Wishlist> findByIdForMember(String id, String userId);
+
+    Mono<Wishlist> findByIdAndOwnerId(String id, String ownerId);
+
+    Mono<Long> removeById(String id);
+}
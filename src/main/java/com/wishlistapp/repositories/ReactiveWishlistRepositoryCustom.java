@@ -0,0 +1,30 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistSummary;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.AddedCollaborators;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Non-blocking counterpart of WishlistRepositoryCustom; empty Monos stand in for empty Optionals.
+// Product updates only support the EMBEDDED layout and match nothing for COLLECTION wishlists.
+public interface ReactiveWishlistRepositoryCustom {
+
+    Flux<WishlistSummary> findSummariesForMember(String userId, String afterId, int limit);
+
+    Mono<Wishlist> updateDetails(String wishlistId, String title, String description, List<String> collaboratorIds, Long expectedVersion);
+
+    // See WishlistRepositoryCustom#addCollaborators
+    Mono<AddedCollaborators> addCollaborators(String wishlistId, String ownerId, Collection<String> userIds);
+
+    Mono<Wishlist> pushProduct(String wishlistId, Product product, Long expectedVersion);
+
+    Mono<Wishlist> setProductFields(String wishlistId, String productId, Product changes, LocalDateTime editedAt, Long expectedVersion);
+
+    Mono<Wishlist> pullProduct(String wishlistId, String productId, Long expectedVersion);
+}
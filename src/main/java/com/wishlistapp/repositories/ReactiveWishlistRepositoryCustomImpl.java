@@ -0,0 +1,112 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistSummary;
+import com.wishlistapp.repositories.WishlistQueries.ProductWrite;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.AddedCollaborators;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+public class ReactiveWishlistRepositoryCustomImpl implements ReactiveWishlistRepositoryCustom {
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<WishlistSummary> findSummariesForMember(String userId, String afterId, int limit) {
+        return reactiveMongoTemplate.aggregate(WishlistQueries.summaries(userId, afterId, limit), WishlistSummary.class);
+    }
+
+    @Override
+    public Mono<Wishlist> updateDetails(String wishlistId, String title, String description, List<String> collaboratorIds, Long expectedVersion) {
+        return modify(wishlistId, WishlistQueries.byId(wishlistId), WishlistQueries.details(title, description, collaboratorIds), expectedVersion);
+    }
+
+    @Override
+    public Mono<AddedCollaborators> addCollaborators(String wishlistId, String ownerId, Collection<String> userIds) {
+        return reactiveMongoTemplate.findAndModify(Query.query(WishlistQueries.ownedWithoutAllCollaborators(wishlistId, ownerId, userIds)),
+                        WishlistQueries.addCollaborators(userIds), FindAndModifyOptions.options().returnNew(false), Wishlist.class)
+                .map(before -> AddedCollaborators.after(before, userIds))
+                // Nothing matched: a missing wishlist, another owner, or all of them already are collaborators
+                .switchIfEmpty(Mono.defer(() -> reactiveMongoTemplate.findOne(Query.query(WishlistQueries.byId(wishlistId).and("ownerId").is(ownerId)), Wishlist.class)
+                        .map(wishlist -> new AddedCollaborators(wishlist, List.of()))));
+    }
+
+    @Override
+    public Mono<Wishlist> pushProduct(String wishlistId, Product product, Long expectedVersion) {
+        return modify(wishlistId, WishlistQueries.embedded(WishlistQueries.byId(wishlistId)), WishlistQueries.push(product), expectedVersion);
+    }
+
+    @Override
+    public Mono<Wishlist> setProductFields(String wishlistId, String productId, Product changes, LocalDateTime editedAt, Long expectedVersion) {
+        return modifyProducts(wishlistId, WishlistQueries.productState(wishlistId, productId),
+                WishlistQueries.embedded(WishlistQueries.byIdWithProduct(wishlistId, productId)), expectedVersion,
+                state -> {
+                    Double oldPrice = WishlistQueries.pricesOf(state).get(productId);
+                    return oldPrice != null ? WishlistQueries.setFields(productId, changes, editedAt, oldPrice) : null;
+                });
+    }
+
+    @Override
+    public Mono<Wishlist> pullProduct(String wishlistId, String productId, Long expectedVersion) {
+        return modifyProducts(wishlistId, WishlistQueries.productState(wishlistId, productId), WishlistQueries.embedded(WishlistQueries.byId(wishlistId)), expectedVersion,
+                state -> {
+                    Double oldPrice = WishlistQueries.pricesOf(state).get(productId);
+                    return oldPrice != null ? WishlistQueries.pull(productId, oldPrice) : null;
+                });
+    }
+
+    // The reactive form of WishlistRepositoryCustomImpl#modifyProducts, for the EMBEDDED layout only; criteria already excludes the other one
+    private Mono<Wishlist> modifyProducts(String wishlistId, Query stateQuery, Criteria criteria, Long expectedVersion,
+                                          Function<Document, ProductWrite> write) {
+        return reactiveMongoTemplate.findOne(stateQuery, Document.class, reactiveMongoTemplate.getCollectionName(Wishlist.class))
+                .filter(state -> !ProductStorage.COLLECTION.name().equals(state.get("productStorage")))
+                .flatMap(state -> {
+                    if (expectedVersion != null && WishlistQueries.versionOf(state) != expectedVersion) {
+                        return Mono.error(new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion));
+                    }
+                    ProductWrite productWrite = write.apply(state);
+                    if (productWrite == null) {
+                        return Mono.empty();
+                    }
+                    Criteria guard = WishlistQueries.withVersion(WishlistQueries.withPrices(criteria, productWrite.oldPrices()), expectedVersion);
+                    return reactiveMongoTemplate.findAndModify(Query.query(guard), productWrite.update(), FindAndModifyOptions.options().returnNew(true), Wishlist.class)
+                            .flatMap(updated -> WishlistQueries.tookMinOrMax(updated, productWrite.pricesGone())
+                                    ? reactiveMongoTemplate.updateFirst(Query.query(WishlistQueries.withVersion(WishlistQueries.byId(wishlistId), updated.getVersion())),
+                                            WishlistQueries.rederiveMinMax(updated), Wishlist.class).thenReturn(updated)
+                                    : Mono.just(updated))
+                            .switchIfEmpty(Mono.defer(() -> modifyProducts(wishlistId, stateQuery, criteria, expectedVersion, write)));
+                });
+    }
+
+    private Mono<Wishlist> modify(String wishlistId, Criteria criteria, UpdateDefinition update, Long expectedVersion) {
+        Mono<Wishlist> updated = reactiveMongoTemplate.findAndModify(Query.query(WishlistQueries.withVersion(criteria, expectedVersion)), update,
+                FindAndModifyOptions.options().returnNew(true), Wishlist.class);
+        if (expectedVersion == null) {
+            return updated;
+        }
+        // Nothing matched: tell a stale version apart from a missing wishlist/product
+        Mono<Wishlist> conflictCheck = Mono.zip(
+                        reactiveMongoTemplate.exists(Query.query(WishlistQueries.byId(wishlistId)), Wishlist.class),
+                        reactiveMongoTemplate.exists(Query.query(WishlistQueries.withVersion(WishlistQueries.byId(wishlistId), expectedVersion)), Wishlist.class))
+                .flatMap(existsAndMatches -> existsAndMatches.getT1() && !existsAndMatches.getT2()
+                        ? Mono.error(new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion))
+                        : Mono.empty());
+        return updated.switchIfEmpty(conflictCheck);
+    }
+}
@@ -4,6 +4,8 @@ import com.wishlistapp.models.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +13,8 @@ import java.util.Optional;
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
+    // Login accepts either; both fields are uniquely indexed so this stays a single indexed $or
+    List<User> findTop2ByEmailOrUsername(String email, String username);
+    // Bulk invites resolve every email with one indexed $in
+    List<User> findByEmailIn(Collection<String> emails);
 }
@@ -0,0 +1,399 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductEntry;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ProductChanges;
+import org.bson.Document;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Product operations for wishlists in the {@link ProductStorage#COLLECTION} layout, where every
+ * product is its own {@link ProductEntry} document. Adding, editing or removing a product touches
+ * one small document (found by its ID, the primary key) instead of rewriting the whole array, and
+ * a wishlist is no longer bounded by Mongo's 16 MB document limit.
+ *
+ * <p>The wishlist document still carries the version: every product change also bumps it, along
+ * with {@code productSeq}, the counter that hands out product positions. There are no multi-document
+ * transactions here. With an expected version, the version is claimed first, so a change to a missing
+ * product still bumps it. Without one, the product is written first and the version bumped after.</p>
+ *
+ * <p>The stored aggregates move with the claim when a single product is added. Other changes
+ * apply their count and total deltas with {@code $inc} once the entries changed. Min and max
+ * are only re-read, from the {@code wishlistId, price} index, when the old price was one of them; that
+ * write is guarded by the claimed version so an older value never lands over a newer one. Anything
+ * lost in between is repaired by the aggregates reconciler.</p>
+ */
+@Component
+public class WishlistProductsCollection {
+
+    private static final String PRODUCT_SEQ = "productSeq";
+    private static final String MIGRATION_LEASE = "productMigrationLease";
+    // Far longer than writing the entries of even a huge wishlist takes
+    private static final Duration MIGRATION_LEASE_DURATION = Duration.ofMinutes(1);
+
+    private final MongoTemplate mongoTemplate;
+
+    public WishlistProductsCollection(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // All products of the wishlist in order; the mapping listener uses this to fill Wishlist.products on load
+    public List<Product> findAll(String wishlistId) {
+        Query query = Query.query(Criteria.where("wishlistId").is(wishlistId)).with(Sort.by("position"));
+        return mongoTemplate.find(query, ProductEntry.class).stream().map(ProductEntry::toProduct).toList();
+    }
+
+    public ProductPage findPage(String wishlistId, String cursor, int limit) {
+        Criteria criteria = Criteria.where("wishlistId").is(wishlistId);
+        if (cursor != null) {
+            criteria = criteria.and("position").gt(Long.parseLong(cursor));
+        }
+        // One extra entry tells whether another page exists
+        List<ProductEntry> entries = mongoTemplate.find(Query.query(criteria).with(Sort.by("position")).limit(limit + 1), ProductEntry.class);
+        List<ProductEntry> page = entries.size() > limit ? entries.subList(0, limit) : entries;
+        String nextCursor = entries.size() > limit ? String.valueOf(page.get(limit - 1).getPosition()) : null;
+        return new ProductPage(page.stream().map(ProductEntry::toProduct).toList(), nextCursor);
+    }
+
+    public Optional<Product> findOne(String wishlistId, String productId) {
+        Query query = Query.query(Criteria.where("id").is(productId).and("wishlistId").is(wishlistId));
+        return Optional.ofNullable(mongoTemplate.findOne(query, ProductEntry.class)).map(ProductEntry::toProduct);
+    }
+
+    public Optional<Wishlist> push(String wishlistId, Product product, Long expectedVersion) {
+        Update aggregates = new Update()
+                .inc("productCount", 1)
+                .inc("totalPrice", product.getPrice())
+                .min("minPrice", product.getPrice())
+                .max("maxPrice", product.getPrice());
+        Document claimed = claim(wishlistId, expectedVersion, 1, aggregates);
+        if (claimed == null) {
+            return Optional.empty();
+        }
+        mongoTemplate.insert(ProductEntry.of(wishlistId, productSeq(claimed), product));
+        return reload(wishlistId);
+    }
+
+    public Optional<Wishlist> setFields(String wishlistId, String productId, Product changes, LocalDateTime editedAt, Long expectedVersion) {
+        Update update = new Update()
+                .set("name", changes.getName())
+                .set("imageUrl", changes.getImageUrl())
+                .set("price", changes.getPrice())
+                .set("lastEditedAt", editedAt);
+        return changeEntries(wishlistId, expectedVersion, () -> {
+            ProductEntry before = mongoTemplate.findAndModify(entryQuery(wishlistId, productId), update, ProductEntry.class);
+            return before != null ? PriceChange.edited(List.of(before.getPrice()), List.of(changes.getPrice())) : null;
+        });
+    }
+
+    public Optional<Wishlist> setFields(String wishlistId, Map<String, Product> changesByProductId) {
+        return changeEntries(wishlistId, null, () -> {
+            // Old prices for the deltas; an edit racing in between skews them until the reconciler's next pass
+            Query existing = Query.query(Criteria.where("wishlistId").is(wishlistId).and("id").in(changesByProductId.keySet()));
+            existing.fields().include("price");
+            List<ProductEntry> before = mongoTemplate.find(existing, ProductEntry.class);
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductEntry.class);
+            changesByProductId.forEach((productId, changes) -> bulk.updateOne(entryQuery(wishlistId, productId), new Update()
+                    .set("name", changes.getName())
+                    .set("imageUrl", changes.getImageUrl())
+                    .set("price", changes.getPrice())
+                    .set("lastEditedAt", changes.getLastEditedAt())));
+            if (bulk.execute().getMatchedCount() == 0) {
+                return null;
+            }
+            return PriceChange.edited(before.stream().map(ProductEntry::getPrice).toList(),
+                    before.stream().map(entry -> changesByProductId.get(entry.getId()).getPrice()).toList());
+        });
+    }
+
+    public Optional<Wishlist> pull(String wishlistId, String productId, Long expectedVersion) {
+        return changeEntries(wishlistId, expectedVersion, () -> {
+            ProductEntry removed = mongoTemplate.findAndRemove(entryQuery(wishlistId, productId), ProductEntry.class);
+            return removed != null ? new PriceChange(-1, -removed.getPrice(), List.of(), List.of(removed.getPrice())) : null;
+        });
+    }
+
+    public Optional<Wishlist> applyChanges(String wishlistId, ProductChanges changes, Long expectedVersion) {
+        // The claim hands out the positions of the added products, so it always comes first here
+        Document claimed = claim(wishlistId, expectedVersion, changes.added().size(), new Update());
+        if (claimed == null) {
+            return Optional.empty();
+        }
+        // Old prices for the deltas; an edit racing in between skews them until the reconciler's next pass
+        Map<String, Double> oldPrices = new HashMap<>();
+        if (!changes.edits().isEmpty() || !changes.removedIds().isEmpty()) {
+            List<String> touchedIds = new ArrayList<>(changes.edits().keySet());
+            touchedIds.addAll(changes.removedIds());
+            Query existing = Query.query(Criteria.where("wishlistId").is(wishlistId).and("id").in(touchedIds));
+            existing.fields().include("price");
+            mongoTemplate.find(existing, ProductEntry.class).forEach(entry -> oldPrices.put(entry.getId(), entry.getPrice()));
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductEntry.class);
+        long position = productSeq(claimed) - changes.added().size();
+        for (Product product : changes.added()) {
+            bulk.insert(ProductEntry.of(wishlistId, ++position, product));
+        }
+        changes.edits().forEach((productId, edit) -> bulk.updateOne(entryQuery(wishlistId, productId), new Update()
+                .set("name", edit.getName())
+                .set("imageUrl", edit.getImageUrl())
+                .set("price", edit.getPrice())
+                .set("lastEditedAt", edit.getLastEditedAt())));
+        if (!changes.removedIds().isEmpty()) {
+            bulk.remove(Query.query(Criteria.where("wishlistId").is(wishlistId).and("id").in(changes.removedIds())));
+        }
+        bulk.execute();
+        applyPriceChange(wishlistId, claimed, PriceChange.of(changes, oldPrices));
+        return reload(wishlistId);
+    }
+
+    /**
+     * Moves the products of an EMBEDDED wishlist into their own documents and flips its layout.
+     * Entries are written first and ignored until the flip, which only succeeds if the wishlist
+     * hasn't changed meanwhile; otherwise the entries are deleted again, {@link OptimisticLockingFailureException}
+     * is thrown and the migration can simply be run again. The version is left alone, as nothing visible changes.
+     * A lease on the wishlist document keeps other nodes from migrating it at the same time; while
+     * one is held the wishlist is returned unchanged. Empty when the wishlist doesn't exist.
+     */
+    public Optional<Wishlist> migrate(String wishlistId) {
+        Wishlist wishlist = mongoTemplate.findById(wishlistId, Wishlist.class);
+        if (wishlist == null || wishlist.getProductStorage() == ProductStorage.COLLECTION) {
+            return Optional.ofNullable(wishlist);
+        }
+        Instant now = Instant.now();
+        Query leasable = Query.query(WishlistQueries.embedded(WishlistQueries.byId(wishlistId))
+                .orOperator(Criteria.where(MIGRATION_LEASE).exists(false), Criteria.where(MIGRATION_LEASE).lt(now)));
+        if (mongoTemplate.updateFirst(leasable, new Update().set(MIGRATION_LEASE, now.plus(MIGRATION_LEASE_DURATION)), Wishlist.class)
+                .getModifiedCount() == 0) {
+            return reload(wishlistId); // Migrated or being migrated elsewhere
+        }
+        try {
+            return migrateLeased(wishlist);
+        } catch (RuntimeException e) {
+            mongoTemplate.updateFirst(Query.query(WishlistQueries.byId(wishlistId)), new Update().unset(MIGRATION_LEASE), Wishlist.class);
+            throw e;
+        }
+    }
+
+    private Optional<Wishlist> migrateLeased(Wishlist wishlist) {
+        String wishlistId = wishlist.getId();
+        deleteAll(wishlistId); // Leftovers of an attempt that never got to clean up (a node that died mid-migration)
+        List<Product> products = wishlist.getProducts() != null ? wishlist.getProducts() : List.of();
+        boolean flipped = false;
+        try {
+            if (!products.isEmpty()) {
+                List<ProductEntry> entries = new ArrayList<>(products.size());
+                for (int i = 0; i < products.size(); i++) {
+                    entries.add(ProductEntry.of(wishlistId, i + 1, products.get(i)));
+                }
+                mongoTemplate.insert(entries, ProductEntry.class);
+            }
+            Query unchanged = Query.query(WishlistQueries.withVersion(WishlistQueries.embedded(WishlistQueries.byId(wishlistId)), wishlist.getVersion()));
+            wishlist.recomputeAggregates();
+            Update flip = setAggregates(new Update(), wishlist.getProductCount(), wishlist.getTotalPrice(), wishlist.getMinPrice(), wishlist.getMaxPrice())
+                    .set("productStorage", ProductStorage.COLLECTION)
+                    .set(PRODUCT_SEQ, (long) products.size())
+                    .unset("products")
+                    .unset(MIGRATION_LEASE);
+            flipped = mongoTemplate.updateFirst(unchanged, flip, Wishlist.class).getModifiedCount() > 0;
+        } finally {
+            if (!flipped) {
+                discardUnflippedEntries(wishlistId);
+            }
+        }
+        if (!flipped) {
+            throw new OptimisticLockingFailureException("Wishlist " + wishlistId + " changed while its products were being migrated");
+        }
+        return reload(wishlistId);
+    }
+
+    // The wishlist still reads its embedded products, so the copies would only pile up. A flip whose
+    // outcome is unknown (the write errored) may have landed, in which case the entries are the products.
+    private void discardUnflippedEntries(String wishlistId) {
+        if (!mongoTemplate.exists(Query.query(WishlistQueries.inCollectionLayout(wishlistId)), Wishlist.class)) {
+            deleteAll(wishlistId);
+        }
+    }
+
+    public void deleteAll(String wishlistId) {
+        mongoTemplate.remove(Query.query(Criteria.where("wishlistId").is(wishlistId)), ProductEntry.class);
+    }
+
+    // Aggregates per wishlist computed from the entries; wishlists without entries are missing from the map
+    public Map<String, Document> aggregatesOf(Collection<String> wishlistIds) {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("wishlistId", new Document("$in", wishlistIds))),
+                new Document("$group", new Document("_id", "$wishlistId")
+                        .append("productCount", new Document("$sum", 1))
+                        .append("totalPrice", new Document("$sum", "$price"))
+                        .append("minPrice", new Document("$min", "$price"))
+                        .append("maxPrice", new Document("$max", "$price"))));
+        Map<String, Document> aggregates = new HashMap<>();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(ProductEntry.class)).aggregate(pipeline)
+                .forEach(document -> aggregates.put(document.getString("_id"), document));
+        return aggregates;
+    }
+
+    // What an entry change did to the prices; the change returns null when it matched nothing
+    private record PriceChange(int countDelta, double totalDelta, List<Double> newPrices, List<Double> oldPrices) {
+
+        // Only prices that actually changed can have taken away the stored min or max
+        static PriceChange edited(List<Double> oldPrices, List<Double> newPrices) {
+            double delta = 0;
+            List<Double> changedOld = new ArrayList<>();
+            for (int i = 0; i < oldPrices.size(); i++) {
+                delta += newPrices.get(i) - oldPrices.get(i);
+                if (Double.compare(oldPrices.get(i), newPrices.get(i)) != 0) {
+                    changedOld.add(oldPrices.get(i));
+                }
+            }
+            return new PriceChange(0, delta, newPrices, changedOld);
+        }
+
+        // Edits and removals only count for the products that existed, which are the ones with an old price
+        static PriceChange of(ProductChanges changes, Map<String, Double> oldPrices) {
+            List<Double> newPrices = new ArrayList<>(changes.added().stream().map(Product::getPrice).toList());
+            List<Double> editedOld = new ArrayList<>();
+            List<Double> editedNew = new ArrayList<>();
+            changes.edits().forEach((productId, edit) -> {
+                Double old = oldPrices.get(productId);
+                if (old != null) {
+                    editedOld.add(old);
+                    editedNew.add(edit.getPrice());
+                }
+            });
+            PriceChange edited = edited(editedOld, editedNew);
+            newPrices.addAll(edited.newPrices());
+            List<Double> removed = changes.removedIds().stream().map(oldPrices::get).filter(Objects::nonNull).toList();
+            List<Double> oldPricesGone = new ArrayList<>(edited.oldPrices());
+            oldPricesGone.addAll(removed);
+            double totalDelta = edited.totalDelta()
+                    + changes.added().stream().mapToDouble(Product::getPrice).sum()
+                    - removed.stream().mapToDouble(Double::doubleValue).sum();
+            return new PriceChange(changes.added().size() - removed.size(), totalDelta, newPrices, oldPricesGone);
+        }
+    }
+
+    // Runs an entry change and bumps the wishlist version around it, in the order described on the class
+    private Optional<Wishlist> changeEntries(String wishlistId, Long expectedVersion, Supplier<PriceChange> change) {
+        Document claimed;
+        PriceChange priceChange;
+        if (expectedVersion != null) {
+            claimed = claim(wishlistId, expectedVersion, 0, new Update());
+            if (claimed == null || (priceChange = change.get()) == null) {
+                return Optional.empty();
+            }
+        } else {
+            if ((priceChange = change.get()) == null) {
+                return Optional.empty();
+            }
+            claimed = claim(wishlistId, null, 0, new Update());
+            if (claimed == null) {
+                return Optional.empty();
+            }
+        }
+        applyPriceChange(wishlistId, claimed, priceChange);
+        return reload(wishlistId);
+    }
+
+    // Bumps the version (and productSeq by seqIncrement) along with the given changes; null when the
+    // wishlist is gone or not in this layout
+    private Document claim(String wishlistId, Long expectedVersion, int seqIncrement, Update update) {
+        Query query = Query.query(WishlistQueries.withVersion(WishlistQueries.inCollectionLayout(wishlistId), expectedVersion));
+        // Only the counters come back, so the claim doesn't load the products
+        query.fields().include("version", PRODUCT_SEQ);
+        update.inc("version", 1);
+        if (seqIncrement > 0) {
+            update.inc(PRODUCT_SEQ, seqIncrement);
+        }
+        Document claimed = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                Document.class, mongoTemplate.getCollectionName(Wishlist.class));
+        if (claimed == null && expectedVersion != null
+                && mongoTemplate.exists(Query.query(WishlistQueries.inCollectionLayout(wishlistId)), Wishlist.class)) {
+            throw new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion);
+        }
+        return claimed;
+    }
+
+    // Increments commute with concurrent writes, so they need no guard
+    private void applyPriceChange(String wishlistId, Document claimed, PriceChange change) {
+        Update update = new Update().inc("productCount", change.countDelta()).inc("totalPrice", change.totalDelta());
+        if (!change.newPrices().isEmpty()) {
+            update.min("minPrice", Collections.min(change.newPrices())).max("maxPrice", Collections.max(change.newPrices()));
+        }
+        Query query = Query.query(WishlistQueries.inCollectionLayout(wishlistId));
+        query.fields().include("minPrice", "maxPrice");
+        Document after = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                Document.class, mongoTemplate.getCollectionName(Wishlist.class));
+        if (after == null) {
+            return;
+        }
+        Number min = after.get("minPrice", Number.class);
+        Number max = after.get("maxPrice", Number.class);
+        if (change.oldPrices().stream().anyMatch(price -> (min != null && price == min.doubleValue()) || (max != null && price == max.doubleValue()))) {
+            refreshMinMax(wishlistId, claimed);
+        }
+    }
+
+    // Two index hits; skipped when a later write already claimed a newer version
+    private void refreshMinMax(String wishlistId, Document claimed) {
+        ProductEntry cheapest = extremeEntry(wishlistId, Sort.Direction.ASC);
+        ProductEntry dearest = extremeEntry(wishlistId, Sort.Direction.DESC);
+        Query current = Query.query(WishlistQueries.withVersion(WishlistQueries.inCollectionLayout(wishlistId), claimed.get("version", Number.class).longValue()));
+        Update update = cheapest == null || dearest == null
+                ? new Update().unset("minPrice").unset("maxPrice")
+                : new Update().set("minPrice", cheapest.getPrice()).set("maxPrice", dearest.getPrice());
+        mongoTemplate.updateFirst(current, update, Wishlist.class);
+    }
+
+    private ProductEntry extremeEntry(String wishlistId, Sort.Direction direction) {
+        Query query = Query.query(Criteria.where("wishlistId").is(wishlistId)).with(Sort.by(direction, "price")).limit(1);
+        query.fields().include("price");
+        return mongoTemplate.findOne(query, ProductEntry.class);
+    }
+
+    // Without products min and max are absent rather than null: $min would never replace a null
+    private static Update setAggregates(Update update, Object productCount, Object totalPrice, Object minPrice, Object maxPrice) {
+        update.set("productCount", productCount).set("totalPrice", totalPrice);
+        if (minPrice == null) {
+            return update.unset("minPrice").unset("maxPrice");
+        }
+        return update.set("minPrice", minPrice).set("maxPrice", maxPrice);
+    }
+
+    private Optional<Wishlist> reload(String wishlistId) {
+        return Optional.ofNullable(mongoTemplate.findById(wishlistId, Wishlist.class));
+    }
+
+    private static Query entryQuery(String wishlistId, String productId) {
+        return Query.query(Criteria.where("id").is(productId).and("wishlistId").is(wishlistId));
+    }
+
+    private static long productSeq(Document claimed) {
+        Number seq = claimed.get(PRODUCT_SEQ, Number.class);
+        return seq != null ? seq.longValue() : 0;
+    }
+}
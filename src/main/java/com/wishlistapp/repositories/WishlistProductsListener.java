@@ -0,0 +1,33 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+
+/**
+ * Fills {@code products} of wishlists in the COLLECTION layout from their own collection whenever
+ * one is loaded, so every read (derived queries included) sees the same shape in both layouts.
+ * Projections that leave out {@code productStorage}, like the version-only ones, load nothing.
+ */
+@Component
+@Profile("!reactive") // Blocking reads; the reactive repositories only support the EMBEDDED layout
+public class WishlistProductsListener extends AbstractMongoEventListener<Wishlist> {
+
+    private final WishlistProductsCollection productsCollection;
+
+    public WishlistProductsListener(WishlistProductsCollection productsCollection) {
+        this.productsCollection = productsCollection;
+    }
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<Wishlist> event) {
+        if (ProductStorage.COLLECTION.name().equals(event.getDocument().get("productStorage"))) {
+            event.getSource().setProducts(new ArrayList<>(productsCollection.findAll(event.getSource().getId())));
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ProductChanges;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.TypeInformation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Query and update shapes shared by the blocking and reactive wishlist repositories
+final class WishlistQueries {
+
+    // A term starts a word: at the start of the name or after anything but a letter or digit
+    private static final String WORD_START = "(^|[^\\p{L}\\p{N}])";
+    private static final String WORD_END = "($|[^\\p{L}\\p{N}])";
+
+    private WishlistQueries() {
+    }
+
+    // The stored key rather than the property: queries read as raw Documents have no entity to map "id" with
+    static Criteria byId(String wishlistId) {
+        return Criteria.where("_id").is(wishlistId);
+    }
+
+    static Criteria member(String userId) {
+        return new Criteria().orOperator(
+                Criteria.where("ownerId").is(userId),
+                Criteria.where("collaboratorIds").is(userId));
+    }
+
+    static Criteria byIdWithProduct(String wishlistId, String productId) {
+        return Criteria.where("id").is(wishlistId).and("products.id").is(productId);
+    }
+
+    // Guards the array updates so they never touch a wishlist whose products live in their own collection
+    static Criteria embedded(Criteria criteria) {
+        return criteria.and("productStorage").ne(ProductStorage.COLLECTION);
+    }
+
+    static Criteria inCollectionLayout(String wishlistId) {
+        return byId(wishlistId).and("productStorage").is(ProductStorage.COLLECTION);
+    }
+
+    static Criteria withVersion(Criteria criteria, Long expectedVersion) {
+        return expectedVersion == null ? criteria : new Criteria().andOperator(criteria, versionIs(expectedVersion));
+    }
+
+    static Criteria versionIs(long expectedVersion) {
+        if (expectedVersion == 0) {
+            // Documents created before versioning have no field at all
+            return new Criteria().orOperator(Criteria.where("version").is(0L), Criteria.where("version").exists(false));
+        }
+        return Criteria.where("version").is(expectedVersion);
+    }
+
+    static TypedAggregation<Wishlist> summaries(String userId, String afterId, int limit) {
+        Criteria criteria = member(userId);
+        if (afterId != null) {
+            criteria = new Criteria().andOperator(criteria, Criteria.where("id").gt(afterId));
+        }
+        return Aggregation.newAggregation(Wishlist.class,
+                Aggregation.match(criteria),
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "id")),
+                Aggregation.limit(limit),
+                summaryProjection());
+    }
+
+    // Every summary of the user, for the rollup
+    static TypedAggregation<Wishlist> summaries(String userId) {
+        return Aggregation.newAggregation(Wishlist.class, Aggregation.match(member(userId)), summaryProjection());
+    }
+
+    private static ProjectionOperation summaryProjection() {
+        // The stored aggregates; documents written before they existed fall back to computing them
+        // server-side, so the products array never leaves Mongo either way
+        return Aggregation.project("title", "ownerId", "ownerUsername")
+                .and(ConditionalOperators.ifNull("productCount")
+                        .thenValueOf(ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull("products").then(List.of())))).as("productCount")
+                .and(ConditionalOperators.ifNull("totalPrice").thenValueOf(AccumulatorOperators.Sum.sumOf("products.price"))).as("totalPrice")
+                .and(ConditionalOperators.ifNull("minPrice").thenValueOf(AccumulatorOperators.Min.minOf("products.price"))).as("minPrice")
+                .and(ConditionalOperators.ifNull("maxPrice").thenValueOf(AccumulatorOperators.Max.maxOf("products.price"))).as("maxPrice");
+    }
+
+    /**
+     * Ranked search over the products of the user's wishlists, in both storage layouts. The search
+     * starts from the membership indexes (ownerId, collaboratorIds). Embedded products are unwound
+     * from those documents, skipping wishlists without a single matching product up front; wishlists
+     * in the COLLECTION layout join their own products through the {@code wishlistId, price, name}
+     * index, with the price range as index bounds, the terms checked on the index keys, and the
+     * {@code $unwind} right after the join (which Mongo folds into the {@code $lookup}), so the matches
+     * never form one array however large the wishlist (MongoDB 5.0+). Only the layout a wishlist is in is read, so leftover copies
+     * in the other one never show up. Every term must start a word of the name. Names score 1 per
+     * term, 2 more per term that is a whole word, and 3 more when the name starts with the whole
+     * query. Without terms all hits score 0 and come cheapest first.
+     */
+    static List<Document> productSearch(String userId, List<String> terms, Double minPrice, Double maxPrice,
+                                        String wishlistsCollection, String productsCollection, long offset, int limit) {
+        Document member = new Document("$or", List.of(new Document("ownerId", userId), new Document("collaboratorIds", userId)));
+        List<Document> pipeline = new ArrayList<>();
+        List<Document> embedded = new ArrayList<>(List.of(member,
+                new Document("productStorage", new Document("$ne", ProductStorage.COLLECTION.name()))));
+        Document productFilter = productFilter("", terms, minPrice, maxPrice);
+        if (productFilter != null) {
+            embedded.add(new Document("products", new Document("$elemMatch", productFilter)));
+        }
+        pipeline.add(new Document("$match", new Document("$and", embedded)));
+        pipeline.add(new Document("$project", new Document("title", 1).append("product", "$products")));
+        pipeline.add(new Document("$unwind", "$product"));
+        Document unwoundFilter = productFilter("product.", terms, minPrice, maxPrice);
+        if (unwoundFilter != null) {
+            pipeline.add(new Document("$match", unwoundFilter));
+        }
+        pipeline.add(new Document("$unionWith", new Document("coll", wishlistsCollection).append("pipeline", List.of(
+                new Document("$match", new Document("$and", List.of(member,
+                        new Document("productStorage", ProductStorage.COLLECTION.name())))),
+                new Document("$project", new Document("title", 1)),
+                new Document("$lookup", new Document("from", productsCollection)
+                        .append("localField", "_id")
+                        .append("foreignField", "wishlistId")
+                        .append("pipeline", productFilter != null ? List.of(new Document("$match", productFilter)) : List.of())
+                        .append("as", "product")),
+                new Document("$unwind", "$product")))));
+        Document sort;
+        if (terms.isEmpty()) {
+            pipeline.add(new Document("$addFields", new Document("score", 0)));
+            sort = new Document("product.price", 1).append("product._id", 1);
+        } else {
+            List<Object> score = new ArrayList<>();
+            for (String term : terms) {
+                String escaped = regexEscape(term);
+                score.add(1);
+                score.add(new Document("$cond", List.of(nameMatches(WORD_START + escaped + WORD_END), 2, 0)));
+            }
+            score.add(new Document("$cond", List.of(nameMatches("^" + regexEscape(String.join(" ", terms))), 3, 0)));
+            pipeline.add(new Document("$addFields", new Document("score", new Document("$add", score))));
+            sort = new Document("score", -1).append("product.name", 1).append("product._id", 1);
+        }
+        pipeline.add(new Document("$sort", sort));
+        pipeline.add(new Document("$skip", offset));
+        pipeline.add(new Document("$limit", limit));
+        return pipeline;
+    }
+
+    // The price range and every term as one filter on a product, null when there is nothing to filter on
+    private static Document productFilter(String prefix, List<String> terms, Double minPrice, Double maxPrice) {
+        List<Document> filters = new ArrayList<>();
+        if (minPrice != null || maxPrice != null) {
+            Document range = new Document();
+            if (minPrice != null) {
+                range.append("$gte", minPrice);
+            }
+            if (maxPrice != null) {
+                range.append("$lte", maxPrice);
+            }
+            filters.add(new Document(prefix + "price", range));
+        }
+        for (String term : terms) {
+            filters.add(new Document(prefix + "name", new Document("$regex", WORD_START + regexEscape(term)).append("$options", "i")));
+        }
+        return filters.isEmpty() ? null : new Document("$and", filters);
+    }
+
+    private static Document nameMatches(String regex) {
+        return new Document("$regexMatch", new Document("input", new Document("$ifNull", List.of("$product.name", "")))
+                .append("regex", regex)
+                .append("options", "i"));
+    }
+
+    private static String regexEscape(String literal) {
+        return literal.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
+    static Update details(String title, String description, List<String> collaboratorIds) {
+        // Leaves the products array alone, so concurrent product edits survive a details update
+        return new Update()
+                .set("title", title)
+                .set("description", description)
+                .set("collaboratorIds", collaboratorIds)
+                .inc("version", 1);
+    }
+
+    // Matches only while at least one of the users is not a collaborator yet, so a no-op invite writes nothing
+    static Criteria ownedWithoutAllCollaborators(String wishlistId, String ownerId, Collection<String> userIds) {
+        return Criteria.where("id").is(wishlistId).and("ownerId").is(ownerId).and("collaboratorIds").not().all(userIds);
+    }
+
+    static Update addCollaborators(Collection<String> userIds) {
+        // A set-add rather than a rewrite of the list, so concurrent invites can't drop each other's users
+        return new Update()
+                .addToSet("collaboratorIds").each(userIds.toArray())
+                .inc("version", 1);
+    }
+
+
+    /*
+     * Embedded product writes touch only the elements they change ($push, the positional operator,
+     * array filters, $pull) and move the stored aggregates in the same update: count and total by
+     * their delta, min and max by $min/$max with the new prices. Except for an append, the delta
+     * needs the old prices, read beforehand (productState, productPrices); the write is then guarded
+     * by those products still having them (withPrices), so writes to other products of the same
+     * wishlist never make it retry. A price that leaves the array may have been the stored min or
+     * max; only then are those re-derived after the write (rederiveMinMax).
+     */
+
+    // The update, the old prices its deltas were computed from (product ID to price), and those of them it
+    // takes out of the array (removed, or edited to another price)
+    record ProductWrite(UpdateDefinition update, Map<String, Double> oldPrices, List<Double> pricesGone) {
+    }
+
+    // Matches while every product still has the price the write's deltas were computed from
+    static Criteria withPrices(Criteria criteria, Map<String, Double> oldPrices) {
+        if (oldPrices.isEmpty()) {
+            return criteria;
+        }
+        List<Criteria> unchanged = new ArrayList<>(oldPrices.size() + 1);
+        unchanged.add(criteria);
+        // Stored key of Product.id, as in the array filters
+        oldPrices.forEach((productId, price) -> unchanged.add(Criteria.where("products").elemMatch(Criteria.where("_id").is(productId).and("price").is(price))));
+        return new Criteria().andOperator(unchanged);
+    }
+
+    // Needs no old price and so no guard. Documents written before the aggregates existed get them wrong
+    // here until the reconciler's first pass backfills them
+    static Update push(Product product) {
+        return aggregates(new Update().push("products", product), 1, product.getPrice(), List.of(product.getPrice()));
+    }
+
+    // The positional operator targets the element matched by products.id in the query, see byIdWithProduct
+    static ProductWrite setFields(String productId, Product changes, LocalDateTime editedAt, double oldPrice) {
+        Update update = new Update()
+                .set("products.$.name", changes.getName())
+                .set("products.$.imageUrl", changes.getImageUrl())
+                .set("products.$.price", changes.getPrice())
+                .set("products.$.lastEditedAt", editedAt);
+        return new ProductWrite(aggregates(update, 0, changes.getPrice() - oldPrice, List.of(changes.getPrice())),
+                Map.of(productId, oldPrice), changedPrices(List.of(oldPrice), List.of(changes.getPrice())));
+    }
+
+    // Edits of the products among oldPrices (ID to price); null when none of them is left
+    static ProductWrite setFields(Map<String, Product> changesByProductId, Map<String, Double> oldPrices) {
+        Map<String, Product> edits = present(changesByProductId, oldPrices);
+        if (edits.isEmpty()) {
+            return null;
+        }
+        Update update = edit(new Update(), edits);
+        List<Double> before = edits.keySet().stream().map(oldPrices::get).toList();
+        List<Double> after = edits.values().stream().map(Product::getPrice).toList();
+        return new ProductWrite(aggregates(update, 0, sum(after) - sum(before), after), pricesOf(edits.keySet(), oldPrices),
+                changedPrices(before, after));
+    }
+
+    static ProductWrite pull(String productId, double oldPrice) {
+        // Query documents reach the driver unmapped, so they name the stored key of Product.id
+        Update update = new Update().pull("products", new Document("_id", productId));
+        return new ProductWrite(aggregates(update, -1, -oldPrice, List.of()), Map.of(productId, oldPrice), List.of(oldPrice));
+    }
+
+    /**
+     * Removals, then edits, then appends, each keyed by product ID, so only what the batch changed is
+     * sent; edits and removals of products missing from {@code oldPrices} are skipped. A batch of a
+     * single kind is one classic update. Mongo rejects $push, $pull and positional $set on the same
+     * array in one update, so a mixed batch is a pipeline update (MongoDB 4.2+) instead, which rewrites
+     * the array by an expression but still moves the aggregates by the delta. Pipeline values reach
+     * the driver unmapped, so they go through the converter here, and every literal is wrapped in
+     * $literal so a name starting with '$' is never read as a field path.
+     */
+    static ProductWrite applyChanges(ProductChanges changes, Map<String, Double> oldPrices, MongoConverter converter) {
+        Map<String, Product> edits = present(changes.edits(), oldPrices);
+        List<String> removedIds = changes.removedIds().stream().filter(oldPrices::containsKey).toList();
+        List<Double> editedBefore = edits.keySet().stream().map(oldPrices::get).toList();
+        List<Double> editedAfter = edits.values().stream().map(Product::getPrice).toList();
+        List<Double> removed = removedIds.stream().map(oldPrices::get).toList();
+        List<Double> newPrices = new ArrayList<>(changes.added().stream().map(Product::getPrice).toList());
+        newPrices.addAll(editedAfter);
+        List<Double> pricesGone = new ArrayList<>(changedPrices(editedBefore, editedAfter));
+        pricesGone.addAll(removed);
+        Map<String, Double> pricesRead = pricesOf(edits.keySet(), oldPrices);
+        pricesRead.putAll(pricesOf(removedIds, oldPrices));
+        int countDelta = changes.added().size() - removedIds.size();
+        double totalDelta = sum(newPrices) - sum(editedBefore) - sum(removed);
+
+        int kinds = (changes.added().isEmpty() ? 0 : 1) + (edits.isEmpty() ? 0 : 1) + (removedIds.isEmpty() ? 0 : 1);
+        if (kinds <= 1) {
+            Update update = new Update();
+            if (!changes.added().isEmpty()) {
+                update.push("products").each(changes.added().toArray());
+            } else if (!edits.isEmpty()) {
+                edit(update, edits);
+            } else if (!removedIds.isEmpty()) {
+                update.pull("products", new Document("_id", new Document("$in", removedIds)));
+            }
+            return new ProductWrite(aggregates(update, countDelta, totalDelta, newPrices), pricesRead, pricesGone);
+        }
+
+        Object products = new Document("$ifNull", List.of("$products", List.of()));
+        if (!removedIds.isEmpty()) {
+            products = new Document("$filter", new Document("input", products)
+                    .append("cond", new Document("$not", List.of(new Document("$in",
+                            List.of("$$this._id", new Document("$literal", removedIds)))))));
+        }
+        if (!edits.isEmpty()) {
+            products = edited(products, edits, converter);
+        }
+        if (!changes.added().isEmpty()) {
+            products = new Document("$concatArrays", List.of(products,
+                    new Document("$literal", converter.convertToMongoType(changes.added(), TypeInformation.of(Product.class)))));
+        }
+        Document aggregates = new Document("productCount", increment("$productCount", countDelta))
+                .append("totalPrice", increment("$totalPrice", totalDelta))
+                .append("version", increment("$version", 1L));
+        if (!newPrices.isEmpty()) {
+            // Unlike the update operator, the expression ignores a missing min or max
+            aggregates.append("minPrice", new Document("$min", List.of("$minPrice", Collections.min(newPrices))))
+                    .append("maxPrice", new Document("$max", List.of("$maxPrice", Collections.max(newPrices))));
+        }
+        Object updatedProducts = products;
+        return new ProductWrite(AggregationUpdate.from(List.of(
+                context -> new Document("$set", new Document("products", updatedProducts)),
+                context -> new Document("$set", aggregates))), pricesRead, pricesGone);
+    }
+
+    private static Update aggregates(Update update, int countDelta, double totalDelta, List<Double> newPrices) {
+        if (countDelta != 0) {
+            update.inc("productCount", countDelta);
+        }
+        update.inc("totalPrice", totalDelta);
+        if (!newPrices.isEmpty()) {
+            update.min("minPrice", Collections.min(newPrices)).max("maxPrice", Collections.max(newPrices));
+        }
+        return update.inc("version", 1);
+    }
+
+    // One filtered positional operator per product; the edit time travels in each change
+    private static Update edit(Update update, Map<String, Product> changesByProductId) {
+        int index = 0;
+        for (Map.Entry<String, Product> change : changesByProductId.entrySet()) {
+            String identifier = "p" + index++;
+            String path = "products.$[" + identifier + "].";
+            update.set(path + "name", change.getValue().getName())
+                    .set(path + "imageUrl", change.getValue().getImageUrl())
+                    .set(path + "price", change.getValue().getPrice())
+                    .set(path + "lastEditedAt", change.getValue().getLastEditedAt())
+                    // Array filters reach the driver unmapped, so they name the stored key of Product.id
+                    .filterArray(Criteria.where(identifier + "._id").is(change.getKey()));
+        }
+        return update;
+    }
+
+    private static Document edited(Object products, Map<String, Product> changesByProductId, MongoConverter converter) {
+        // One branch per product
+        List<Document> branches = new ArrayList<>(changesByProductId.size());
+        changesByProductId.forEach((productId, changes) -> branches.add(new Document("case",
+                new Document("$eq", List.of("$$this._id", new Document("$literal", productId))))
+                .append("then", new Document("$mergeObjects", List.of("$$this", editOf(changes, converter))))));
+        return new Document("$map", new Document("input", products)
+                .append("in", new Document("$switch", new Document("branches", branches).append("default", "$$this"))));
+    }
+
+    // The same fields a single-product update sets
+    private static Document editOf(Product changes, MongoConverter converter) {
+        Document edit = new Document("name", changes.getName())
+                .append("imageUrl", changes.getImageUrl())
+                .append("price", changes.getPrice())
+                .append("lastEditedAt", converter.convertToMongoType(changes.getLastEditedAt()));
+        return new Document("$literal", edit);
+    }
+
+    private static Document increment(String field, Number delta) {
+        return new Document("$add", List.of(new Document("$ifNull", List.of(field, 0)), delta));
+    }
+
+    private static Map<String, Product> present(Map<String, Product> changesByProductId, Map<String, Double> oldPrices) {
+        Map<String, Product> present = new LinkedHashMap<>();
+        changesByProductId.forEach((productId, changes) -> {
+            if (oldPrices.containsKey(productId)) {
+                present.put(productId, changes);
+            }
+        });
+        return present;
+    }
+
+    // Only prices that actually changed can have taken away the stored min or max
+    private static List<Double> changedPrices(List<Double> before, List<Double> after) {
+        List<Double> changed = new ArrayList<>();
+        for (int i = 0; i < before.size(); i++) {
+            if (Double.compare(before.get(i), after.get(i)) != 0) {
+                changed.add(before.get(i));
+            }
+        }
+        return changed;
+    }
+
+    private static Map<String, Double> pricesOf(Collection<String> productIds, Map<String, Double> prices) {
+        Map<String, Double> selected = new LinkedHashMap<>();
+        productIds.forEach(productId -> selected.put(productId, prices.get(productId)));
+        return selected;
+    }
+
+    private static double sum(List<Double> prices) {
+        return prices.stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    // The version and layout a product write starts from, with products holding only the product with this ID
+    static Query productState(String wishlistId, String productId) {
+        Query query = Query.query(byId(wishlistId));
+        query.fields().include("version", "productStorage").elemMatch("products", Criteria.where("_id").is(productId));
+        return query;
+    }
+
+    // The same, with the ID and price of every product
+    static Query productPrices(String wishlistId) {
+        Query query = Query.query(byId(wishlistId));
+        query.fields().include("version", "productStorage", "products._id", "products.price");
+        return query;
+    }
+
+    // Product ID to price, in stored order
+    static Map<String, Double> pricesOf(Document state) {
+        Map<String, Double> prices = new LinkedHashMap<>();
+        state.getList("products", Document.class, List.of())
+                .forEach(product -> prices.put(product.getString("_id"), product.get("price", Number.class).doubleValue()));
+        return prices;
+    }
+
+    static long versionOf(Document state) {
+        Number version = state.get("version", Number.class);
+        return version != null ? version.longValue() : 0;
+    }
+
+    // Asked of the document the write returned: its min and max are the stored ones at the time of the write, after $min/$max
+    static boolean tookMinOrMax(Wishlist updated, List<Double> pricesGone) {
+        Double min = updated.getMinPrice();
+        Double max = updated.getMaxPrice();
+        return pricesGone.stream().anyMatch(price -> (min != null && price == min.doubleValue()) || (max != null && price == max.doubleValue()));
+    }
+
+    /**
+     * Sets min and max of the wishlist a product write returned from its products, and returns the
+     * update storing them. Without products they are absent rather than null: $min would never
+     * replace a null.
+     */
+    static Update rederiveMinMax(Wishlist updated) {
+        List<Product> products = updated.getProducts() != null ? updated.getProducts() : List.of();
+        updated.setMinPrice(products.isEmpty() ? null : products.stream().mapToDouble(Product::getPrice).min().getAsDouble());
+        updated.setMaxPrice(products.isEmpty() ? null : products.stream().mapToDouble(Product::getPrice).max().getAsDouble());
+        if (updated.getMinPrice() == null) {
+            return new Update().unset("minPrice").unset("maxPrice");
+        }
+        return new Update().set("minPrice", updated.getMinPrice()).set("maxPrice", updated.getMaxPrice());
+    }
+
+    // Recomputes the aggregates from the stored products; run by the reconciler to find drift
+    static Document aggregatesOfProducts() {
+        return new Document("productCount", new Document("$size", new Document("$ifNull", List.of("$products", List.of()))))
+                .append("totalPrice", new Document("$sum", "$products.price"))
+                .append("minPrice", new Document("$min", "$products.price"))
+                .append("maxPrice", new Document("$max", "$products.price"));
+    }
+}
@@ -2,11 +2,29 @@ package com.wishlistapp.repositories;
 
 import com.wishlistapp.models.Wishlist;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface WishlistRepository extends MongoRepository<Wishlist, String> {
+public interface WishlistRepository extends MongoRepository<Wishlist, String>, WishlistRepositoryCustom {
     List<Wishlist> findByOwnerIdOrCollaboratorIdsContaining(String ownerId, String collaboratorId);
-}
\ No newline at end of file
+
+    @Query("{ '_id': ?0, '$or': [ { 'ownerId': ?1 }, { 'collaboratorIds': ?1 } ] }")
+    Optional<Wishlist> findByIdForMember(String id, String userId);
+
+    Optional<Wishlist> findByIdAndOwnerId(String id, String ownerId);
+
+    // Version-only projections for conditional GETs: no products are read or decoded
+    @Query(value = "{ '_id': ?0, '$or': [ { 'ownerId': ?1 }, { 'collaboratorIds': ?1 } ] }", fields = "{ 'version': 1 }")
+    Optional<Wishlist> findVersionForMember(String id, String userId);
+
+    @Query(value = "{ '$or': [ { 'ownerId': ?0 }, { 'collaboratorIds': ?0 } ] }", fields = "{ 'version': 1 }")
+    List<Wishlist> findVersionsForMember(String userId);
+
+    long removeById(String id);
+
+    long removeByIdAndVersion(String id, long version);
+}
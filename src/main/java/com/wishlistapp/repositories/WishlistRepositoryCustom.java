@@ -0,0 +1,98 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.ProductSearchPage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistSummary;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Server-side atomic updates on the products of a wishlist, in either ProductStorage layout. A non-null
+// expectedVersion makes the write conditional and raises OptimisticLockingFailureException when the
+// stored version moved on.
+public interface WishlistRepositoryCustom {
+
+    // Wishlists the user owns or collaborates on with only the given properties (dotted paths) loaded
+    List<Wishlist> findForMember(String userId, Collection<String> fields);
+
+    // Summaries of wishlists the user owns or collaborates on, ordered by ID, starting after afterId (exclusive)
+    List<WishlistSummary> findSummariesForMember(String userId, String afterId, int limit);
+
+    // All of them, unordered
+    List<WishlistSummary> findSummariesForMember(String userId);
+
+    /**
+     * Recomputes the aggregates of up to {@code limit} wishlists after {@code afterId} (by ID, null to
+     * start at the beginning) from their products and rewrites the ones that drifted.
+     */
+    ReconcileBatch reconcileAggregates(String afterId, int limit);
+
+    // lastId is null once there is nothing left after afterId; repaired holds the new version and the metadata only, no products
+    record ReconcileBatch(String lastId, int scanned, List<Wishlist> repaired) {
+    }
+
+    // Ranked page of the products in the user's wishlists matching every term and the price range; see WishlistQueries#productSearch
+    ProductSearchPage searchProducts(String userId, List<String> terms, Double minPrice, Double maxPrice, String cursor, int limit);
+
+    // Keyset page of a wishlist's products in their stored order; empty for a missing wishlist
+    ProductPage findProductsPage(String wishlistId, String cursor, int limit);
+
+    Optional<Product> findProduct(String wishlistId, String productId);
+
+    // Moves the products of an EMBEDDED wishlist to their own collection; see WishlistProductsCollection#migrate
+    Optional<Wishlist> migrateProductsToCollection(String wishlistId);
+
+    // Drops products stored outside the wishlist document, for a wishlist that was just deleted
+    void deleteProducts(String wishlistId);
+
+    Optional<Wishlist> updateDetails(String wishlistId, String title, String description, List<String> collaboratorIds, Long expectedVersion);
+
+    /**
+     * Adds the users to the collaborators of a wishlist owned by {@code ownerId} in one atomic set-add.
+     * Empty when there is no such wishlist.
+     */
+    Optional<AddedCollaborators> addCollaborators(String wishlistId, String ownerId, Collection<String> userIds);
+
+    // The wishlist after the write, and which of the users this write added (the rest already were collaborators)
+    record AddedCollaborators(Wishlist wishlist, List<String> addedIds) {
+
+        // From the document as it was before the set-add: the users it lacked are exactly the ones the write added
+        static AddedCollaborators after(Wishlist before, Collection<String> userIds) {
+            List<String> collaboratorIds = before.getCollaboratorIds() != null ? new ArrayList<>(before.getCollaboratorIds()) : new ArrayList<>();
+            List<String> addedIds = userIds.stream().filter(userId -> !collaboratorIds.contains(userId)).toList();
+            collaboratorIds.addAll(addedIds);
+            before.setCollaboratorIds(collaboratorIds);
+            before.setVersion(before.getVersion() + 1);
+            return new AddedCollaborators(before, addedIds);
+        }
+    }
+
+    Optional<Wishlist> pushProduct(String wishlistId, Product product, Long expectedVersion);
+
+    Optional<Wishlist> setProductFields(String wishlistId, String productId, Product changes, LocalDateTime editedAt, Long expectedVersion);
+
+    // Sets name, imageUrl, price and lastEditedAt of several products in one unconditional write; products
+    // that are gone are skipped, and nothing is written when none of them is left
+    Optional<Wishlist> setProductFields(String wishlistId, Map<String, Product> changesByProductId);
+
+    Optional<Wishlist> pullProduct(String wishlistId, String productId, Long expectedVersion);
+
+    // The net effect of a batch of product operations. Edits carry their lastEditedAt; added products go at the end
+    record ProductChanges(List<Product> added, Map<String, Product> edits, Set<String> removedIds) {
+
+        public boolean isEmpty() {
+            return added.isEmpty() && edits.isEmpty() && removedIds.isEmpty();
+        }
+    }
+
+    // Appends, edits and removes products by ID in one write. Products that are gone are skipped, so
+    // without an expected version the changes merge with whatever other writers did meanwhile
+    Optional<Wishlist> applyProductChanges(String wishlistId, ProductChanges changes, Long expectedVersion);
+}
@@ -0,0 +1,336 @@
+package com.wishlistapp.repositories;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductEntry;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.ProductSearchHit;
+import com.wishlistapp.models.ProductSearchPage;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistSummary;
+import com.wishlistapp.repositories.WishlistQueries.ProductWrite;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class WishlistRepositoryCustomImpl implements WishlistRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private WishlistProductsCollection productsCollection;
+
+    @Override
+    public List<Wishlist> findForMember(String userId, Collection<String> fields) {
+        Query query = Query.query(WishlistQueries.member(userId));
+        query.fields().include(fields.toArray(String[]::new));
+        if (fields.stream().anyMatch(field -> field.equals("products") || field.startsWith("products."))) {
+            query.fields().include("productStorage"); // Lets WishlistProductsListener fill products kept in their own collection
+        }
+        return mongoTemplate.find(query, Wishlist.class);
+    }
+
+    @Override
+    public List<WishlistSummary> findSummariesForMember(String userId, String afterId, int limit) {
+        return mongoTemplate.aggregate(WishlistQueries.summaries(userId, afterId, limit), WishlistSummary.class).getMappedResults();
+    }
+
+    @Override
+    public List<WishlistSummary> findSummariesForMember(String userId) {
+        return mongoTemplate.aggregate(WishlistQueries.summaries(userId), WishlistSummary.class).getMappedResults();
+    }
+
+    @Override
+    public ReconcileBatch reconcileAggregates(String afterId, int limit) {
+        Criteria criteria = afterId != null ? Criteria.where("id").gt(afterId) : new Criteria();
+        // Stored and actual aggregates side by side, so only the numbers leave Mongo
+        TypedAggregation<Wishlist> aggregation = Aggregation.newAggregation(Wishlist.class,
+                Aggregation.match(criteria),
+                Aggregation.sort(Sort.by("id")),
+                Aggregation.limit(limit),
+                context -> new Document("$project", new Document("version", 1)
+                        .append("productStorage", 1)
+                        .append("productCount", 1)
+                        .append("totalPrice", 1)
+                        .append("minPrice", 1)
+                        .append("maxPrice", 1)
+                        .append("actual", WishlistQueries.aggregatesOfProducts())));
+        List<Document> rows = mongoTemplate.aggregate(aggregation, Document.class).getMappedResults();
+        if (rows.isEmpty()) {
+            return new ReconcileBatch(null, 0, List.of());
+        }
+        List<String> inCollection = rows.stream()
+                .filter(row -> ProductStorage.COLLECTION.name().equals(row.get("productStorage")))
+                .map(row -> row.getString("_id"))
+                .toList();
+        Map<String, Document> collectionAggregates = inCollection.isEmpty() ? Map.of() : productsCollection.aggregatesOf(inCollection);
+        List<Wishlist> repaired = new ArrayList<>();
+        for (Document row : rows) {
+            String id = row.getString("_id");
+            Document actual = inCollection.contains(id) ? collectionAggregates.getOrDefault(id, new Document()) : row.get("actual", Document.class);
+            if (!drifted(row, actual)) {
+                continue;
+            }
+            // Only if nothing was written since the row was read; a later write brings its own aggregates.
+            // The aggregates are part of every representation, so the version (and with it the ETag) moves.
+            Number version = row.get("version", Number.class);
+            Query unchanged = Query.query(WishlistQueries.withVersion(WishlistQueries.byId(id), version != null ? version.longValue() : 0));
+            unchanged.fields().include("title", "description", "ownerId", "collaboratorIds", "version");
+            Update repair = new Update()
+                    .set("productCount", actual.getOrDefault("productCount", 0))
+                    .set("totalPrice", actual.getOrDefault("totalPrice", 0.0))
+                    .inc("version", 1);
+            if (actual.get("minPrice") == null) {
+                repair.unset("minPrice").unset("maxPrice");
+            } else {
+                repair.set("minPrice", actual.get("minPrice")).set("maxPrice", actual.get("maxPrice"));
+            }
+            Wishlist updated = mongoTemplate.findAndModify(unchanged, repair, FindAndModifyOptions.options().returnNew(true), Wishlist.class);
+            if (updated != null) {
+                repaired.add(updated);
+            }
+        }
+        return new ReconcileBatch(rows.get(rows.size() - 1).getString("_id"), rows.size(), repaired);
+    }
+
+    private static boolean drifted(Document stored, Document actual) {
+        Number count = stored.get("productCount", Number.class);
+        Number actualCount = actual.get("productCount", Number.class);
+        return count == null || count.intValue() != (actualCount != null ? actualCount.intValue() : 0)
+                || !sameAmount(stored.get("totalPrice", Number.class), actual.containsKey("totalPrice") ? actual.get("totalPrice", Number.class) : 0)
+                || !sameAmount(stored.get("minPrice", Number.class), actual.get("minPrice", Number.class))
+                || !sameAmount(stored.get("maxPrice", Number.class), actual.get("maxPrice", Number.class));
+    }
+
+    // Totals kept by increments pick up rounding noise that isn't worth a repair
+    private static boolean sameAmount(Number stored, Number actual) {
+        if (stored == null || actual == null) {
+            return stored == actual;
+        }
+        return Math.abs(stored.doubleValue() - actual.doubleValue()) < 1e-6;
+    }
+
+    @Override
+    public ProductSearchPage searchProducts(String userId, List<String> terms, Double minPrice, Double maxPrice, String cursor, int limit) {
+        long offset = cursor != null ? Long.parseLong(cursor) : 0;
+        if (offset < 0) {
+            // Not a cursor this method handed out, and no valid $skip
+            throw new NumberFormatException("Negative cursor: " + cursor);
+        }
+        // One extra hit tells whether another page exists
+        List<Document> pipeline = WishlistQueries.productSearch(userId, terms, minPrice, maxPrice,
+                mongoTemplate.getCollectionName(Wishlist.class), mongoTemplate.getCollectionName(ProductEntry.class), offset, limit + 1);
+        List<ProductSearchHit> hits = new ArrayList<>(limit + 1);
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Wishlist.class)).aggregate(pipeline).allowDiskUse(true)
+                .forEach(row -> hits.add(new ProductSearchHit(row.getString("_id"), row.getString("title"),
+                        mongoTemplate.getConverter().read(Product.class, row.get("product", Document.class)),
+                        row.get("score", Number.class).intValue())));
+        if (hits.size() > limit) {
+            return new ProductSearchPage(hits.subList(0, limit), String.valueOf(offset + limit));
+        }
+        return new ProductSearchPage(hits, null);
+    }
+
+    @Override
+    public ProductPage findProductsPage(String wishlistId, String cursor, int limit) {
+        // Only the requested slice of an embedded array is read, plus the layout
+        int offset = cursor != null ? Integer.parseInt(cursor) : 0;
+        if (offset < 0) {
+            // Not a cursor this method handed out; $slice would count it from the end of the array
+            throw new NumberFormatException("Negative cursor: " + cursor);
+        }
+        Query query = Query.query(WishlistQueries.byId(wishlistId));
+        query.fields().include("productStorage").slice("products", offset, limit + 1);
+        Document wishlist = mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Wishlist.class));
+        if (wishlist == null) {
+            return new ProductPage(List.of(), null);
+        }
+        if (ProductStorage.COLLECTION.name().equals(wishlist.get("productStorage"))) {
+            return productsCollection.findPage(wishlistId, cursor, limit);
+        }
+        List<Product> products = readProducts(wishlist);
+        if (products.size() > limit) {
+            return new ProductPage(products.subList(0, limit), String.valueOf(offset + limit));
+        }
+        return new ProductPage(products, null);
+    }
+
+    @Override
+    public Optional<Product> findProduct(String wishlistId, String productId) {
+        Query query = Query.query(WishlistQueries.byId(wishlistId));
+        // Array filters and projections reach the driver unmapped, so they name the stored key of Product.id
+        query.fields().include("productStorage").elemMatch("products", Criteria.where("_id").is(productId));
+        Document wishlist = mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Wishlist.class));
+        if (wishlist == null) {
+            return Optional.empty();
+        }
+        if (ProductStorage.COLLECTION.name().equals(wishlist.get("productStorage"))) {
+            return productsCollection.findOne(wishlistId, productId);
+        }
+        return readProducts(wishlist).stream().findFirst();
+    }
+
+    @Override
+    public Optional<Wishlist> migrateProductsToCollection(String wishlistId) {
+        return productsCollection.migrate(wishlistId);
+    }
+
+    @Override
+    public void deleteProducts(String wishlistId) {
+        productsCollection.deleteAll(wishlistId);
+    }
+
+    @Override
+    public Optional<Wishlist> updateDetails(String wishlistId, String title, String description, List<String> collaboratorIds, Long expectedVersion) {
+        return modify(wishlistId, WishlistQueries.byId(wishlistId), WishlistQueries.details(title, description, collaboratorIds), expectedVersion);
+    }
+
+    @Override
+    public Optional<AddedCollaborators> addCollaborators(String wishlistId, String ownerId, Collection<String> userIds) {
+        // Returns the document as it was before the write: the users it lacked are exactly the ones this
+        // write added, even when another invite lands at the same time
+        Wishlist before = mongoTemplate.findAndModify(Query.query(WishlistQueries.ownedWithoutAllCollaborators(wishlistId, ownerId, userIds)),
+                WishlistQueries.addCollaborators(userIds), FindAndModifyOptions.options().returnNew(false), Wishlist.class);
+        if (before == null) {
+            // Nothing matched: a missing wishlist, another owner, or all of them already are collaborators
+            return Optional.ofNullable(mongoTemplate.findOne(Query.query(WishlistQueries.byId(wishlistId).and("ownerId").is(ownerId)), Wishlist.class))
+                    .map(wishlist -> new AddedCollaborators(wishlist, List.of()));
+        }
+        return Optional.of(AddedCollaborators.after(before, userIds));
+    }
+
+    // Each product update tries the embedded array first and hands over to the products collection when that's where they live
+
+    @Override
+    public Optional<Wishlist> pushProduct(String wishlistId, Product product, Long expectedVersion) {
+        Wishlist updated = mongoTemplate.findAndModify(Query.query(WishlistQueries.withVersion(WishlistQueries.embedded(WishlistQueries.byId(wishlistId)), expectedVersion)),
+                WishlistQueries.push(product), FindAndModifyOptions.options().returnNew(true), Wishlist.class);
+        if (updated != null) {
+            return Optional.of(updated);
+        }
+        // Nothing matched: a missing wishlist, a stale version, or products that live in their own collection
+        Query state = Query.query(WishlistQueries.byId(wishlistId));
+        state.fields().include("version", "productStorage");
+        Document stored = mongoTemplate.findOne(state, Document.class, mongoTemplate.getCollectionName(Wishlist.class));
+        if (stored == null) {
+            return Optional.empty();
+        }
+        if (ProductStorage.COLLECTION.name().equals(stored.get("productStorage"))) {
+            return productsCollection.push(wishlistId, product, expectedVersion);
+        }
+        if (expectedVersion != null && WishlistQueries.versionOf(stored) != expectedVersion) {
+            throw new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Wishlist> setProductFields(String wishlistId, String productId, Product changes, LocalDateTime editedAt, Long expectedVersion) {
+        return modifyProducts(wishlistId, WishlistQueries.productState(wishlistId, productId), WishlistQueries.byIdWithProduct(wishlistId, productId), expectedVersion,
+                state -> {
+                    Double oldPrice = WishlistQueries.pricesOf(state).get(productId);
+                    return oldPrice != null ? WishlistQueries.setFields(productId, changes, editedAt, oldPrice) : null;
+                },
+                () -> productsCollection.setFields(wishlistId, productId, changes, editedAt, expectedVersion));
+    }
+
+    @Override
+    public Optional<Wishlist> setProductFields(String wishlistId, Map<String, Product> changesByProductId) {
+        return modifyProducts(wishlistId, WishlistQueries.productPrices(wishlistId), WishlistQueries.byId(wishlistId), null,
+                state -> WishlistQueries.setFields(changesByProductId, WishlistQueries.pricesOf(state)),
+                () -> productsCollection.setFields(wishlistId, changesByProductId));
+    }
+
+    @Override
+    public Optional<Wishlist> pullProduct(String wishlistId, String productId, Long expectedVersion) {
+        // A product that isn't there writes nothing, so a no-op removal doesn't bump the version
+        return modifyProducts(wishlistId, WishlistQueries.productState(wishlistId, productId), WishlistQueries.byId(wishlistId), expectedVersion,
+                state -> {
+                    Double oldPrice = WishlistQueries.pricesOf(state).get(productId);
+                    return oldPrice != null ? WishlistQueries.pull(productId, oldPrice) : null;
+                },
+                () -> productsCollection.pull(wishlistId, productId, expectedVersion));
+    }
+
+    @Override
+    public Optional<Wishlist> applyProductChanges(String wishlistId, ProductChanges changes, Long expectedVersion) {
+        return modifyProducts(wishlistId, WishlistQueries.productPrices(wishlistId), WishlistQueries.byId(wishlistId), expectedVersion,
+                state -> WishlistQueries.applyChanges(changes, WishlistQueries.pricesOf(state), mongoTemplate.getConverter()),
+                () -> productsCollection.applyChanges(wishlistId, changes, expectedVersion));
+    }
+
+    /**
+     * Reads the old prices a product write starts from, then writes guarded by the products still having
+     * them (and by the expected version, if any). A write that lost to a concurrent change of one of its
+     * products reads again and retries; with an expected version, the next read finds it moved on. Empty
+     * when the wishlist is gone or the write returns null (nothing to change).
+     */
+    private Optional<Wishlist> modifyProducts(String wishlistId, Query stateQuery, Criteria criteria, Long expectedVersion,
+                                              Function<Document, ProductWrite> write, Supplier<Optional<Wishlist>> inCollection) {
+        Criteria embedded = WishlistQueries.embedded(criteria);
+        while (true) {
+            Document state = mongoTemplate.findOne(stateQuery, Document.class, mongoTemplate.getCollectionName(Wishlist.class));
+            if (state == null) {
+                return Optional.empty();
+            }
+            if (ProductStorage.COLLECTION.name().equals(state.get("productStorage"))) {
+                return inCollection.get();
+            }
+            if (expectedVersion != null && WishlistQueries.versionOf(state) != expectedVersion) {
+                throw new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion);
+            }
+            ProductWrite productWrite = write.apply(state);
+            if (productWrite == null) {
+                return Optional.empty();
+            }
+            Criteria guard = WishlistQueries.withVersion(WishlistQueries.withPrices(embedded, productWrite.oldPrices()), expectedVersion);
+            Wishlist updated = mongoTemplate.findAndModify(Query.query(guard), productWrite.update(), FindAndModifyOptions.options().returnNew(true), Wishlist.class);
+            if (updated != null) {
+                if (WishlistQueries.tookMinOrMax(updated, productWrite.pricesGone())) {
+                    // Skipped when a later write already moved the version on; the reconciler repairs what that leaves behind
+                    mongoTemplate.updateFirst(Query.query(WishlistQueries.withVersion(WishlistQueries.byId(wishlistId), updated.getVersion())),
+                            WishlistQueries.rederiveMinMax(updated), Wishlist.class);
+                }
+                return Optional.of(updated);
+            }
+        }
+    }
+
+    private List<Product> readProducts(Document wishlist) {
+        List<Document> products = wishlist.getList("products", Document.class, List.of());
+        return products.stream().map(product -> mongoTemplate.getConverter().read(Product.class, product)).toList();
+    }
+
+    private Optional<Wishlist> modify(String wishlistId, Criteria criteria, Update update, Long expectedVersion) {
+        Wishlist updated = mongoTemplate.findAndModify(Query.query(WishlistQueries.withVersion(criteria, expectedVersion)), update,
+                FindAndModifyOptions.options().returnNew(true), Wishlist.class);
+        if (updated == null && expectedVersion != null) {
+            // Nothing matched: tell a stale version apart from a missing wishlist/product
+            boolean exists = mongoTemplate.exists(Query.query(WishlistQueries.byId(wishlistId)), Wishlist.class);
+            boolean versionMatches = mongoTemplate.exists(Query.query(
+                    WishlistQueries.withVersion(WishlistQueries.byId(wishlistId), expectedVersion)), Wishlist.class);
+            if (exists && !versionMatches) {
+                throw new OptimisticLockingFailureException("Wishlist " + wishlistId + " is no longer at version " + expectedVersion);
+            }
+        }
+        return Optional.ofNullable(updated);
+    }
+}
@@ -0,0 +1,119 @@
+package com.wishlistapp.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-node store: each bucket is one {@link AtomicLong} updated with compare-and-set, so requests
+ * never wait on a lock, not even requests for the same key.
+ *
+ * <p>A bucket holds the instant (on the {@link System#nanoTime()} clock) at which it will be full
+ * again. Taking a token moves that instant one refill interval later; the token is refused when the
+ * instant would end up more than capacity intervals ahead of now. A bucket whose instant has passed
+ * is full and behaves exactly like a missing one, so a background sweep drops those without losing
+ * anything. Memory is bounded by {@code maxKeys}: keys that arrive while the map is full share one
+ * overflow bucket per budget until the next sweep makes room.</p>
+ */
+public class InMemoryRateLimitStore implements RateLimitStore, MeterBinder, AutoCloseable {
+
+    // Written by the sweeper before it removes a bucket; a request that sees it retries with a fresh bucket
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Budget, AtomicLong> overflow = new ConcurrentHashMap<>();
+    private final int maxKeys;
+    private final AtomicBoolean sweepRequested = new AtomicBoolean();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong overflowed = new AtomicLong();
+
+    public InMemoryRateLimitStore(int maxKeys, Duration sweepInterval) {
+        this.maxKeys = maxKeys;
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long tryAcquire(String key, Budget budget) {
+        long interval = budget.refillInterval().toNanos();
+        long burst = interval * budget.capacity();
+        while (true) {
+            AtomicLong bucket = bucketFor(key, budget);
+            long now = System.nanoTime();
+            long fullAt = bucket.get();
+            if (fullAt == EVICTED) {
+                buckets.remove(key, bucket);
+                continue;
+            }
+            long next = (fullAt - now > 0 ? fullAt : now) + interval;
+            long wait = next - now - burst;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key, Budget budget) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            overflowed.incrementAndGet();
+            // Make room now rather than at the next scheduled sweep; one extra sweep however many requests overflow
+            if (sweepRequested.compareAndSet(false, true)) {
+                sweeper.execute(this::sweep);
+            }
+            return overflow.computeIfAbsent(budget, b -> new AtomicLong(System.nanoTime()));
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+    }
+
+    // Drops every full bucket; a bucket that takes a token meanwhile fails the compare-and-set and stays
+    void sweep() {
+        sweepRequested.set(false);
+        long now = System.nanoTime();
+        buckets.forEach((key, bucket) -> {
+            long fullAt = bucket.get();
+            if (fullAt != EVICTED && fullAt - now <= 0 && bucket.compareAndSet(fullAt, EVICTED)) {
+                buckets.remove(key, bucket);
+            }
+        });
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wishlist.ratelimit.buckets", this, InMemoryRateLimitStore::size)
+                .description("Rate-limit buckets held in memory (keys that are not currently full)")
+                .register(registry);
+        FunctionCounter.builder("wishlist.ratelimit.overflowed", overflowed, AtomicLong::get)
+                .description("Requests from new keys that shared the overflow bucket because the bucket map was full")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+}
@@ -0,0 +1,35 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.WishlistChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Single-node bus: delivers synchronously to the listeners registered in this JVM
+public class InMemoryWishlistEventBus implements WishlistEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryWishlistEventBus.class);
+
+    private final List<Consumer<WishlistChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(WishlistChangeEvent event) {
+        for (Consumer<WishlistChangeEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                // One misbehaving listener must not fail the write that published the event
+                log.warn("Wishlist event listener failed for {} on {}", event.getType(), event.getWishlistId(), e);
+            }
+        }
+    }
+
+    @Override
+    public AutoCloseable subscribe(Consumer<WishlistChangeEvent> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+}
@@ -0,0 +1,152 @@
+package com.wishlistapp.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and matching on a dedicated, bounded worker pool so CPU-heavy password work
+ * can't take over the request threads. When the pool and its queue are full, work is rejected
+ * immediately with {@link PasswordHashingBusyException} instead of piling up.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final int strength;
+
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Timer queueWaitTimer;
+
+    public PasswordHashingService(BCryptPasswordEncoder encoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${wishlist.security.bcrypt.strength:10}") int strength,
+                                  @Value("${wishlist.security.hashing.pool-size:0}") int poolSize,
+                                  @Value("${wishlist.security.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${wishlist.security.hashing.timeout:5s}") Duration timeout) {
+        this.encoder = encoder;
+        this.strength = strength;
+        this.timeout = timeout;
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("wishlist.password.hash")
+                .tag("operation", "encode")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.matchTimer = Timer.builder("wishlist.password.hash")
+                .tag("operation", "match")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("wishlist.password.hash.queue.wait")
+                .description("Time hashing tasks spend waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("wishlist.password.hash.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("wishlist.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    public String encode(String rawPassword) {
+        return await(encodeAsync(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return await(matchesAsync(rawPassword, encodedPassword));
+    }
+
+    public CompletableFuture<String> encodeAsync(String rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword) {
+        return submit(matchTimer, () -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    // True when the hash was produced with a different cost than the configured one
+    public boolean needsRehash(String encodedPassword) {
+        // BCrypt hashes look like $2a$10$..., the two digits after the version are the log2 cost
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> work) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return timer.record(work);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException("Password hashing capacity exhausted", retryAfterSeconds());
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new PasswordHashingBusyException("Password hashing timed out", retryAfterSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for password hashing", retryAfterSeconds());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Rough estimate: time to drain the current queue using the mean hash duration per worker
+    private long retryAfterSeconds() {
+        double meanMillis = Math.max(matchTimer.mean(TimeUnit.MILLISECONDS), encodeTimer.mean(TimeUnit.MILLISECONDS));
+        double drainMillis = meanMillis * executor.getQueue().size() / executor.getMaximumPoolSize();
+        return Math.max(1, (long) Math.ceil(drainMillis / 1000));
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-based in-process cache of authenticated principals keyed by user ID.
+ * Lets token validation skip the users collection for recently seen users.
+ *
+ * <p>Only the principal is kept (ID, username and email; never the password hash), and every caller
+ * gets its own copy. An invalidation leaves a marker behind, so a load that started before a user
+ * was saved can't put the old document back afterwards.</p>
+ */
+@Component
+public class PrincipalCache implements MeterBinder {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean enabled;
+
+    // Access-ordered so the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    // Stamps order loads against invalidations; a load may only be cached if no invalidation of its key followed its start
+    private long stamp;
+    // Newest invalidation stamp among entries that were dropped, for keys that no longer have an entry
+    private long droppedInvalidationStamp;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PrincipalCache(@Value("${wishlist.auth.principal-cache.enabled:true}") boolean enabled,
+                          @Value("${wishlist.auth.principal-cache.max-size:10000}") int maxSize,
+                          @Value("${wishlist.auth.principal-cache.ttl:5m}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the principal for the given ID, loading (and caching) it on a miss. Empty results are
+     * not cached so a freshly registered user is visible immediately.
+     */
+    public Optional<User> get(String userId, Function<String, Optional<User>> loader) {
+        if (!enabled) {
+            return loader.apply(userId).map(PrincipalCache::principalOf);
+        }
+        Optional<User> cached = getIfPresent(userId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long loadStamp = startLoad();
+        Optional<User> loaded = loader.apply(userId);
+        loaded.ifPresent(user -> put(userId, user, loadStamp));
+        return loaded.map(PrincipalCache::principalOf);
+    }
+
+    // For callers that load the user themselves: take a stamp before the load, then pass it to put
+    public long startLoad() {
+        lock.lock();
+        try {
+            return ++stamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Non-loading lookup for callers that fetch the user asynchronously; counts as a hit or a miss
+    public Optional<User> getIfPresent(String userId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        User cached = null;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.user != null) {
+                if (entry.expiresAt - now > 0) {
+                    cached = entry.user;
+                } else {
+                    drop(userId);
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(principalOf(cached)); // Copied outside the lock; the cached principal is never modified
+    }
+
+    // Caches the principal of a user loaded after startLoad() returned loadStamp, unless the user was invalidated since
+    public void put(String userId, User user, long loadStamp) {
+        if (!enabled) {
+            return;
+        }
+        User principal = principalOf(user);
+        long expiresAt = System.nanoTime() + ttlNanos;
+        lock.lock();
+        try {
+            Entry existing = entries.get(userId);
+            long invalidatedAt = existing != null ? existing.invalidatedAt : droppedInvalidationStamp;
+            if (invalidatedAt > loadStamp) {
+                return; // Saved while we were loading; what we loaded may be stale
+            }
+            // Keeps the invalidation stamp, so a load that started even earlier still can't replace this one
+            entries.put(userId, new Entry(principal, invalidatedAt, expiresAt));
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(String userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            entries.put(userId, new Entry(null, ++stamp, 0));
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+            droppedInvalidationStamp = ++stamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // What the cache hands out: a fresh copy of the fields a request needs to identify its caller
+    public static User principalOf(User user) {
+        User principal = new User();
+        principal.setId(user.getId());
+        principal.setUsername(user.getUsername());
+        principal.setEmail(user.getEmail());
+        return principal;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    // Cached principals, not counting invalidation markers
+    public int size() {
+        lock.lock();
+        try {
+            return (int) entries.values().stream().filter(entry -> entry.user != null).count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("wishlist.principal.cache.gets", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Principal cache lookups served from memory")
+                .register(registry);
+        FunctionCounter.builder("wishlist.principal.cache.gets", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Principal cache lookups that went to the users collection")
+                .register(registry);
+        FunctionCounter.builder("wishlist.principal.cache.evictions", evictions, AtomicLong::get)
+                .description("Principal cache entries dropped for size or expiry")
+                .register(registry);
+        Gauge.builder("wishlist.principal.cache.size", this, PrincipalCache::size)
+                .register(registry);
+    }
+
+    // Must hold the lock
+    private void drop(String userId) {
+        Entry dropped = entries.remove(userId);
+        if (dropped != null) {
+            droppedInvalidationStamp = Math.max(droppedInvalidationStamp, dropped.invalidatedAt);
+        }
+    }
+
+    // Must hold the lock
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            eldest.remove();
+            droppedInvalidationStamp = Math.max(droppedInvalidationStamp, entry.invalidatedAt);
+            if (entry.user != null) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // A null user marks an invalidation; invalidatedAt is the stamp of the key's latest invalidation
+    private record Entry(User user, long invalidatedAt, long expiresAt) {
+    }
+}
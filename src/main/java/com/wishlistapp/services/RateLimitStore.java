@@ -0,0 +1,19 @@
+package com.wishlistapp.services;
+
+import java.time.Duration;
+
+/**
+ * Token buckets behind {@link RateLimiter}, one per key. The default {@link InMemoryRateLimitStore}
+ * only counts the requests that reach its own node, so behind a load balancer a client gets roughly
+ * one budget per node. Deployments that need a single budget across all nodes register their own
+ * bean (Redis, a shared Mongo collection, ...); any RateLimitStore bean replaces the default.
+ */
+public interface RateLimitStore {
+
+    // A bucket holds up to capacity tokens and gets one back every refillInterval
+    record Budget(int capacity, Duration refillInterval) {
+    }
+
+    // Takes one token from the key's bucket: 0 when taken, otherwise the nanoseconds until one is available
+    long tryAcquire(String key, Budget budget);
+}
@@ -0,0 +1,84 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.services.RateLimitStore.Budget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Admission control in front of the expensive endpoints: every client gets a token bucket per
+ * endpoint class, and a request that finds its bucket empty is refused before it reaches BCrypt or
+ * Mongo. Login and sign-up are keyed by client IP (there is no user yet); writes are keyed by user.
+ */
+@Component
+public class RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+    public enum EndpointClass {
+        // Login and sign-up: each one costs a BCrypt hash on the hashing pool
+        AUTH,
+        // Wishlist, product and invite writes
+        WRITE
+    }
+
+    private final RateLimitStore store;
+    private final boolean enabled;
+    private final Map<EndpointClass, Budget> budgets = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+    private final Counter storeFailures;
+
+    public RateLimiter(RateLimitStore store,
+                       MeterRegistry meterRegistry,
+                       @Value("${wishlist.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${wishlist.rate-limit.auth.capacity:10}") int authCapacity,
+                       @Value("${wishlist.rate-limit.auth.refill-interval:6s}") Duration authRefillInterval,
+                       @Value("${wishlist.rate-limit.write.capacity:60}") int writeCapacity,
+                       @Value("${wishlist.rate-limit.write.refill-interval:100ms}") Duration writeRefillInterval) {
+        this.store = store;
+        this.enabled = enabled;
+        budgets.put(EndpointClass.AUTH, new Budget(authCapacity, authRefillInterval));
+        budgets.put(EndpointClass.WRITE, new Budget(writeCapacity, writeRefillInterval));
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            rejected.put(endpointClass, Counter.builder("wishlist.ratelimit.rejected")
+                    .tag("class", endpointClass.name().toLowerCase(Locale.ROOT))
+                    .description("Requests refused with 429 because the client's bucket was empty")
+                    .register(meterRegistry));
+        }
+        this.storeFailures = Counter.builder("wishlist.ratelimit.store.failures")
+                .description("Rate-limit checks that failed in the store and let the request through")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Nanoseconds until the client may retry, 0 when the request is admitted
+    public long tryAcquire(EndpointClass endpointClass, String clientKey) {
+        if (!enabled) {
+            return 0;
+        }
+        long wait;
+        try {
+            wait = store.tryAcquire(endpointClass.name() + ":" + clientKey, budgets.get(endpointClass));
+        } catch (RuntimeException e) {
+            // A shared store that is down must not take the API down with it; fail open
+            storeFailures.increment();
+            log.warn("Rate-limit store failed, admitting {} request", endpointClass, e);
+            return 0;
+        }
+        if (wait > 0) {
+            rejected.get(endpointClass).increment();
+        }
+        return wait;
+    }
+}
@@ -0,0 +1,78 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.User;
+import com.wishlistapp.repositories.ReactiveUserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+// Non-blocking twin of UserService for the reactive profile; same token format and rules
+@Service
+@Profile("reactive")
+public class ReactiveUserService {
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    @Autowired
+    private PrincipalCache principalCache;
+
+    // Empty when the email or username is already taken
+    public Mono<User> registerUser(User user) {
+        return Mono.defer(() -> Mono.fromFuture(passwordHashingService.encodeAsync(user.getPasswordHash())))
+                .flatMap(hash -> {
+                    user.setPasswordHash(hash);
+                    user.setId(UUID.randomUUID().toString()); // Generate ID
+                    return userRepository.insert(user);
+                })
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    // Emits the token on success, completes empty on unknown user or wrong password
+    public Mono<String> loginUser(String emailOrUsername, String password) {
+        return userRepository.findTop2ByEmailOrUsername(emailOrUsername, emailOrUsername)
+                .sort(Comparator.comparing(candidate -> !emailOrUsername.equals(candidate.getEmail())))
+                .next()
+                .flatMap(user -> Mono.defer(() -> Mono.fromFuture(passwordHashingService.matchesAsync(password, user.getPasswordHash())))
+                        .filter(Boolean::booleanValue)
+                        .flatMap(matched -> rehashIfNeeded(user, password))
+                        .map(matchedUser -> UserService.MOCK_TOKEN_PREFIX + matchedUser.getId()));
+    }
+
+    public Mono<User> getUserByToken(String token) {
+        if (token != null && token.startsWith(UserService.MOCK_TOKEN_PREFIX)) {
+            String userId = token.substring(UserService.MOCK_TOKEN_PREFIX.length());
+            return Mono.justOrEmpty(principalCache.getIfPresent(userId))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        long loadStamp = principalCache.startLoad();
+                        return userRepository.findById(userId)
+                                .doOnNext(user -> principalCache.put(userId, user, loadStamp))
+                                .map(PrincipalCache::principalOf);
+                    }));
+        }
+        return Mono.empty();
+    }
+
+    public Mono<User> findByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+
+    private Mono<User> rehashIfNeeded(User user, String password) {
+        if (!passwordHashingService.needsRehash(user.getPasswordHash())) {
+            return Mono.just(user);
+        }
+        // Best effort like the blocking path: a busy pool or failed save never fails the login
+        return Mono.defer(() -> Mono.fromFuture(passwordHashingService.encodeAsync(password)))
+                .flatMap(hash -> {
+                    user.setPasswordHash(hash);
+                    return userRepository.save(user); // UserCacheEvictionListener drops the cached principal
+                })
+                .onErrorResume(e -> Mono.just(user));
+    }
+}
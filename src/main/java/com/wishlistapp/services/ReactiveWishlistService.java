@@ -0,0 +1,151 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import com.wishlistapp.models.WishlistSummary;
+import com.wishlistapp.models.WishlistSummaryPage;
+import com.wishlistapp.repositories.ReactiveUserRepository;
+import com.wishlistapp.repositories.ReactiveWishlistRepository;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.AddedCollaborators;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Non-blocking twin of WishlistService for the reactive profile; same queries and update shapes
+@Service
+@Profile("reactive")
+public class ReactiveWishlistService {
+
+    @Autowired
+    private ReactiveWishlistRepository wishlistRepository;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    // Writes publish the same change events as WishlistService, so with a cross-node bus the servlet
+    // nodes' caches and change feeds see them too
+    @Autowired
+    private WishlistEventBus eventBus;
+
+    @Autowired
+    private WishlistCache wishlistCache;
+
+    @Value("${wishlist.summary.default-page-size:50}")
+    private int defaultSummaryPageSize;
+
+    @Value("${wishlist.summary.max-page-size:200}")
+    private int maxSummaryPageSize;
+
+    public Flux<Wishlist> getUserWishlists(String userId) {
+        return wishlistRepository.findByOwnerIdOrCollaboratorIdsContaining(userId, userId);
+    }
+
+    public Mono<WishlistSummaryPage> getUserWishlistSummaries(String userId, String cursor, Integer pageSize) {
+        int limit = pageSize == null || pageSize <= 0 ? defaultSummaryPageSize : Math.min(pageSize, maxSummaryPageSize);
+        return wishlistRepository.findSummariesForMember(userId, cursor, limit + 1)
+                .collectList()
+                .map(summaries -> {
+                    if (summaries.size() > limit) {
+                        List<WishlistSummary> page = summaries.subList(0, limit);
+                        return new WishlistSummaryPage(page, page.get(limit - 1).getId());
+                    }
+                    return new WishlistSummaryPage(summaries, null);
+                });
+    }
+
+    public Mono<Wishlist> getWishlistForMember(String id, String userId) {
+        return wishlistRepository.findByIdForMember(id, userId);
+    }
+
+    public Mono<Wishlist> getWishlistForOwner(String id, String ownerId) {
+        return wishlistRepository.findByIdAndOwnerId(id, ownerId);
+    }
+
+    public Mono<Boolean> wishlistExists(String id) {
+        return wishlistRepository.existsById(id);
+    }
+
+    public Mono<Wishlist> createWishlist(Wishlist wishlist, String ownerId) {
+        return userRepository.findById(ownerId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Owner not found for ID: " + ownerId)))
+                .flatMap(owner -> {
+                    wishlist.setOwnerId(ownerId);
+                    wishlist.setOwnerUsername(owner.getUsername());
+                    wishlist.setId(UUID.randomUUID().toString()); // Generate ID for new wishlist
+                    wishlist.setVersion(0);
+                    return wishlistRepository.save(wishlist);
+                });
+    }
+
+    public Mono<Wishlist> updateWishlist(Wishlist existing, Wishlist updatedWishlist) {
+        return write(existing.getId(), wishlistRepository.updateDetails(existing.getId(), updatedWishlist.getTitle(), updatedWishlist.getDescription(),
+                        updatedWishlist.getCollaboratorIds(), null))
+                .doOnNext(wishlist -> {
+                    List<String> before = existing.getCollaboratorIds() != null ? existing.getCollaboratorIds() : List.of();
+                    if (wishlist.getCollaboratorIds() != null) {
+                        wishlist.getCollaboratorIds().stream()
+                                .filter(collaboratorId -> !before.contains(collaboratorId))
+                                .forEach(collaboratorId -> eventBus.publish(WishlistChangeEvent.collaboratorInvited(wishlist, collaboratorId)));
+                    }
+                    eventBus.publish(WishlistChangeEvent.metadataChanged(wishlist));
+                });
+    }
+
+    // Adds the user with one atomic set-add, so concurrent invites can't drop each other; empty when the wishlist is gone
+    public Mono<Wishlist> inviteCollaborator(Wishlist existing, String userId) {
+        return write(existing.getId(), wishlistRepository.addCollaborators(existing.getId(), existing.getOwnerId(), List.of(userId)))
+                .doOnNext(added -> {
+                    added.addedIds().forEach(collaboratorId -> eventBus.publish(WishlistChangeEvent.collaboratorInvited(added.wishlist(), collaboratorId)));
+                    if (!added.addedIds().isEmpty()) {
+                        eventBus.publish(WishlistChangeEvent.metadataChanged(added.wishlist()));
+                    }
+                })
+                .map(AddedCollaborators::wishlist);
+    }
+
+    public Mono<Boolean> deleteWishlist(Wishlist existing) {
+        return write(existing.getId(), wishlistRepository.removeById(existing.getId()))
+                .map(removed -> removed > 0)
+                .doOnNext(removed -> {
+                    if (removed) {
+                        eventBus.publish(WishlistChangeEvent.deleted(existing));
+                    }
+                });
+    }
+
+    public Mono<Wishlist> addProductToWishlist(Wishlist wishlist, Product product, User addedBy) {
+        product.setId(UUID.randomUUID().toString()); // Unique ID for the product
+        product.setAddedByUserId(addedBy.getId());
+        product.setAddedByUsername(addedBy.getUsername()); // Set username for display
+        product.setCreatedAt(LocalDateTime.now());
+        product.setLastEditedAt(product.getCreatedAt());
+        return write(wishlist.getId(), wishlistRepository.pushProduct(wishlist.getId(), product, null))
+                .doOnNext(updated -> eventBus.publish(WishlistChangeEvent.productAdded(updated, product)));
+    }
+
+    public Mono<Wishlist> updateProductInWishlist(Wishlist wishlist, String productId, Product updatedProduct) {
+        return write(wishlist.getId(), wishlistRepository.setProductFields(wishlist.getId(), productId, updatedProduct, LocalDateTime.now(), null))
+                .doOnNext(updated -> eventBus.publish(WishlistChangeEvent.productUpdated(updated, productId)));
+    }
+
+    public Mono<Wishlist> removeProductFromWishlist(Wishlist wishlist, String productId) {
+        return write(wishlist.getId(), wishlistRepository.pullProduct(wishlist.getId(), productId, null))
+                .doOnNext(updated -> eventBus.publish(WishlistChangeEvent.productRemoved(updated, productId)))
+                // Removing a product that is already gone leaves the wishlist untouched, though maybe not as the caller loaded it
+                .switchIfEmpty(Mono.defer(() -> wishlistRepository.findById(wishlist.getId())));
+    }
+
+    // Drops the cached copy once the write is over, however it ended, like WishlistService#write
+    private <T> Mono<T> write(String wishlistId, Mono<T> write) {
+        return write.doFinally(signal -> wishlistCache.invalidate(wishlistId));
+    }
+}
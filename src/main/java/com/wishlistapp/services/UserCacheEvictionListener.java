@@ -0,0 +1,32 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+// Drops cached principals whenever a user document is saved or deleted through the mapping layer
+@Component
+public class UserCacheEvictionListener extends AbstractMongoEventListener<User> {
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        principalCache.invalidate(event.getSource().getId());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof String userId) {
+            principalCache.invalidate(userId);
+        } else {
+            // Deletes by criteria other than a plain ID can't be mapped back to single entries
+            principalCache.invalidateAll();
+        }
+    }
+}
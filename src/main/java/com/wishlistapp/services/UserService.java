@@ -2,75 +2,76 @@ package com.wishlistapp.services;
 
 import com.wishlistapp.models.User;
 import com.wishlistapp.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class UserService {
 
+    // Never log credentials, hashes or tokens; user IDs are enough to correlate
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
     @Autowired
     private UserRepository userRepository;
-     @Autowired // <-- Inject BCryptPasswordEncoder
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    @Autowired // BCrypt runs on its own bounded pool, not on the request thread
+    private PasswordHashingService passwordHashingService;
+    @Autowired
+    private PrincipalCache principalCache;
 
-    // Mock authentication token storage for simplicity
-    private static final String MOCK_TOKEN_PREFIX = "mock_token_";
+    // Mock authentication token storage for simplicity (shared with ReactiveUserService)
+    static final String MOCK_TOKEN_PREFIX = "mock_token_";
 
     public Optional<User> registerUser(User user) {
-        if (userRepository.findByEmail(user.getEmail()).isPresent() ||
-            userRepository.findByUsername(user.getUsername()).isPresent()) {
+        user.setPasswordHash(passwordHashingService.encode(user.getPasswordHash()));
+        user.setId(UUID.randomUUID().toString()); // Generate ID
+        try {
+            // The unique email/username indexes reject duplicates atomically, no pre-check needed
+            return Optional.of(userRepository.insert(user));
+        } catch (DuplicateKeyException e) {
             return Optional.empty(); // User already exists
         }
-        // In a real app: hash password here
-       user.setPasswordHash(bCryptPasswordEncoder.encode(user.getPasswordHash()));
-        user.setId(UUID.randomUUID().toString()); // Generate ID
-        return Optional.of(userRepository.save(user));
-    }
-
-   // Inside UserService.java, within your loginUser method
-public String loginUser(String emailOrUsername, String password) {
-    System.out.println("--- Login Attempt Start ---");
-    System.out.println("Attempting login for: " + emailOrUsername);
-
-    Optional<User> userOptional = userRepository.findByEmail(emailOrUsername);
-    if (userOptional.isEmpty()) {
-        userOptional = userRepository.findByUsername(emailOrUsername);
     }
 
-    if (userOptional.isEmpty()) {
-        System.out.println("User NOT found in database for: " + emailOrUsername);
-        System.out.println("--- Login Attempt End (User Not Found) ---");
-        return null; // User not found
-    }
+    public String loginUser(String emailOrUsername, String password) {
+        // One round trip for both lookups; an email match still wins over a username match
+        Optional<User> userOptional = userRepository.findTop2ByEmailOrUsername(emailOrUsername, emailOrUsername).stream()
+                .min(Comparator.comparing(candidate -> !emailOrUsername.equals(candidate.getEmail())));
 
-    User user = userOptional.get();
-    System.out.println("User found: " + user.getUsername());
-    // For debugging, you can print the provided and stored passwords.
-    // REMOVE THESE LINES AFTER DEBUGGING FOR SECURITY!
-    System.out.println("Provided password (plain): " + password);
-    System.out.println("Stored password (hashed): " + user.getPasswordHash());
+        if (userOptional.isEmpty()) {
+            log.debug("Login failed: no user for the given email or username");
+            return null; // User not found
+        }
 
-    if (bCryptPasswordEncoder.matches(password, user.getPasswordHash())) {
-        System.out.println("Password MATCHED for user: " + user.getUsername());
-        String mockToken = MOCK_TOKEN_PREFIX + user.getId();
-        System.out.println("Generated mock token: " + mockToken);
-        System.out.println("--- Login Attempt End (Success) ---");
-        return mockToken; // Return a mock token
-    } else {
-        System.out.println("Password MISMATCH for user: " + user.getUsername());
-        System.out.println("--- Login Attempt End (Password Mismatch) ---");
-        return null; // Password does not match
+        User user = userOptional.get();
+        if (!passwordHashingService.matches(password, user.getPasswordHash())) {
+            log.debug("Login failed: password mismatch for user {}", user.getId());
+            return null; // Password does not match
+        }
+        if (passwordHashingService.needsRehash(user.getPasswordHash())) {
+            // Configured BCrypt strength changed since this hash was made; upgrade it while we have the plaintext
+            try {
+                user.setPasswordHash(passwordHashingService.encode(password));
+                userRepository.save(user);
+            } catch (PasswordHashingBusyException e) {
+                // Not worth failing the login over; the next one will try again
+                log.debug("Skipped password rehash for user {}: hashing pool busy", user.getId());
+            }
+        }
+        log.debug("Login succeeded for user {}", user.getId());
+        return MOCK_TOKEN_PREFIX + user.getId(); // Return a mock token
     }
-}
 
     public Optional<User> getUserByToken(String token) {
         if (token != null && token.startsWith(MOCK_TOKEN_PREFIX)) {
             String userId = token.substring(MOCK_TOKEN_PREFIX.length());
-            return userRepository.findById(userId);
+            return principalCache.get(userId, userRepository::findById);
         }
         return Optional.empty();
     }
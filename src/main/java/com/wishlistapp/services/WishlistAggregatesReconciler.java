@@ -0,0 +1,116 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.WishlistChangeEvent;
+import com.wishlistapp.repositories.WishlistRepository;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ReconcileBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background pass over all wishlists that recomputes their stored product aggregates and repairs
+ * the ones that drifted: documents written before the aggregates existed, writes to the separate
+ * products collection that lost a race, or edits made directly in the database. Product writes keep
+ * the aggregates current on their own; this only catches what slips through.
+ *
+ * <p>Wishlists are visited in ID order, a batch at a time, so a pass costs one short query per batch
+ * and never holds more than one batch in memory. Every node runs its own pass; repairs are
+ * conditional on the version, so overlapping passes are harmless.</p>
+ */
+@Component
+public class WishlistAggregatesReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistAggregatesReconciler.class);
+
+    private final WishlistRepository wishlistRepository;
+    private final WishlistEventBus eventBus;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int batchSize;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wishlist-aggregates-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter scanned;
+    private final Counter repaired;
+    private final Timer passes;
+
+    public WishlistAggregatesReconciler(WishlistRepository wishlistRepository,
+                                        WishlistEventBus eventBus,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${wishlist.aggregates.reconcile.enabled:true}") boolean enabled,
+                                        @Value("${wishlist.aggregates.reconcile.interval:1h}") Duration interval,
+                                        @Value("${wishlist.aggregates.reconcile.batch-size:500}") int batchSize) {
+        this.wishlistRepository = wishlistRepository;
+        this.eventBus = eventBus;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.scanned = Counter.builder("wishlist.aggregates.scanned")
+                .description("Wishlists whose stored aggregates were checked against their products")
+                .register(meterRegistry);
+        this.repaired = Counter.builder("wishlist.aggregates.repaired")
+                .description("Wishlists whose stored aggregates had drifted and were rewritten")
+                .register(meterRegistry);
+        this.passes = Timer.builder("wishlist.aggregates.reconcile")
+                .description("Full reconciliation passes over all wishlists")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            // The first pass soon after startup backfills documents that predate the aggregates
+            scheduler.scheduleWithFixedDelay(this::reconcileQuietly, Math.min(interval.toMillis(), Duration.ofMinutes(1).toMillis()),
+                    interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // One full pass; returns the number of wishlists repaired
+    public int reconcile() {
+        return passes.record(() -> {
+            int repairedInPass = 0;
+            String afterId = null;
+            do {
+                ReconcileBatch batch = wishlistRepository.reconcileAggregates(afterId, batchSize);
+                scanned.increment(batch.scanned());
+                repaired.increment(batch.repaired().size());
+                // Evicts the wishlist from the cache on every node and tells subscribers to refetch
+                batch.repaired().forEach(wishlist -> eventBus.publish(WishlistChangeEvent.metadataChanged(wishlist)));
+                repairedInPass += batch.repaired().size();
+                afterId = batch.scanned() < batchSize ? null : batch.lastId();
+            } while (afterId != null && !Thread.currentThread().isInterrupted());
+            return repairedInPass;
+        });
+    }
+
+    private void reconcileQuietly() {
+        try {
+            int repairedInPass = reconcile();
+            if (repairedInPass > 0) {
+                log.info("Repaired the product aggregates of {} wishlists", repairedInPass);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reconciling wishlist aggregates failed; retrying in {}", interval, e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL-based in-process cache of wishlist documents keyed by wishlist ID, weighed by their
+ * product count so a few huge wishlists can't crowd out everything else.
+ *
+ * <p>{@link WishlistService} invalidates an entry right after each of its writes. Every change
+ * event on the {@link WishlistEventBus} invalidates it as well, which keeps the caches of other
+ * nodes coherent once a cross-node bus is configured. An invalidation leaves a marker behind, so a
+ * load that started before the write can't put the old document back afterwards.</p>
+ *
+ * <p>Cached documents are private copies: callers always get their own copy and may modify it.</p>
+ */
+@Component
+public class WishlistCache implements MeterBinder {
+
+    private final WishlistEventBus eventBus;
+    private final boolean enabled;
+    private final long maxWeight;
+    private final long ttlNanos;
+
+    // Access-ordered so the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long weight;
+    // Stamps order loads against invalidations; a load may only be cached if no invalidation of its key followed its start
+    private long stamp;
+    // Newest invalidation stamp among entries that were dropped, for keys that no longer have an entry
+    private long droppedInvalidationStamp;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private AutoCloseable busSubscription;
+
+    public WishlistCache(WishlistEventBus eventBus,
+                         @Value("${wishlist.cache.enabled:true}") boolean enabled,
+                         @Value("${wishlist.cache.max-weight:200000}") long maxWeight,
+                         @Value("${wishlist.cache.ttl:5m}") Duration ttl) {
+        this.eventBus = eventBus;
+        this.enabled = enabled;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            busSubscription = eventBus.subscribe(this::onEvent);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (busSubscription != null) {
+            busSubscription.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a copy of the cached wishlist, loading (and caching) it on a miss. Missing wishlists
+     * are not cached so a freshly created one is visible immediately.
+     */
+    public Optional<Wishlist> get(String wishlistId, Supplier<Optional<Wishlist>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Optional<Wishlist> cached = getIfPresent(wishlistId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long loadStamp = nextStamp();
+        Optional<Wishlist> loaded = loader.get();
+        loaded.ifPresent(wishlist -> put(wishlistId, wishlist, loadStamp));
+        return loaded;
+    }
+
+    // Non-loading lookup; counts as a hit or a miss
+    public Optional<Wishlist> getIfPresent(String wishlistId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Wishlist cached = null;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(wishlistId);
+            if (entry != null && entry.wishlist != null) {
+                if (entry.expiresAt - now > 0) {
+                    cached = entry.wishlist;
+                } else {
+                    drop(wishlistId);
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(WishlistService.copyOf(cached)); // Copied outside the lock; the cached copy is never modified
+    }
+
+    public void invalidate(String wishlistId) {
+        if (!enabled || wishlistId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry previous = entries.put(wishlistId, new Entry(null, ++stamp, 0));
+            weight += 1 - (previous == null ? 0 : weightOf(previous));
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+            weight = 0;
+            droppedInvalidationStamp = ++stamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    // Cached documents, not counting invalidation markers
+    public int size() {
+        lock.lock();
+        try {
+            return (int) entries.values().stream().filter(entry -> entry.wishlist != null).count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long weight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("wishlist.cache.gets", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Wishlist cache lookups served from memory")
+                .register(registry);
+        FunctionCounter.builder("wishlist.cache.gets", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Wishlist cache lookups that went to the wishlists collection")
+                .register(registry);
+        FunctionCounter.builder("wishlist.cache.evictions", evictions, AtomicLong::get)
+                .description("Wishlist cache entries dropped for weight or expiry")
+                .register(registry);
+        Gauge.builder("wishlist.cache.hit.ratio", this, cache -> {
+                    long total = cache.getHitCount() + cache.getMissCount();
+                    return total == 0 ? Double.NaN : (double) cache.getHitCount() / total;
+                })
+                .description("Share of wishlist cache lookups served from memory since startup")
+                .register(registry);
+        Gauge.builder("wishlist.cache.size", this, WishlistCache::size)
+                .register(registry);
+        Gauge.builder("wishlist.cache.weight", this, WishlistCache::weight)
+                .description("Cached wishlists plus their products")
+                .register(registry);
+    }
+
+    private void onEvent(WishlistChangeEvent event) {
+        invalidate(event.getWishlistId());
+    }
+
+    private long nextStamp() {
+        lock.lock();
+        try {
+            return ++stamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String wishlistId, Wishlist wishlist, long loadStamp) {
+        Wishlist copy = WishlistService.copyOf(wishlist);
+        long entryWeight = weightOf(copy);
+        long expiresAt = System.nanoTime() + ttlNanos;
+        lock.lock();
+        try {
+            Entry existing = entries.get(wishlistId);
+            long invalidatedAt = existing != null ? existing.invalidatedAt : droppedInvalidationStamp;
+            if (invalidatedAt > loadStamp) {
+                return; // Written (here or on another node) while we were loading; what we loaded may be stale
+            }
+            if (existing != null && existing.wishlist != null && existing.wishlist.getVersion() > copy.getVersion()) {
+                return; // A concurrent load already cached something newer
+            }
+            // Keeps the invalidation stamp, so a load that started even earlier still can't replace this one
+            entries.put(wishlistId, new Entry(copy, invalidatedAt, expiresAt));
+            weight += entryWeight - (existing == null ? 0 : weightOf(existing));
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must hold the lock
+    private void drop(String wishlistId) {
+        Entry dropped = entries.remove(wishlistId);
+        if (dropped != null) {
+            weight -= weightOf(dropped);
+            droppedInvalidationStamp = Math.max(droppedInvalidationStamp, dropped.invalidatedAt);
+        }
+    }
+
+    // Must hold the lock
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            eldest.remove();
+            weight -= weightOf(entry);
+            droppedInvalidationStamp = Math.max(droppedInvalidationStamp, entry.invalidatedAt);
+            if (entry.wishlist != null) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long weightOf(Entry entry) {
+        return entry.wishlist == null ? 1 : weightOf(entry.wishlist);
+    }
+
+    private static long weightOf(Wishlist wishlist) {
+        return 1 + (wishlist.getProducts() == null ? 0 : wishlist.getProducts().size());
+    }
+
+    // A null wishlist marks an invalidation; invalidatedAt is the stamp of the key's latest invalidation
+    private record Entry(Wishlist wishlist, long invalidatedAt, long expiresAt) {
+    }
+}
@@ -0,0 +1,258 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.WishlistChangeEvent;
+import com.wishlistapp.models.WishlistChangeEvent.Type;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams wishlist deltas from the {@link WishlistEventBus} to the collaborators watching each
+ * wishlist over server-sent events.
+ *
+ * <p>Events for a subscriber are buffered and coalesced per key (one entry per product, one for the
+ * metadata, ...) and flushed every coalescing window, so an autosave burst becomes a single update.
+ * Each subscriber has at most one send in flight; while a slow client is still receiving, its buffer
+ * keeps coalescing, and once the buffer exceeds its bound it is replaced by a single RESYNC event.
+ * Deletion and revoked access are never dropped: they close the stream even behind a RESYNC.</p>
+ */
+@Service
+@Profile("!reactive") // Servlet SSE; only the blocking controllers serve the stream
+public class WishlistChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistChangeFeed.class);
+
+    private final WishlistEventBus eventBus;
+    private final Duration coalesceWindow;
+    private final int maxPendingPerSubscriber;
+    private final Duration emitterTimeout;
+
+    private final Map<String, Set<Subscriber>> subscribersByWishlist = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wishlist-change-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Sends block on the client socket; virtual threads keep slow clients from tying up platform threads
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter resyncs;
+    private final Counter delivered;
+    private AutoCloseable busSubscription;
+
+    public WishlistChangeFeed(WishlistEventBus eventBus,
+                              MeterRegistry meterRegistry,
+                              @Value("${wishlist.changes.coalesce-window:100ms}") Duration coalesceWindow,
+                              @Value("${wishlist.changes.max-pending-per-subscriber:256}") int maxPendingPerSubscriber,
+                              @Value("${wishlist.changes.emitter-timeout:30m}") Duration emitterTimeout) {
+        this.eventBus = eventBus;
+        this.coalesceWindow = coalesceWindow;
+        this.maxPendingPerSubscriber = maxPendingPerSubscriber;
+        this.emitterTimeout = emitterTimeout;
+        this.resyncs = Counter.builder("wishlist.changes.resyncs")
+                .description("Subscribers whose buffered deltas overflowed and were told to refetch")
+                .register(meterRegistry);
+        this.delivered = Counter.builder("wishlist.changes.delivered")
+                .description("Coalesced change events sent to subscribers")
+                .register(meterRegistry);
+        Gauge.builder("wishlist.changes.subscribers", subscribersByWishlist,
+                        map -> map.values().stream().mapToInt(Set::size).sum())
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        busSubscription = eventBus.subscribe(this::onEvent);
+        long windowMillis = Math.max(1, coalesceWindow.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushAll, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (busSubscription != null) {
+            busSubscription.close();
+        }
+        flusher.shutdown();
+        senders.shutdown();
+        subscribersByWishlist.values().forEach(subscribers -> subscribers.forEach(s -> s.emitter.complete()));
+        subscribersByWishlist.clear();
+    }
+
+    // The caller must already have checked that userId may see the wishlist
+    public SseEmitter subscribe(String wishlistId, String userId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(wishlistId, userId, emitter);
+        subscribersByWishlist.computeIfAbsent(wishlistId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        return emitter;
+    }
+
+    private void onEvent(WishlistChangeEvent event) {
+        Set<Subscriber> subscribers = subscribersByWishlist.get(event.getWishlistId());
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    // Package-private so tests can flush without waiting for the window
+    void flushAll() {
+        try {
+            subscribersByWishlist.values().forEach(subscribers -> subscribers.forEach(this::flush));
+        } catch (RuntimeException e) {
+            // Never let one bad round cancel the scheduled flusher
+            log.warn("Wishlist change flush failed", e);
+        }
+    }
+
+    private void flush(Subscriber subscriber) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            return; // Previous batch still being written to this client; keep coalescing
+        }
+        List<WishlistChangeEvent> batch = subscriber.drain();
+        if (batch.isEmpty()) {
+            subscriber.sending.set(false);
+            return;
+        }
+        senders.execute(() -> {
+            try {
+                for (WishlistChangeEvent event : batch) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name(event.getType().name())
+                            .id(String.valueOf(event.getVersion()))
+                            .data(event, MediaType.APPLICATION_JSON));
+                    delivered.increment();
+                    if (subscriber.isTerminal(event)) {
+                        subscriber.emitter.complete();
+                        break;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the emitter callbacks may not fire for a dead socket
+                remove(subscriber);
+            } finally {
+                subscriber.sending.set(false);
+            }
+        });
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribersByWishlist.computeIfPresent(subscriber.wishlistId, (id, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private final class Subscriber {
+        private final String wishlistId;
+        private final String userId;
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // Insertion-ordered so coalesced deltas still go out in the order they first happened
+        private final LinkedHashMap<String, WishlistChangeEvent> pending = new LinkedHashMap<>();
+        private long lastVersion;
+
+        private Subscriber(String wishlistId, String userId, SseEmitter emitter) {
+            this.wishlistId = wishlistId;
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private synchronized void offer(WishlistChangeEvent event) {
+            lastVersion = Math.max(lastVersion, event.getVersion());
+            String key = keyOf(event);
+            if (pending.containsKey(Type.RESYNC.name())) {
+                // Already told to refetch; only events that end the stream still matter. A later
+                // metadata change replaces a buffered revocation, since it carries the current members.
+                if (isTerminal(event) || pending.containsKey(key)) {
+                    pending.put(key, event);
+                }
+                return;
+            }
+            WishlistChangeEvent merged = merge(pending.get(key), event);
+            if (merged == null) {
+                pending.remove(key);
+            } else {
+                pending.put(key, merged);
+            }
+            if (pending.size() > maxPendingPerSubscriber) {
+                // Queued after the RESYNC so a deleted wishlist or a removed collaborator still closes the stream
+                List<WishlistChangeEvent> terminal = pending.values().stream().filter(this::isTerminal).toList();
+                pending.clear();
+                pending.put(Type.RESYNC.name(), WishlistChangeEvent.resync(wishlistId, lastVersion));
+                terminal.forEach(buffered -> pending.put(keyOf(buffered), buffered));
+                resyncs.increment();
+            }
+        }
+
+        private synchronized List<WishlistChangeEvent> drain() {
+            List<WishlistChangeEvent> batch = new ArrayList<>(pending.values());
+            pending.clear();
+            return batch;
+        }
+
+        private boolean isTerminal(WishlistChangeEvent event) {
+            return event.getType() == Type.WISHLIST_DELETED || lostAccess(event);
+        }
+
+        // Metadata changes carry the member list; a removed collaborator stops receiving updates
+        private boolean lostAccess(WishlistChangeEvent event) {
+            return event.getType() == Type.METADATA_CHANGED
+                    && !userId.equals(event.getOwnerId())
+                    && (event.getCollaboratorIds() == null || !event.getCollaboratorIds().contains(userId));
+        }
+    }
+
+    private static String keyOf(WishlistChangeEvent event) {
+        return switch (event.getType()) {
+            case PRODUCT_ADDED, PRODUCT_UPDATED, PRODUCT_REMOVED -> "product:" + event.getProductId();
+            case COLLABORATOR_INVITED -> "collaborator:" + event.getCollaboratorId();
+            case METADATA_CHANGED -> "metadata";
+            case WISHLIST_DELETED, RESYNC -> event.getType().name();
+        };
+    }
+
+    // Folds a new delta into the buffered one for the same key; null means the two cancel out
+    private static WishlistChangeEvent merge(WishlistChangeEvent buffered, WishlistChangeEvent next) {
+        if (buffered == null) {
+            return next;
+        }
+        if (buffered.getType() == Type.PRODUCT_ADDED) {
+            if (next.getType() == Type.PRODUCT_UPDATED) {
+                // Still an addition from the client's point of view, just with the latest fields
+                return next.withType(Type.PRODUCT_ADDED);
+            }
+            if (next.getType() == Type.PRODUCT_REMOVED) {
+                return null; // Added and removed within one window: the client never needs to know
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,76 @@
+package com.wishlistapp.services;
+
+import com.mongodb.MongoClientSettings;
+import com.wishlistapp.models.Wishlist;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Records the BSON size of wishlist documents, which grows with the embedded products array and is
+ * capped at 16 MB by Mongo. Full saves are always measured. Most product writes are server-side
+ * updates that never pass through a save event, so loaded documents (including the post-images
+ * returned by those updates) are sampled as well; measuring means re-encoding, hence the sampling.
+ */
+@Component
+public class WishlistDocumentSizeListener extends AbstractMongoEventListener<Wishlist> {
+
+    private static final long MAX_DOCUMENT_BYTES = 16L * 1024 * 1024;
+
+    private final DocumentCodec codec = new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry());
+    private final DistributionSummary savedSizes;
+    private final DistributionSummary loadedSizes;
+    private final double loadSampleRate;
+
+    public WishlistDocumentSizeListener(MeterRegistry meterRegistry,
+                                        @Value("${wishlist.metrics.document-size.load-sample-rate:0.1}") double loadSampleRate) {
+        this.savedSizes = sizeSummary(meterRegistry, "save");
+        this.loadedSizes = sizeSummary(meterRegistry, "load");
+        this.loadSampleRate = loadSampleRate;
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Wishlist> event) {
+        record(savedSizes, event.getDocument());
+    }
+
+    @Override
+    public void onAfterLoad(AfterLoadEvent<Wishlist> event) {
+        // Version-only projections carry no products and would drag the distribution down
+        if (event.getDocument().containsKey("products") && ThreadLocalRandom.current().nextDouble() < loadSampleRate) {
+            record(loadedSizes, event.getDocument());
+        }
+    }
+
+    private void record(DistributionSummary summary, Document document) {
+        if (document == null) {
+            return;
+        }
+        try {
+            summary.record(new RawBsonDocument(document, codec).getByteBuffer().remaining());
+        } catch (CodecConfigurationException e) {
+            // A value without a default codec; not worth failing a write over a metric
+        }
+    }
+
+    private static DistributionSummary sizeSummary(MeterRegistry meterRegistry, String event) {
+        return DistributionSummary.builder("wishlist.document.size")
+                .description("BSON size of wishlist documents")
+                .baseUnit("bytes")
+                .tag("event", event)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(256.0)
+                .maximumExpectedValue((double) MAX_DOCUMENT_BYTES)
+                .register(meterRegistry);
+    }
+}
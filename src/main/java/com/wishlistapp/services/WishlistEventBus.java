@@ -0,0 +1,19 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.WishlistChangeEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * Fan-out channel for wishlist change events. The default {@link InMemoryWishlistEventBus} only
+ * reaches listeners on the same node; multi-node deployments register their own bean (Redis pub/sub,
+ * a Mongo change stream, a message broker, ...) that delivers every published event to the
+ * listeners on all nodes, including the publishing one.
+ */
+public interface WishlistEventBus {
+
+    void publish(WishlistChangeEvent event);
+
+    // Returns a handle that unsubscribes the listener when closed
+    AutoCloseable subscribe(Consumer<WishlistChangeEvent> listener);
+}
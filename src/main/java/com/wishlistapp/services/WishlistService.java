@@ -1,33 +1,264 @@
 package com.wishlistapp.services;
 
+import com.wishlistapp.models.BulkInviteResult;
+import com.wishlistapp.models.BulkProductResult;
+import com.wishlistapp.models.InviteResult;
 import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductOperation;
+import com.wishlistapp.models.ProductOperationResult;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.ProductSearchPage;
+import com.wishlistapp.models.ProductStorage;
 import com.wishlistapp.models.User;
 import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import com.wishlistapp.models.WishlistRollup;
+import com.wishlistapp.models.WishlistSummary;
+import com.wishlistapp.models.WishlistSummaryPage;
 import com.wishlistapp.repositories.UserRepository;
 import com.wishlistapp.repositories.WishlistRepository;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.AddedCollaborators;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ProductChanges;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 @Service
 public class WishlistService {
 
+    // Characters of a product search text; names are short, and every term becomes a regex
+    private static final int MAX_SEARCH_LENGTH = 200;
+
     @Autowired
     private WishlistRepository wishlistRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private WishlistEventBus eventBus;
+
+    @Autowired
+    private WishlistWriteBuffer writeBuffer;
+
+    @Autowired
+    private WishlistCache wishlistCache;
+
+    @Value("${wishlist.summary.default-page-size:50}")
+    private int defaultSummaryPageSize;
+
+    @Value("${wishlist.summary.max-page-size:200}")
+    private int maxSummaryPageSize;
+
+    @Value("${wishlist.products.bulk.max-operations:1000}")
+    private int maxBulkOperations;
+
+    @Value("${wishlist.invites.max-emails:100}")
+    private int maxInvites;
+
+    @Value("${wishlist.products.page.default-size:50}")
+    private int defaultProductPageSize;
+
+    @Value("${wishlist.products.page.max-size:200}")
+    private int maxProductPageSize;
+
+    @Value("${wishlist.products.storage.layout:embedded}")
+    private ProductStorage newWishlistStorage;
+
+    // Wishlists growing past this many embedded products move them to their own collection; 0 never does
+    @Value("${wishlist.products.storage.migrate-above:0}")
+    private int migrateAbove;
+
+    @Value("${wishlist.search.default-page-size:20}")
+    private int defaultSearchPageSize;
+
+    @Value("${wishlist.search.max-page-size:100}")
+    private int maxSearchPageSize;
+
+    @Value("${wishlist.search.max-terms:8}")
+    private int maxSearchTerms;
+
+    // Wishlists this node is migrating right now; the repository's lease covers other nodes
+    private final Set<String> migrating = ConcurrentHashMap.newKeySet();
+
     public List<Wishlist> getUserWishlists(String userId) {
-        return wishlistRepository.findByOwnerIdOrCollaboratorIdsContaining(userId, userId);
+        return writeBuffer.readAll(() -> wishlistRepository.findByOwnerIdOrCollaboratorIdsContaining(userId, userId), Wishlist::getId,
+                id -> getWishlistForMember(id, userId));
+    }
+
+    /**
+     * The user's wishlists with only the given properties (dotted paths, see SparseFieldsets) loaded
+     * from storage; wishlists with buffered edits are re-read whole. Null fields loads everything.
+     */
+    public List<Wishlist> getUserWishlists(String userId, List<String> fields) {
+        if (fields == null) {
+            return getUserWishlists(userId);
+        }
+        return writeBuffer.readAll(() -> wishlistRepository.findForMember(userId, fields), Wishlist::getId,
+                id -> getWishlistForMember(id, userId));
+    }
+
+    // Keyset-paginated dashboard view; the cursor is the ID of the last summary on the previous page
+    public WishlistSummaryPage getUserWishlistSummaries(String userId, String cursor, Integer pageSize) {
+        int limit = pageSize == null || pageSize <= 0 ? defaultSummaryPageSize : Math.min(pageSize, maxSummaryPageSize);
+        // Fetch one extra row to learn whether another page exists
+        List<WishlistSummary> summaries = writeBuffer.readAll(() -> wishlistRepository.findSummariesForMember(userId, cursor, limit + 1),
+                WishlistSummary::getId, id -> getWishlistForMember(id, userId).map(WishlistService::summaryOf));
+        if (summaries.size() > limit) {
+            List<WishlistSummary> page = summaries.subList(0, limit);
+            return new WishlistSummaryPage(page, page.get(limit - 1).getId());
+        }
+        return new WishlistSummaryPage(summaries, null);
+    }
+
+    // Totals across all of the user's wishlists from their stored aggregates, without reading any products
+    public WishlistRollup getUserRollup(String userId) {
+        List<WishlistSummary> summaries = writeBuffer.readAll(() -> wishlistRepository.findSummariesForMember(userId), WishlistSummary::getId,
+                id -> getWishlistForMember(id, userId).map(WishlistService::summaryOf));
+        WishlistRollup rollup = new WishlistRollup();
+        for (WishlistSummary summary : summaries) {
+            rollup.setWishlistCount(rollup.getWishlistCount() + 1);
+            rollup.setProductCount(rollup.getProductCount() + summary.getProductCount());
+            rollup.setTotalPrice(rollup.getTotalPrice() + summary.getTotalPrice());
+            if (summary.getMinPrice() != null && (rollup.getMinPrice() == null || summary.getMinPrice() < rollup.getMinPrice())) {
+                rollup.setMinPrice(summary.getMinPrice());
+            }
+            if (summary.getMaxPrice() != null && (rollup.getMaxPrice() == null || summary.getMaxPrice() > rollup.getMaxPrice())) {
+                rollup.setMaxPrice(summary.getMaxPrice());
+            }
+        }
+        return rollup;
+    }
+
+    // Cheap validator for GET /api/wishlists: changes whenever any of the user's wishlists changes or membership does
+    public String getUserWishlistsTag(String userId) {
+        List<Wishlist> versions = writeBuffer.readAll(() -> wishlistRepository.findVersionsForMember(userId), Wishlist::getId,
+                        id -> writeBuffer.read(id, () -> wishlistRepository.findVersionForMember(id, userId))).stream()
+                .sorted(Comparator.comparing(Wishlist::getId))
+                .toList();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Wishlist wishlist : versions) {
+                digest.update((wishlist.getId() + ':' + wishlist.getVersion() + ';').getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Version of a wishlist the user may see, from the cache or else without loading the document itself
+    public Optional<Long> getWishlistVersionForMember(String id, String userId) {
+        return writeBuffer.read(id, () -> {
+            Optional<Wishlist> cached = wishlistCache.getIfPresent(id);
+            return cached.isPresent()
+                    ? cached.filter(wishlist -> isMember(wishlist, userId))
+                    : wishlistRepository.findVersionForMember(id, userId);
+        }).map(Wishlist::getVersion);
     }
 
     public Optional<Wishlist> getWishlistById(String id) {
-        return wishlistRepository.findById(id);
+        return writeBuffer.read(id, () -> wishlistCache.get(id, () -> wishlistRepository.findById(id)));
+    }
+
+    // Loads the wishlist only if the user is its owner or a collaborator
+    public Optional<Wishlist> getWishlistForMember(String id, String userId) {
+        if (!wishlistCache.isEnabled()) {
+            return writeBuffer.read(id, () -> wishlistRepository.findByIdForMember(id, userId)); // Checked by the query itself
+        }
+        return getWishlistById(id).filter(wishlist -> isMember(wishlist, userId));
+    }
+
+    // Loads the wishlist only if the user owns it
+    public Optional<Wishlist> getWishlistForOwner(String id, String ownerId) {
+        if (!wishlistCache.isEnabled()) {
+            return writeBuffer.read(id, () -> wishlistRepository.findByIdAndOwnerId(id, ownerId));
+        }
+        return getWishlistById(id).filter(wishlist -> ownerId.equals(wishlist.getOwnerId()));
+    }
+
+    // Keyset page of the products in their stored order; the caller must already have authorized access
+    public ProductPage getProductsPage(String wishlistId, String cursor, Integer pageSize) {
+        int limit = pageSize == null || pageSize <= 0 ? defaultProductPageSize : Math.min(pageSize, maxProductPageSize);
+        writeBuffer.flush(wishlistId); // Pages come straight from storage, which must include buffered edits
+        return wishlistRepository.findProductsPage(wishlistId, cursor, limit);
+    }
+
+    public Optional<Product> getProduct(String wishlistId, String productId) {
+        Optional<Wishlist> cached = writeBuffer.read(wishlistId, () -> wishlistCache.getIfPresent(wishlistId));
+        if (cached.isPresent()) {
+            return Optional.ofNullable(findProduct(cached.get(), productId));
+        }
+        writeBuffer.flush(wishlistId);
+        return wishlistRepository.findProduct(wishlistId, productId);
+    }
+
+    /**
+     * Moves the wishlist's products out of the wishlist document into their own collection, which
+     * keeps product writes small and lifts the document size limit for very large wishlists. Readers
+     * see no difference. Empty when the wishlist doesn't exist.
+     */
+    public Optional<Wishlist> migrateProductStorage(String wishlistId) {
+        if (!migrating.add(wishlistId)) {
+            return getWishlistById(wishlistId);
+        }
+        try {
+            writeBuffer.flush(wishlistId);
+            return write(wishlistId, () -> wishlistRepository.migrateProductsToCollection(wishlistId));
+        } finally {
+            migrating.remove(wishlistId);
+        }
+    }
+
+    /**
+     * Searches the products of every wishlist the user owns or collaborates on by name terms and/or
+     * price range; see {@code WishlistQueries#productSearch} for matching and ranking.
+     *
+     * @throws IllegalArgumentException when the search is empty, too long or has an inverted price range
+     */
+    public ProductSearchPage searchProducts(String userId, String query, Double minPrice, Double maxPrice, String cursor, Integer pageSize) {
+        List<String> terms = query == null || query.isBlank() ? List.of() : List.of(query.trim().split("\\s+"));
+        if (terms.isEmpty() && minPrice == null && maxPrice == null) {
+            throw new IllegalArgumentException("Give a search text, a price range or both.");
+        }
+        if (query != null && query.length() > MAX_SEARCH_LENGTH) {
+            throw new IllegalArgumentException("The search text is limited to " + MAX_SEARCH_LENGTH + " characters.");
+        }
+        if (terms.size() > maxSearchTerms) {
+            throw new IllegalArgumentException("At most " + maxSearchTerms + " search terms.");
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice is above maxPrice.");
+        }
+        int limit = pageSize == null || pageSize <= 0 ? defaultSearchPageSize : Math.min(pageSize, maxSearchPageSize);
+        if (writeBuffer.isEnabled()) {
+            // The search reads storage directly, so buffered edits of the user's wishlists go first
+            wishlistRepository.findVersionsForMember(userId).forEach(wishlist -> writeBuffer.flush(wishlist.getId()));
+        }
+        return wishlistRepository.searchProducts(userId, terms, minPrice, maxPrice, cursor, limit);
+    }
+
+    public boolean wishlistExists(String id) {
+        return wishlistRepository.existsById(id);
     }
 
     public Wishlist createWishlist(Wishlist wishlist, String ownerId) {
@@ -38,70 +269,380 @@ public class WishlistService {
         wishlist.setOwnerId(ownerId);
         wishlist.setOwnerUsername(ownerOptional.get().getUsername());
         wishlist.setId(UUID.randomUUID().toString()); // Generate ID for new wishlist
-        return wishlistRepository.save(wishlist);
+        wishlist.setVersion(0);
+        wishlist.recomputeAggregates();
+        Wishlist created = wishlistRepository.save(wishlist);
+        if (newWishlistStorage == ProductStorage.COLLECTION) {
+            return wishlistRepository.migrateProductsToCollection(created.getId()).orElse(created);
+        }
+        return created;
+    }
+
+    // The existing wishlist must already be authorized and loaded by the caller
+    public Optional<Wishlist> updateWishlist(Wishlist existing, Wishlist updatedWishlist) {
+        return updateWishlist(existing, updatedWishlist, null);
     }
 
-    public Optional<Wishlist> updateWishlist(String id, Wishlist updatedWishlist) {
-        return wishlistRepository.findById(id)
-                .map(wishlist -> {
-                    wishlist.setTitle(updatedWishlist.getTitle());
-                    wishlist.setDescription(updatedWishlist.getDescription());
-                    // Collaborators update logic might be more complex
-                    // For now, simple replacement
-                    wishlist.setCollaboratorIds(updatedWishlist.getCollaboratorIds());
-                    return wishlistRepository.save(wishlist);
-                });
+    public Optional<Wishlist> updateWishlist(Wishlist existing, Wishlist updatedWishlist, Long expectedVersion) {
+        // Collaborators update logic might be more complex
+        // For now, simple replacement
+        writeBuffer.flush(existing.getId());
+        Optional<Wishlist> updated = write(existing.getId(), () -> wishlistRepository.updateDetails(existing.getId(), updatedWishlist.getTitle(),
+                updatedWishlist.getDescription(), updatedWishlist.getCollaboratorIds(), expectedVersion));
+        updated.ifPresent(wishlist -> {
+            List<String> before = existing.getCollaboratorIds() != null ? existing.getCollaboratorIds() : List.of();
+            if (wishlist.getCollaboratorIds() != null) {
+                wishlist.getCollaboratorIds().stream()
+                        .filter(collaboratorId -> !before.contains(collaboratorId))
+                        .forEach(collaboratorId -> eventBus.publish(WishlistChangeEvent.collaboratorInvited(wishlist, collaboratorId)));
+            }
+            eventBus.publish(WishlistChangeEvent.metadataChanged(wishlist));
+        });
+        return updated;
     }
 
-    public boolean deleteWishlist(String id) {
-        if (wishlistRepository.existsById(id)) {
-            wishlistRepository.deleteById(id);
+    public int getMaxInvites() {
+        return maxInvites;
+    }
+
+    /**
+     * Invites users by email to a wishlist the caller has already checked they own: every email is
+     * resolved with one query and the users who aren't members yet are added with one atomic set-add,
+     * so concurrent invites never drop each other. Outcomes are reported per email, in request order.
+     * Empty when the wishlist is gone.
+     */
+    public Optional<BulkInviteResult> inviteCollaborators(Wishlist existing, List<String> emails) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String email : emails) {
+            if (email != null && !email.isBlank()) {
+                distinct.add(email);
+            }
+        }
+        Map<String, User> usersByEmail = new HashMap<>();
+        if (!distinct.isEmpty()) {
+            userRepository.findByEmailIn(distinct).forEach(user -> usersByEmail.put(user.getEmail(), user));
+        }
+        List<String> candidateIds = usersByEmail.values().stream()
+                .map(User::getId)
+                .filter(userId -> !userId.equals(existing.getOwnerId()))
+                .distinct()
+                .toList();
+
+        Wishlist wishlist = existing;
+        List<String> addedIds = List.of();
+        if (!candidateIds.isEmpty()) {
+            writeBuffer.flush(existing.getId()); // The returned document must include buffered product edits
+            Optional<AddedCollaborators> added = write(existing.getId(),
+                    () -> wishlistRepository.addCollaborators(existing.getId(), existing.getOwnerId(), candidateIds));
+            if (added.isEmpty()) {
+                return Optional.empty();
+            }
+            wishlist = added.get().wishlist();
+            addedIds = added.get().addedIds();
+            for (String collaboratorId : addedIds) {
+                eventBus.publish(WishlistChangeEvent.collaboratorInvited(wishlist, collaboratorId));
+            }
+            if (!addedIds.isEmpty()) {
+                eventBus.publish(WishlistChangeEvent.metadataChanged(wishlist));
+            }
+        }
+
+        List<InviteResult> results = new ArrayList<>(emails.size());
+        Set<String> reported = new HashSet<>();
+        for (String email : emails) {
+            if (email == null || email.isBlank()) {
+                results.add(new InviteResult(email, null, InviteResult.Status.INVALID));
+                continue;
+            }
+            User user = usersByEmail.get(email);
+            if (user == null) {
+                results.add(new InviteResult(email, null, InviteResult.Status.NOT_FOUND));
+            } else {
+                // A repeated email reports the user as a member after its first occurrence invited them
+                boolean invited = addedIds.contains(user.getId()) && reported.add(email);
+                results.add(new InviteResult(email, user.getId(), invited ? InviteResult.Status.INVITED : InviteResult.Status.ALREADY_MEMBER));
+            }
+        }
+        return Optional.of(new BulkInviteResult(wishlist, results));
+    }
+
+    public boolean deleteWishlist(Wishlist existing) {
+        return deleteWishlist(existing, null);
+    }
+
+    public boolean deleteWishlist(Wishlist existing, Long expectedVersion) {
+        writeBuffer.flush(existing.getId()); // Keeps the expected version, which counts buffered edits, accurate
+        long removed = write(existing.getId(), () -> expectedVersion == null
+                ? wishlistRepository.removeById(existing.getId())
+                : wishlistRepository.removeByIdAndVersion(existing.getId(), expectedVersion));
+        if (removed > 0) {
+            wishlistRepository.deleteProducts(existing.getId());
+            eventBus.publish(WishlistChangeEvent.deleted(existing));
             return true;
         }
+        if (expectedVersion != null && wishlistRepository.existsById(existing.getId())) {
+            throw new OptimisticLockingFailureException("Wishlist " + existing.getId() + " is no longer at version " + expectedVersion);
+        }
         return false;
     }
 
-    public Optional<Wishlist> addProductToWishlist(String wishlistId, Product product, String addedByUserId) {
-        return wishlistRepository.findById(wishlistId)
-                .map(wishlist -> {
-                    Optional<User> userOptional = userRepository.findById(addedByUserId);
-                    if (userOptional.isEmpty()) {
-                        throw new RuntimeException("User adding product not found for ID: " + addedByUserId);
+    public Optional<Wishlist> addProductToWishlist(Wishlist wishlist, Product product, User addedBy) {
+        return addProductToWishlist(wishlist, product, addedBy, null);
+    }
+
+    public Optional<Wishlist> addProductToWishlist(Wishlist wishlist, Product product, User addedBy, Long expectedVersion) {
+        prepareNewProduct(product, addedBy);
+        writeBuffer.flush(wishlist.getId());
+        Optional<Wishlist> updated = write(wishlist.getId(), () -> wishlistRepository.pushProduct(wishlist.getId(), product, expectedVersion));
+        updated.ifPresent(wl -> eventBus.publish(WishlistChangeEvent.productAdded(wl, product)));
+        return updated.map(this::migrateIfLarge);
+    }
+
+    public Optional<Wishlist> updateProductInWishlist(Wishlist wishlist, String productId, Product updatedProduct) {
+        return updateProductInWishlist(wishlist, productId, updatedProduct, null);
+    }
+
+    public Optional<Wishlist> updateProductInWishlist(Wishlist wishlist, String productId, Product updatedProduct, Long expectedVersion) {
+        // Empty when the product isn't part of the wishlist (anymore)
+        if (expectedVersion == null && writeBuffer.isEnabled()) {
+            // Autosave traffic: coalesced with the wishlist's other pending edits, events go out on flush
+            return writeBuffer.stageProductEdit(wishlist.getId(), productId, updatedProduct);
+        }
+        writeBuffer.flush(wishlist.getId());
+        Optional<Wishlist> updated = write(wishlist.getId(),
+                () -> wishlistRepository.setProductFields(wishlist.getId(), productId, updatedProduct, LocalDateTime.now(), expectedVersion));
+        updated.ifPresent(wl -> eventBus.publish(WishlistChangeEvent.productUpdated(wl, productId)));
+        return updated;
+    }
+
+    public Optional<Wishlist> removeProductFromWishlist(Wishlist wishlist, String productId) {
+        return removeProductFromWishlist(wishlist, productId, null);
+    }
+
+    public Optional<Wishlist> removeProductFromWishlist(Wishlist wishlist, String productId, Long expectedVersion) {
+        writeBuffer.flush(wishlist.getId());
+        Optional<Wishlist> updated = write(wishlist.getId(), () -> wishlistRepository.pullProduct(wishlist.getId(), productId, expectedVersion));
+        if (updated.isPresent()) {
+            eventBus.publish(WishlistChangeEvent.productRemoved(updated.get(), productId));
+            return updated;
+        }
+        // Removing a product that is already gone leaves the wishlist untouched, though maybe not as the caller loaded it
+        return getWishlistById(wishlist.getId());
+    }
+
+    public int getMaxBulkOperations() {
+        return maxBulkOperations;
+    }
+
+    /**
+     * Applies a batch of product adds, updates and deletes in order and persists their net effect as
+     * a single write keyed by product ID: new products are appended, edited and removed ones are
+     * matched by their IDs. Operations that can't apply to the wishlist as given (unknown product,
+     * missing fields) are reported per item and skipped. Without an expected version the write merges
+     * with concurrent ones, products another writer removed meanwhile are simply skipped; with one,
+     * a conflict surfaces as {@link OptimisticLockingFailureException}. Empty when the wishlist was
+     * deleted meanwhile.
+     */
+    public Optional<BulkProductResult> applyProductOperations(Wishlist wishlist, List<ProductOperation> operations, User actor, Long expectedVersion) {
+        writeBuffer.flush(wishlist.getId()); // Buffered edits land first, so the batch's own edits win
+        List<Product> original = wishlist.getProducts() != null ? wishlist.getProducts() : List.of();
+        List<Product> products = new ArrayList<>(original);
+        List<ProductOperationResult> results = applyOperations(products, operations, actor);
+        ProductChanges changes = changesBetween(original, products);
+        if (changes.isEmpty()) {
+            return Optional.of(new BulkProductResult(wishlist, results)); // Nothing to write
+        }
+        Optional<Wishlist> updated = write(wishlist.getId(), () -> wishlistRepository.applyProductChanges(wishlist.getId(), changes, expectedVersion));
+        updated.ifPresent(wl -> publishProductChanges(wl, results));
+        return updated.map(this::migrateIfLarge).map(wl -> new BulkProductResult(wl, results));
+    }
+
+    // applyOperations replaces every product it edits, so an edited product is one that isn't the original instance
+    private static ProductChanges changesBetween(List<Product> original, List<Product> applied) {
+        Map<String, Product> originalById = new HashMap<>();
+        original.forEach(product -> originalById.put(product.getId(), product));
+        List<Product> added = new ArrayList<>();
+        Map<String, Product> edits = new HashMap<>();
+        Set<String> removedIds = new HashSet<>(originalById.keySet());
+        for (Product product : applied) {
+            Product before = originalById.get(product.getId());
+            if (before == null) {
+                added.add(product);
+            } else {
+                removedIds.remove(product.getId());
+                if (before != product) {
+                    edits.put(product.getId(), product);
+                }
+            }
+        }
+        return new ProductChanges(added, edits, removedIds);
+    }
+
+    // Works on the caller's copy of the products list; existing products are replaced, never mutated in place
+    private List<ProductOperationResult> applyOperations(List<Product> products, List<ProductOperation> operations, User actor) {
+        List<ProductOperationResult> results = new ArrayList<>(operations.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < operations.size(); i++) {
+            ProductOperation operation = operations.get(i);
+            ProductOperation.Type type = operation != null ? operation.getOp() : null;
+            String productId = operation != null ? operation.getProductId() : null;
+            ProductOperationResult.Status status;
+            if (type == null) {
+                status = ProductOperationResult.Status.INVALID;
+            } else if (type == ProductOperation.Type.ADD) {
+                if (operation.getProduct() == null) {
+                    status = ProductOperationResult.Status.INVALID;
+                } else {
+                    Product product = copyOf(operation.getProduct());
+                    prepareNewProduct(product, actor);
+                    products.add(product);
+                    productId = product.getId();
+                    status = ProductOperationResult.Status.APPLIED;
+                }
+            } else if (productId == null || (type == ProductOperation.Type.UPDATE && operation.getProduct() == null)) {
+                status = ProductOperationResult.Status.INVALID;
+            } else {
+                int index = indexOfProduct(products, productId);
+                if (index < 0) {
+                    status = ProductOperationResult.Status.NOT_FOUND;
+                } else if (type == ProductOperation.Type.DELETE) {
+                    products.remove(index);
+                    status = ProductOperationResult.Status.APPLIED;
+                } else {
+                    // Same fields as a single-product update
+                    Product edited = copyOf(products.get(index));
+                    edited.setName(operation.getProduct().getName());
+                    edited.setImageUrl(operation.getProduct().getImageUrl());
+                    edited.setPrice(operation.getProduct().getPrice());
+                    edited.setLastEditedAt(now);
+                    products.set(index, edited);
+                    status = ProductOperationResult.Status.APPLIED;
+                }
+            }
+            results.add(new ProductOperationResult(i, type, productId, status));
+        }
+        return results;
+    }
+
+    private void publishProductChanges(Wishlist updated, List<ProductOperationResult> results) {
+        for (ProductOperationResult result : results) {
+            if (result.getStatus() != ProductOperationResult.Status.APPLIED) {
+                continue;
+            }
+            switch (result.getOp()) {
+                case ADD -> {
+                    // Skipped when a later operation in the same batch deleted it again
+                    Product added = findProduct(updated, result.getProductId());
+                    if (added != null) {
+                        eventBus.publish(WishlistChangeEvent.productAdded(updated, added));
                     }
-                    product.setId(UUID.randomUUID().toString()); // Unique ID for the product
-                    product.setAddedByUserId(addedByUserId);
-                    product.setAddedByUsername(userOptional.get().getUsername()); // Set username for display
-                    product.setCreatedAt(LocalDateTime.now());
-                    product.setLastEditedAt(LocalDateTime.now());
-                    wishlist.getProducts().add(product);
-                    return wishlistRepository.save(wishlist);
-                });
-    }
-
-    public Optional<Wishlist> updateProductInWishlist(String wishlistId, String productId, Product updatedProduct) {
-        return wishlistRepository.findById(wishlistId)
-                .map(wishlist -> {
-                    Optional<Product> existingProductOptional = wishlist.getProducts().stream()
-                            .filter(p -> p.getId().equals(productId))
-                            .findFirst();
-
-                    if (existingProductOptional.isPresent()) {
-                        Product existingProduct = existingProductOptional.get();
-                        existingProduct.setName(updatedProduct.getName());
-                        existingProduct.setImageUrl(updatedProduct.getImageUrl());
-                        existingProduct.setPrice(updatedProduct.getPrice());
-                        existingProduct.setLastEditedAt(LocalDateTime.now());
-                        return wishlistRepository.save(wishlist);
+                }
+                case UPDATE -> {
+                    // Skipped when the product was removed meanwhile (or later in the batch)
+                    if (findProduct(updated, result.getProductId()) != null) {
+                        eventBus.publish(WishlistChangeEvent.productUpdated(updated, result.getProductId()));
                     }
-                    return null; // Product not found in wishlist
-                });
+                }
+                case DELETE -> eventBus.publish(WishlistChangeEvent.productRemoved(updated, result.getProductId()));
+            }
+        }
+    }
+
+    private static void prepareNewProduct(Product product, User addedBy) {
+        product.setId(UUID.randomUUID().toString()); // Unique ID for the product
+        product.setAddedByUserId(addedBy.getId());
+        product.setAddedByUsername(addedBy.getUsername()); // Set username for display
+        product.setCreatedAt(LocalDateTime.now());
+        product.setLastEditedAt(product.getCreatedAt());
+    }
+
+    private static int indexOfProduct(List<Product> products, String productId) {
+        for (int i = 0; i < products.size(); i++) {
+            if (productId.equals(products.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Product findProduct(Wishlist wishlist, String productId) {
+        int index = indexOfProduct(wishlist.getProducts(), productId);
+        return index >= 0 ? wishlist.getProducts().get(index) : null;
+    }
+
+    // Moves the products of a wishlist that just grew past the threshold; a failed attempt is retried by the next add
+    private Wishlist migrateIfLarge(Wishlist updated) {
+        if (migrateAbove <= 0 || updated.getProductStorage() == ProductStorage.COLLECTION || updated.getProducts().size() <= migrateAbove) {
+            return updated;
+        }
+        try {
+            return migrateProductStorage(updated.getId()).orElse(updated);
+        } catch (OptimisticLockingFailureException e) {
+            return updated; // Changed meanwhile
+        }
+    }
+
+    // Runs a write and drops the cached copy afterwards, even if the write failed midway and may have gone through
+    private <T> T write(String wishlistId, Supplier<T> write) {
+        try {
+            return write.get();
+        } finally {
+            wishlistCache.invalidate(wishlistId);
+        }
+    }
+
+    private static boolean isMember(Wishlist wishlist, String userId) {
+        return userId.equals(wishlist.getOwnerId())
+                || (wishlist.getCollaboratorIds() != null && wishlist.getCollaboratorIds().contains(userId));
+    }
+
+    private static WishlistSummary summaryOf(Wishlist wishlist) {
+        WishlistSummary summary = new WishlistSummary();
+        summary.setId(wishlist.getId());
+        summary.setTitle(wishlist.getTitle());
+        summary.setOwnerId(wishlist.getOwnerId());
+        summary.setOwnerUsername(wishlist.getOwnerUsername());
+        summary.setProductCount(wishlist.getProductCount());
+        summary.setTotalPrice(wishlist.getTotalPrice());
+        summary.setMinPrice(wishlist.getMinPrice());
+        summary.setMaxPrice(wishlist.getMaxPrice());
+        return summary;
+    }
+
+    static Wishlist copyOf(Wishlist source) {
+        Wishlist copy = new Wishlist();
+        copy.setId(source.getId());
+        copy.setTitle(source.getTitle());
+        copy.setDescription(source.getDescription());
+        copy.setOwnerId(source.getOwnerId());
+        copy.setOwnerUsername(source.getOwnerUsername());
+        copy.setCollaboratorIds(source.getCollaboratorIds() != null ? new ArrayList<>(source.getCollaboratorIds()) : null);
+        if (source.getProducts() != null) {
+            List<Product> products = new ArrayList<>(source.getProducts().size());
+            source.getProducts().forEach(product -> products.add(copyOf(product)));
+            copy.setProducts(products);
+        } else {
+            copy.setProducts(null);
+        }
+        copy.setVersion(source.getVersion());
+        copy.setProductCount(source.getProductCount());
+        copy.setTotalPrice(source.getTotalPrice());
+        copy.setMinPrice(source.getMinPrice());
+        copy.setMaxPrice(source.getMaxPrice());
+        copy.setProductStorage(source.getProductStorage());
+        return copy;
     }
 
-    public Optional<Wishlist> removeProductFromWishlist(String wishlistId, String productId) {
-        return wishlistRepository.findById(wishlistId)
-                .map(wishlist -> {
-                    wishlist.getProducts().removeIf(p -> p.getId().equals(productId));
-                    return wishlistRepository.save(wishlist);
-                });
+    static Product copyOf(Product source) {
+        Product copy = new Product();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setPrice(source.getPrice());
+        copy.setAddedByUserId(source.getAddedByUserId());
+        copy.setAddedByUsername(source.getAddedByUsername());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setLastEditedAt(source.getLastEditedAt());
+        return copy;
     }
-}
\ No newline at end of file
+}
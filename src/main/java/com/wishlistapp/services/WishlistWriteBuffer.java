@@ -0,0 +1,333 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import com.wishlistapp.repositories.WishlistRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Optional write-behind buffer for product edits without If-Match, the autosave traffic. Edits to
+ * the same wishlist are held for up to one coalescing window, the latest edit per product wins,
+ * and the whole batch is flushed as a single update of the wishlist document.
+ *
+ * <p>Reads of a wishlist with buffered edits see them overlaid on the stored document, reporting the
+ * version the flush will produce, so callers keep reading their own writes and keep valid ETags.
+ * Every other write to such a wishlist flushes it first. The buffer is bounded: once it holds too many
+ * edits, the next edit is written through together with the rest of its wishlist's batch.</p>
+ *
+ * <p>Buffered edits live in this process only; they are flushed on shutdown, but a crash loses
+ * them, and other instances don't see them until they are flushed.</p>
+ */
+@Component
+public class WishlistWriteBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistWriteBuffer.class);
+
+    private final WishlistRepository wishlistRepository;
+    private final WishlistEventBus eventBus;
+    private final WishlistCache wishlistCache;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxPendingEdits;
+
+    private final Map<String, PendingEdits> pendingByWishlist = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingEdits = new AtomicInteger();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wishlist-write-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final MeterRegistry meterRegistry;
+    private final Counter staged;
+    private final Counter coalesced;
+    private final Counter flushFailures;
+    private final DistributionSummary batchSizes;
+
+    public WishlistWriteBuffer(WishlistRepository wishlistRepository,
+                               WishlistEventBus eventBus,
+                               WishlistCache wishlistCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${wishlist.products.write-coalescing.enabled:false}") boolean enabled,
+                               @Value("${wishlist.products.write-coalescing.window:250ms}") Duration window,
+                               @Value("${wishlist.products.write-coalescing.max-pending-edits:10000}") int maxPendingEdits) {
+        this.wishlistRepository = wishlistRepository;
+        this.eventBus = eventBus;
+        this.wishlistCache = wishlistCache;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxPendingEdits = maxPendingEdits;
+        this.meterRegistry = meterRegistry;
+        this.staged = Counter.builder("wishlist.write-buffer.staged")
+                .description("Product edits accepted into the write buffer")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("wishlist.write-buffer.coalesced")
+                .description("Buffered product edits superseded by a later edit before being written")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("wishlist.write-buffer.flush-failures")
+                .description("Flushes that failed; their edits stay buffered")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("wishlist.write-buffer.batch-size")
+                .description("Product edits written per flush")
+                .register(meterRegistry);
+        Gauge.builder("wishlist.write-buffer.pending", pendingEdits, AtomicInteger::get)
+                .description("Product edits buffered and not yet written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            // Checking a few times per window keeps the oldest edit's delay close to the window itself
+            long tickMillis = Math.max(1, window.toMillis() / 4);
+            flusher.scheduleWithFixedDelay(this::flushDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        for (String wishlistId : List.copyOf(pendingByWishlist.keySet())) {
+            try {
+                flush(wishlistId, "shutdown");
+            } catch (RuntimeException e) {
+                log.error("Dropping buffered product edits of wishlist {} at shutdown", wishlistId, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers an edit of name, imageUrl and price, returning the wishlist as readers will now see it.
+     * Empty when the wishlist or product doesn't exist, in which case nothing is buffered.
+     */
+    public Optional<Wishlist> stageProductEdit(String wishlistId, String productId, Product changes) {
+        while (true) {
+            PendingEdits pending = pendingByWishlist.computeIfAbsent(wishlistId, id -> new PendingEdits());
+            pending.lock.lock();
+            try {
+                if (pending.retired) {
+                    continue; // Flushed while we waited; start a new batch
+                }
+                // A copy, so the overlay below never touches the cached document
+                Optional<Wishlist> stored = wishlistCache.get(wishlistId, () -> wishlistRepository.findById(wishlistId));
+                if (stored.isEmpty() || indexOfProduct(stored.get(), productId) < 0) {
+                    retireIfEmpty(wishlistId, pending);
+                    return Optional.empty();
+                }
+                Product edit = new Product();
+                edit.setName(changes.getName());
+                edit.setImageUrl(changes.getImageUrl());
+                edit.setPrice(changes.getPrice());
+                edit.setLastEditedAt(LocalDateTime.now());
+                if (pending.edits.isEmpty()) {
+                    pending.firstStagedNanos = System.nanoTime();
+                }
+                if (pending.edits.put(productId, edit) != null) {
+                    coalesced.increment();
+                } else if (pendingEdits.incrementAndGet() > maxPendingEdits) {
+                    staged.increment();
+                    return flushLocked(wishlistId, pending, "overflow");
+                }
+                staged.increment();
+                return Optional.of(overlay(stored.get(), pending));
+            } finally {
+                pending.lock.unlock();
+            }
+        }
+    }
+
+    // Writes the wishlist's buffered edits, if any; other writes call this first so they apply on top of them
+    public void flush(String wishlistId) {
+        flush(wishlistId, "write");
+    }
+
+    /**
+     * Reads a wishlist with its buffered edits applied. While a batch is pending the read runs under
+     * that batch's lock, so it can't observe the stored document before a flush and the buffer after it.
+     */
+    public Optional<Wishlist> read(String wishlistId, Supplier<Optional<Wishlist>> reader) {
+        while (true) {
+            PendingEdits pending = pendingByWishlist.get(wishlistId);
+            if (pending == null) {
+                return reader.get();
+            }
+            pending.lock.lock();
+            try {
+                if (!pending.retired) {
+                    return reader.get().map(wishlist -> overlay(wishlist, pending));
+                }
+            } finally {
+                pending.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Reads a list of wishlist-derived rows and re-reads, through {@code reread}, every row whose
+     * wishlist had buffered edits before or after the list query; {@code reread} must go through
+     * {@link #read}. Rows whose re-read comes back empty are dropped.
+     */
+    public <T> List<T> readAll(Supplier<List<T>> reader, Function<T, String> idOf, Function<String, Optional<T>> reread) {
+        if (!enabled) {
+            return reader.get();
+        }
+        // An edit is in the map from the moment it's acknowledged until its flush is written
+        Set<String> pendingBefore = Set.copyOf(pendingByWishlist.keySet());
+        List<T> rows = reader.get();
+        if (pendingBefore.isEmpty() && pendingByWishlist.isEmpty()) {
+            return rows;
+        }
+        List<T> merged = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            String wishlistId = idOf.apply(row);
+            if (pendingBefore.contains(wishlistId) || pendingByWishlist.containsKey(wishlistId)) {
+                reread.apply(wishlistId).ifPresent(merged::add);
+            } else {
+                merged.add(row);
+            }
+        }
+        return merged;
+    }
+
+    private void flushDue() {
+        long dueBefore = System.nanoTime() - window.toNanos();
+        pendingByWishlist.forEach((wishlistId, pending) -> {
+            if (pending.firstStagedNanos - dueBefore <= 0) {
+                try {
+                    flush(wishlistId, "window");
+                } catch (RuntimeException e) {
+                    // Never let one failed wishlist cancel the scheduled flusher; its edits are retried next tick
+                    log.warn("Flushing buffered product edits of wishlist {} failed", wishlistId, e);
+                }
+            }
+        });
+    }
+
+    private void flush(String wishlistId, String reason) {
+        PendingEdits pending = pendingByWishlist.get(wishlistId);
+        if (pending == null) {
+            return;
+        }
+        pending.lock.lock();
+        try {
+            if (!pending.retired) {
+                flushLocked(wishlistId, pending, reason);
+            }
+        } finally {
+            pending.lock.unlock();
+        }
+    }
+
+    private Optional<Wishlist> flushLocked(String wishlistId, PendingEdits pending, String reason) {
+        Map<String, Product> edits = new LinkedHashMap<>(pending.edits);
+        Optional<Wishlist> updated = Optional.empty();
+        if (!edits.isEmpty()) {
+            try {
+                // Empty when the wishlist or all of the edited products were deleted meanwhile
+                updated = wishlistRepository.setProductFields(wishlistId, edits);
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                throw e;
+            } finally {
+                // Still under the batch's lock, so no reader can pick up the pre-flush document from the cache
+                wishlistCache.invalidate(wishlistId);
+            }
+            batchSizes.record(edits.size());
+            Counter.builder("wishlist.write-buffer.flushes")
+                    .description("Batched writes of buffered product edits")
+                    .tag("reason", reason)
+                    .register(meterRegistry)
+                    .increment();
+        }
+        pendingEdits.addAndGet(-edits.size());
+        pending.edits.clear();
+        retireIfEmpty(wishlistId, pending);
+        updated.ifPresent(wishlist -> edits.keySet().stream()
+                .filter(productId -> indexOfProduct(wishlist, productId) >= 0)
+                .forEach(productId -> eventBus.publish(WishlistChangeEvent.productUpdated(wishlist, productId))));
+        return updated;
+    }
+
+    // Must hold the batch's lock; a retired batch is never reused, stagers create a fresh one
+    private void retireIfEmpty(String wishlistId, PendingEdits pending) {
+        if (pending.edits.isEmpty()) {
+            pending.retired = true;
+            pendingByWishlist.remove(wishlistId, pending);
+        }
+    }
+
+    // Applies the edits to a freshly read document; product instances are replaced, never mutated
+    private static Wishlist overlay(Wishlist wishlist, PendingEdits pending) {
+        if (pending.edits.isEmpty()) {
+            return wishlist;
+        }
+        List<Product> products = wishlist.getProducts();
+        if (products != null) { // Null in version-only projections
+            for (int i = 0; i < products.size(); i++) {
+                Product edit = pending.edits.get(products.get(i).getId());
+                if (edit != null) {
+                    Product edited = WishlistService.copyOf(products.get(i));
+                    edited.setName(edit.getName());
+                    edited.setImageUrl(edit.getImageUrl());
+                    edited.setPrice(edit.getPrice());
+                    edited.setLastEditedAt(edit.getLastEditedAt());
+                    products.set(i, edited);
+                }
+            }
+            wishlist.recomputeAggregates(); // As the flush will leave them
+        }
+        // The pending batch is written as exactly one update
+        wishlist.setVersion(wishlist.getVersion() + 1);
+        return wishlist;
+    }
+
+    private static int indexOfProduct(Wishlist wishlist, String productId) {
+        List<Product> products = wishlist.getProducts();
+        for (int i = 0; products != null && i < products.size(); i++) {
+            if (productId.equals(products.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class PendingEdits {
+        // Held across the flush write, and across reads, so no reader sees a half-flushed state
+        private final ReentrantLock lock = new ReentrantLock();
+        // Latest edit per product ID, in the order products were first edited
+        private final LinkedHashMap<String, Product> edits = new LinkedHashMap<>();
+        private volatile long firstStagedNanos;
+        private boolean retired;
+    }
+}
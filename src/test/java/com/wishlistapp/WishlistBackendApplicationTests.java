@@ -1,13 +1,30 @@
 package com.wishlistapp;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 
-@SpringBootTest
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"wishlist.mongo.create-indexes=false",
+		"wishlist.mongo.verify-query-plans=false"
+})
 class WishlistBackendApplicationTests {
 
+	@Autowired
+	private ApplicationContext context;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void servletModeStartsNoReactiveMongoClient() {
+		assertThat(context.getBeanNamesForType(com.mongodb.reactivestreams.client.MongoClient.class)).isEmpty();
+		assertThat(context.getBeanNamesForType(ReactiveMongoTemplate.class)).isEmpty();
+	}
+
 }
@@ -0,0 +1,26 @@
+package com.wishlistapp.controllers;
+
+import com.wishlistapp.models.User;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthControllerTests {
+
+	@Test
+	void signupNeedsUsernameEmailAndPassword() {
+		assertThat(AuthController.hasSignupFields(user("alice", "alice@example.com", "secret"))).isTrue();
+		assertThat(AuthController.hasSignupFields(user(null, "alice@example.com", "secret"))).isFalse();
+		assertThat(AuthController.hasSignupFields(user("alice", " ", "secret"))).isFalse();
+		assertThat(AuthController.hasSignupFields(user("alice", "alice@example.com", ""))).isFalse();
+		assertThat(AuthController.hasSignupFields(null)).isFalse();
+	}
+
+	private static User user(String username, String email, String password) {
+		User user = new User();
+		user.setUsername(username);
+		user.setEmail(email);
+		user.setPasswordHash(password);
+		return user;
+	}
+}
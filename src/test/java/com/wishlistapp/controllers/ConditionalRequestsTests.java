@@ -0,0 +1,51 @@
+package com.wishlistapp.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConditionalRequestsTests {
+
+	@Test
+	void ifNoneMatchUsesWeakComparisonAcrossAListOfTags() {
+		String etag = ConditionalRequests.etag(3);
+
+		assertThat(ConditionalRequests.noneMatch(null, etag)).isTrue();
+		assertThat(ConditionalRequests.noneMatch("\"3\"", etag)).isFalse();
+		assertThat(ConditionalRequests.noneMatch("W/\"3\"", etag)).isFalse();
+		assertThat(ConditionalRequests.noneMatch("\"1\", \"3\"", etag)).isFalse();
+		assertThat(ConditionalRequests.noneMatch("\"4\"", etag)).isTrue();
+		assertThat(ConditionalRequests.noneMatch("*", etag)).isFalse();
+	}
+
+	@Test
+	void ifMatchYieldsTheExpectedVersion() {
+		assertThat(ConditionalRequests.expectedVersion(null)).isNull();
+		assertThat(ConditionalRequests.expectedVersion("*")).isNull();
+		assertThat(ConditionalRequests.expectedVersion("\"7\"")).isEqualTo(7L);
+		assertThat(ConditionalRequests.expectedVersion("W/\"7\"")).isEqualTo(-1L);
+		assertThat(ConditionalRequests.expectedVersion("\"abc\"")).isEqualTo(-1L);
+		assertThat(ConditionalRequests.expectedVersion("\"7-cbor\"")).isEqualTo(7L);
+	}
+
+	@Test
+	void cborRepresentationHasItsOwnTag() {
+		String json = ConditionalRequests.etag(3, ConditionalRequests.isCbor("application/json"));
+		String cbor = ConditionalRequests.etag(3, ConditionalRequests.isCbor("application/cbor"));
+
+		assertThat(cbor).isEqualTo("\"3-cbor\"");
+		assertThat(ConditionalRequests.noneMatch(json, cbor)).isTrue();
+		assertThat(ConditionalRequests.noneMatch(cbor, json)).isTrue();
+		assertThat(ConditionalRequests.noneMatch(cbor, cbor)).isFalse();
+	}
+
+	@Test
+	void acceptHeaderPicksTheRepresentationLikeNegotiationDoes() {
+		assertThat(ConditionalRequests.isCbor(null)).isFalse();
+		assertThat(ConditionalRequests.isCbor("*/*")).isFalse();
+		assertThat(ConditionalRequests.isCbor("application/cbor")).isTrue();
+		assertThat(ConditionalRequests.isCbor("application/json;q=0.5, application/cbor")).isTrue();
+		assertThat(ConditionalRequests.isCbor("application/cbor;q=0.5, application/json")).isFalse();
+		assertThat(ConditionalRequests.isCbor("application/cbor, */*;q=0.1")).isTrue();
+	}
+}
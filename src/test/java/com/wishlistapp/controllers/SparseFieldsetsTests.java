@@ -0,0 +1,67 @@
+package com.wishlistapp.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class SparseFieldsetsTests {
+
+	private final ObjectMapper mapper = SparseFieldsets.register(Jackson2ObjectMapperBuilder.json()).build();
+
+	@Test
+	void onlySelectedPropertiesAndIdsAreWritten() throws Exception {
+		SparseFieldsets fieldsets = SparseFieldsets.parse("title, products.name");
+
+		JsonNode json = mapper.readTree(mapper.writer(fieldsets.filters()).writeValueAsBytes(wishlist()));
+
+		assertThat(json.fieldNames()).toIterable().containsExactlyInAnyOrder("id", "title", "products");
+		assertThat(json.get("products").get(0).fieldNames()).toIterable().containsExactlyInAnyOrder("id", "name");
+		assertThat(fieldsets.projection()).containsExactlyInAnyOrder("id", "title", "products.name", "products.id");
+	}
+
+	@Test
+	void bareProductsKeepsEveryProductProperty() {
+		SparseFieldsets fieldsets = SparseFieldsets.parse("products,products.name");
+
+		assertThat(fieldsets.projection()).containsExactlyInAnyOrder("id", "products");
+	}
+
+	@Test
+	void noSelectionWritesEverything() throws Exception {
+		SparseFieldsets fieldsets = SparseFieldsets.parse(null);
+		Wishlist wishlist = wishlist();
+
+		assertThat(fieldsets.isAll()).isTrue();
+		assertThat(fieldsets.projection()).isNull();
+		assertThat(fieldsets.apply(wishlist)).isSameAs(wishlist);
+		assertThat(mapper.readTree(mapper.writeValueAsBytes(wishlist)).has("description")).isTrue();
+	}
+
+	@Test
+	void unknownAndIgnoredPropertiesAreRejected() {
+		assertThatIllegalArgumentException().isThrownBy(() -> SparseFieldsets.parse("title,colour")).withMessageContaining("colour");
+		assertThatIllegalArgumentException().isThrownBy(() -> SparseFieldsets.parse("productStorage"));
+		assertThatIllegalArgumentException().isThrownBy(() -> SparseFieldsets.parse("products.colour"));
+	}
+
+	private static Wishlist wishlist() {
+		Product product = new Product();
+		product.setId("p1");
+		product.setName("Kettle");
+		product.setPrice(30);
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId("w1");
+		wishlist.setTitle("Kitchen");
+		wishlist.setDescription("Moving in");
+		wishlist.setProducts(List.of(product));
+		return wishlist;
+	}
+}
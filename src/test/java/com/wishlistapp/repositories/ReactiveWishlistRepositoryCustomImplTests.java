@@ -0,0 +1,113 @@
+package com.wishlistapp.repositories;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.AddedCollaborators;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The reactive product writes share their updates with the blocking ones; see WishlistRepositoryCustomImplTests
+class ReactiveWishlistRepositoryCustomImplTests {
+
+	private MongoServer server;
+	private MongoClient client;
+	private ReactiveMongoTemplate mongoTemplate;
+	private ReactiveWishlistRepositoryCustomImpl repository;
+
+	@BeforeEach
+	void startServer() {
+		server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		client = MongoClients.create("mongodb://" + address.getHostString() + ":" + address.getPort());
+		mongoTemplate = new ReactiveMongoTemplate(client, "wishlists-test");
+		repository = new ReactiveWishlistRepositoryCustomImpl();
+		ReflectionTestUtils.setField(repository, "reactiveMongoTemplate", mongoTemplate);
+	}
+
+	@AfterEach
+	void stopServer() {
+		client.close();
+		server.shutdown();
+	}
+
+	@Test
+	void productWritesMoveTheAggregates() {
+		mongoTemplate.save(wishlist(10, 20)).block();
+
+		Wishlist pushed = repository.pushProduct("w1", product("p3", 5, "$5 gift"), null).block();
+		Wishlist edited = repository.setProductFields("w1", "p3", product(null, 30, "$30 gift"), LocalDateTime.now(), 1L).block();
+		Wishlist pulled = repository.pullProduct("w1", "p3", null).block();
+
+		assertThat(pushed.getProducts()).extracting(Product::getName).containsExactly("Product p1", "Product p2", "$5 gift");
+		assertThat(pushed.getMinPrice()).isEqualTo(5);
+		assertThat(edited.getProducts()).extracting(Product::getName).containsExactly("Product p1", "Product p2", "$30 gift");
+		assertThat(edited.getTotalPrice()).isEqualTo(60);
+		assertThat(edited.getMinPrice()).isEqualTo(10);
+		assertThat(edited.getMaxPrice()).isEqualTo(30);
+		assertThat(pulled.getVersion()).isEqualTo(3);
+		assertThat(pulled.getProductCount()).isEqualTo(2);
+		assertThat(pulled.getMaxPrice()).isEqualTo(20);
+		assertThat(mongoTemplate.findById("w1", Wishlist.class).block().getMaxPrice()).isEqualTo(20);
+	}
+
+	@Test
+	void writesToAMissingProductOrAnOldVersionChangeNothing() {
+		mongoTemplate.save(wishlist(10)).block();
+
+		assertThat(repository.pullProduct("w1", "p9", null).blockOptional()).isEmpty();
+		assertThatThrownBy(() -> repository.setProductFields("w1", "p1", product(null, 1, "Edited"), LocalDateTime.now(), 4L).block())
+				.isInstanceOf(OptimisticLockingFailureException.class);
+		assertThat(mongoTemplate.findById("w1", Wishlist.class).block().getVersion()).isZero();
+	}
+
+	@Test
+	void invitesAddToTheCollaboratorsWithoutDroppingEachOther() {
+		mongoTemplate.save(wishlist()).block();
+
+		AddedCollaborators first = repository.addCollaborators("w1", "owner", List.of("u1")).block();
+		AddedCollaborators second = repository.addCollaborators("w1", "owner", List.of("u2", "u1")).block();
+		AddedCollaborators again = repository.addCollaborators("w1", "owner", List.of("u2")).block();
+
+		assertThat(first.addedIds()).containsExactly("u1");
+		assertThat(second.addedIds()).containsExactly("u2");
+		assertThat(second.wishlist().getCollaboratorIds()).containsExactly("u1", "u2");
+		assertThat(second.wishlist().getVersion()).isEqualTo(2);
+		assertThat(again.addedIds()).isEmpty();
+		assertThat(repository.addCollaborators("w1", "someone-else", List.of("u3")).blockOptional()).isEmpty();
+		assertThat(mongoTemplate.findById("w1", Wishlist.class).block().getCollaboratorIds()).containsExactly("u1", "u2");
+	}
+
+	private static Wishlist wishlist(double... prices) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId("w1");
+		wishlist.setOwnerId("owner");
+		for (int i = 0; i < prices.length; i++) {
+			wishlist.getProducts().add(product("p" + (i + 1), prices[i], "Product p" + (i + 1)));
+		}
+		wishlist.recomputeAggregates();
+		return wishlist;
+	}
+
+	private static Product product(String id, double price, String name) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setPrice(price);
+		return product;
+	}
+}
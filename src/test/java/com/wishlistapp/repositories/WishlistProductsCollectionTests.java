@@ -0,0 +1,242 @@
+package com.wishlistapp.repositories;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductEntry;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.ProductStorage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ProductChanges;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+// Runs against an in-process server speaking the Mongo wire protocol
+class WishlistProductsCollectionTests {
+
+	private MongoServer server;
+	private MongoClient client;
+	private MongoTemplate mongoTemplate;
+	private WishlistProductsCollection productsCollection;
+
+	@BeforeEach
+	void startServer() {
+		server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		client = MongoClients.create("mongodb://" + address.getHostString() + ":" + address.getPort());
+		mongoTemplate = new MongoTemplate(client, "wishlists-test");
+		useTemplate(mongoTemplate);
+	}
+
+	@AfterEach
+	void stopServer() {
+		client.close();
+		server.shutdown();
+	}
+
+	@Test
+	void migrationMovesProductsInOrderAndFlipsTheLayout() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+
+		Wishlist migrated = productsCollection.migrate("w1").orElseThrow();
+
+		assertThat(migrated.getProductStorage()).isEqualTo(ProductStorage.COLLECTION);
+		assertThat(migrated.getVersion()).isZero();
+		assertThat(migrated.getProducts()).extracting(Product::getId).containsExactly("p1", "p2", "p3");
+		assertThat(migrated.getProductCount()).isEqualTo(3);
+		assertThat(migrated.getTotalPrice()).isEqualTo(60);
+		assertThat(positions("w1")).containsExactly(1L, 2L, 3L);
+		Document stored = storedWishlist("w1");
+		assertThat(stored).doesNotContainKeys("products", "productMigrationLease");
+		assertThat(stored.get("productSeq", Number.class).longValue()).isEqualTo(3);
+	}
+
+	@Test
+	void migrationLeavesAWishlistLeasedByAnotherNodeAlone() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+		lease("w1", Instant.now().plusSeconds(60));
+
+		Wishlist unchanged = productsCollection.migrate("w1").orElseThrow();
+
+		assertThat(unchanged.getProductStorage()).isNotEqualTo(ProductStorage.COLLECTION);
+		assertThat(unchanged.getProducts()).hasSize(2);
+		assertThat(positions("w1")).isEmpty();
+	}
+
+	@Test
+	void migrationTakesOverAnExpiredLease() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+		lease("w1", Instant.now().minusSeconds(1));
+
+		assertThat(productsCollection.migrate("w1").orElseThrow().getProductStorage()).isEqualTo(ProductStorage.COLLECTION);
+		assertThat(positions("w1")).containsExactly(1L, 2L);
+	}
+
+	@Test
+	void lostFlipDeletesTheCopiesAndReleasesTheLeaseSoTheMigrationCanBeRetried() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+		// Another write lands between copying the products and flipping the layout
+		MongoTemplate racing = Mockito.spy(mongoTemplate);
+		Mockito.doAnswer(invocation -> {
+			mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is("w1")), new Update().inc("version", 1), Wishlist.class);
+			return invocation.callRealMethod();
+		}).when(racing).updateFirst(any(Query.class), argThat((UpdateDefinition update) -> update.modifies("productStorage")), eq(Wishlist.class));
+		useTemplate(racing);
+
+		assertThatThrownBy(() -> productsCollection.migrate("w1")).isInstanceOf(OptimisticLockingFailureException.class);
+		assertThat(positions("w1")).isEmpty();
+		assertThat(storedWishlist("w1")).doesNotContainKey("productMigrationLease");
+		assertThat(storedWishlist("w1").get("productStorage")).isNull();
+
+		useTemplate(mongoTemplate);
+		Wishlist retried = productsCollection.migrate("w1").orElseThrow();
+		assertThat(retried.getProductStorage()).isEqualTo(ProductStorage.COLLECTION);
+		assertThat(retried.getVersion()).isEqualTo(1);
+		assertThat(positions("w1")).containsExactly(1L, 2L);
+	}
+
+	@Test
+	void addedProductsGetPositionsAfterEveryExistingOne() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+		productsCollection.migrate("w1");
+
+		Wishlist updated = productsCollection.applyChanges("w1", new ProductChanges(
+				List.of(product("p4", 40), product("p5", 5)), Map.of("p2", edit(25)), Set.of("p1")), 0L).orElseThrow();
+
+		assertThat(updated.getProducts()).extracting(Product::getId).containsExactly("p2", "p3", "p4", "p5");
+		assertThat(updated.getProducts()).extracting(Product::getPrice).containsExactly(25.0, 30.0, 40.0, 5.0);
+		assertThat(positions("w1")).containsExactly(2L, 3L, 4L, 5L);
+		assertThat(updated.getVersion()).isEqualTo(1);
+		assertThat(updated.getProductCount()).isEqualTo(4);
+		assertThat(updated.getTotalPrice()).isEqualTo(100);
+		assertThat(updated.getMinPrice()).isEqualTo(5);
+		assertThat(updated.getMaxPrice()).isEqualTo(40);
+		assertThat(storedWishlist("w1").get("productSeq", Number.class).longValue()).isEqualTo(5);
+	}
+
+	@Test
+	void changesAgainstAnOldVersionAreRejected() {
+		mongoTemplate.save(wishlist("w1", 10));
+		productsCollection.migrate("w1");
+
+		assertThatThrownBy(() -> productsCollection.applyChanges("w1", new ProductChanges(List.of(product("p2", 20)), Map.of(), Set.of()), 7L))
+				.isInstanceOf(OptimisticLockingFailureException.class);
+		assertThat(positions("w1")).containsExactly(1L);
+	}
+
+	@Test
+	void pagesFollowThePositionCursor() {
+		mongoTemplate.save(wishlist("w1", 1, 2, 3, 4, 5));
+		productsCollection.migrate("w1");
+
+		ProductPage first = productsCollection.findPage("w1", null, 2);
+		ProductPage second = productsCollection.findPage("w1", first.getNextCursor(), 2);
+		ProductPage last = productsCollection.findPage("w1", second.getNextCursor(), 2);
+
+		assertThat(first.getItems()).extracting(Product::getId).containsExactly("p1", "p2");
+		assertThat(first.getNextCursor()).isEqualTo("2");
+		assertThat(second.getItems()).extracting(Product::getId).containsExactly("p3", "p4");
+		assertThat(last.getItems()).extracting(Product::getId).containsExactly("p5");
+		assertThat(last.getNextCursor()).isNull();
+		// A product removed between pages doesn't shift the next one
+		productsCollection.pull("w1", "p3", null);
+		assertThat(productsCollection.findPage("w1", first.getNextCursor(), 2).getItems()).extracting(Product::getId).containsExactly("p4", "p5");
+	}
+
+	@Test
+	void productWritesHandOverToTheCollectionOnceTheWishlistMoved() {
+		WishlistRepositoryCustomImpl repository = new WishlistRepositoryCustomImpl();
+		ReflectionTestUtils.setField(repository, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(repository, "productsCollection", productsCollection);
+		mongoTemplate.save(wishlist("w1", 10));
+		productsCollection.migrate("w1");
+
+		Wishlist pushed = repository.pushProduct("w1", product("p2", 20), null).orElseThrow();
+		Wishlist edited = repository.setProductFields("w1", "p1", edit(15), LocalDateTime.now(), pushed.getVersion()).orElseThrow();
+		Wishlist pulled = repository.pullProduct("w1", "p2", null).orElseThrow();
+
+		assertThat(pushed.getProducts()).extracting(Product::getId).containsExactly("p1", "p2");
+		assertThat(edited.getProducts()).extracting(Product::getPrice).containsExactly(15.0, 20.0);
+		assertThat(pulled.getProducts()).extracting(Product::getId).containsExactly("p1");
+		assertThat(pulled.getVersion()).isEqualTo(3);
+		assertThat(storedWishlist("w1")).doesNotContainKey("products");
+		assertThatThrownBy(() -> repository.pullProduct("w1", "p1", 1L)).isInstanceOf(OptimisticLockingFailureException.class);
+		assertThat(repository.pushProduct("missing", product("p9", 1), null)).isEmpty();
+	}
+
+	// Wires the products listener the way the application context does, so reloads fill Wishlist.products
+	private void useTemplate(MongoTemplate template) {
+		productsCollection = new WishlistProductsCollection(template);
+		StaticApplicationContext context = new StaticApplicationContext();
+		context.addApplicationListener(new WishlistProductsListener(productsCollection));
+		context.refresh();
+		template.setApplicationContext(context);
+	}
+
+	private void lease(String wishlistId, Instant until) {
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(wishlistId)), new Update().set("productMigrationLease", until), Wishlist.class);
+	}
+
+	private Document storedWishlist(String wishlistId) {
+		return mongoTemplate.findOne(Query.query(Criteria.where("_id").is(wishlistId)), Document.class, "wishlists");
+	}
+
+	private List<Long> positions(String wishlistId) {
+		Query query = Query.query(Criteria.where("wishlistId").is(wishlistId)).with(Sort.by("position"));
+		return mongoTemplate.find(query, ProductEntry.class).stream().map(ProductEntry::getPosition).toList();
+	}
+
+	private static Wishlist wishlist(String id, double... prices) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId(id);
+		wishlist.setOwnerId("owner");
+		for (int i = 0; i < prices.length; i++) {
+			wishlist.getProducts().add(product("p" + (i + 1), prices[i]));
+		}
+		wishlist.recomputeAggregates();
+		return wishlist;
+	}
+
+	private static Product product(String id, double price) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName("Product " + id);
+		product.setPrice(price);
+		return product;
+	}
+
+	private static Product edit(double price) {
+		Product edit = new Product();
+		edit.setName("Edited");
+		edit.setPrice(price);
+		edit.setLastEditedAt(LocalDateTime.now());
+		return edit;
+	}
+}
@@ -0,0 +1,308 @@
+package com.wishlistapp.repositories;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.ProductPage;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.repositories.WishlistRepositoryCustom.ProductChanges;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+// Product writes on the embedded array against an in-process server speaking the Mongo wire protocol.
+// It has no pipeline updates, so for a batch mixing appends, edits and removals only the update is checked.
+class WishlistRepositoryCustomImplTests {
+
+	private MongoServer server;
+	private MongoClient client;
+	private MongoTemplate mongoTemplate;
+	private WishlistRepositoryCustomImpl repository;
+
+	@BeforeEach
+	void startServer() {
+		server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		client = MongoClients.create("mongodb://" + address.getHostString() + ":" + address.getPort());
+		mongoTemplate = new MongoTemplate(client, "wishlists-test");
+		useTemplate(mongoTemplate);
+	}
+
+	@AfterEach
+	void stopServer() {
+		client.close();
+		server.shutdown();
+	}
+
+	@Test
+	void addingAProductMovesTheAggregatesWithIt() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+
+		Wishlist pushed = repository.pushProduct("w1", product("p3", 5, "$5 gift"), 0L).orElseThrow();
+
+		assertThat(pushed.getVersion()).isEqualTo(1);
+		assertThat(pushed.getProducts()).extracting(Product::getName).containsExactly("Product p1", "Product p2", "$5 gift");
+		assertAggregates(pushed, 3, 35, 5.0, 20.0);
+		assertStoredAggregates("w1", 3, 35, 5.0, 20.0);
+	}
+
+	@Test
+	void editingAProductMovesTheTotalByTheDifference() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+
+		Wishlist edited = repository.setProductFields("w1", "p2", edit(25, "$ off"), LocalDateTime.now(), 0L).orElseThrow();
+
+		assertThat(edited.getVersion()).isEqualTo(1);
+		assertThat(edited.getProducts()).extracting(Product::getName).containsExactly("Product p1", "$ off", "Product p3");
+		assertAggregates(edited, 3, 65, 10.0, 30.0);
+		assertStoredAggregates("w1", 3, 65, 10.0, 30.0);
+	}
+
+	@Test
+	void editingAwayTheCheapestProductRederivesTheMinimum() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+
+		Wishlist edited = repository.setProductFields("w1", "p1", edit(40, "Edited"), LocalDateTime.now(), null).orElseThrow();
+
+		assertAggregates(edited, 3, 90, 20.0, 40.0);
+		assertStoredAggregates("w1", 3, 90, 20.0, 40.0);
+	}
+
+	@Test
+	void removingProductsRederivesMinAndMaxOnlyOnceTheyAreGone() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+
+		assertAggregates(repository.pullProduct("w1", "p2", 0L).orElseThrow(), 2, 40, 10.0, 30.0);
+		assertAggregates(repository.pullProduct("w1", "p3", 1L).orElseThrow(), 1, 10, 10.0, 10.0);
+		Wishlist emptied = repository.pullProduct("w1", "p1", null).orElseThrow();
+
+		assertThat(emptied.getVersion()).isEqualTo(3);
+		assertThat(emptied.getProducts()).isEmpty();
+		assertAggregates(emptied, 0, 0, null, null);
+		// Absent rather than null, so the next $min and $max take the new price
+		assertThat(storedWishlist("w1")).doesNotContainKeys("minPrice", "maxPrice");
+		assertAggregates(repository.pushProduct("w1", product("p4", 7, "Product p4"), null).orElseThrow(), 1, 7, 7.0, 7.0);
+	}
+
+	@Test
+	void writesToAMissingProductChangeNothing() {
+		mongoTemplate.save(wishlist("w1", 10));
+
+		assertThat(repository.pullProduct("w1", "p9", 0L)).isEmpty();
+		assertThat(repository.setProductFields("w1", "p9", edit(1, "Edited"), LocalDateTime.now(), null)).isEmpty();
+		assertThat(repository.setProductFields("w1", Map.of("p9", edit(1, "Edited")))).isEmpty();
+
+		assertThat(storedWishlist("w1").get("version", Number.class).longValue()).isZero();
+		assertStoredAggregates("w1", 1, 10, 10.0, 10.0);
+	}
+
+	@Test
+	void writesAgainstAnOldVersionAreRejected() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+		repository.pushProduct("w1", product("p3", 30, "Product p3"), null);
+
+		assertThatThrownBy(() -> repository.pushProduct("w1", product("p4", 40, "Product p4"), 0L)).isInstanceOf(OptimisticLockingFailureException.class);
+		assertThatThrownBy(() -> repository.setProductFields("w1", "p1", edit(15, "Edited"), LocalDateTime.now(), 0L))
+				.isInstanceOf(OptimisticLockingFailureException.class);
+		assertThatThrownBy(() -> repository.pullProduct("w1", "p1", 0L)).isInstanceOf(OptimisticLockingFailureException.class);
+		assertThatThrownBy(() -> repository.applyProductChanges("w1", new ProductChanges(List.of(), Map.of(), Set.of("p1")), 0L))
+				.isInstanceOf(OptimisticLockingFailureException.class);
+		assertStoredAggregates("w1", 3, 60, 10.0, 30.0);
+	}
+
+	@Test
+	void batchEditsSkipProductsThatAreGone() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+		Map<String, Product> edits = new LinkedHashMap<>();
+		edits.put("p3", edit(5, "$cheap"));
+		edits.put("p9", edit(100, "Gone"));
+		edits.put("p1", edit(12, "Edited"));
+
+		Wishlist edited = repository.setProductFields("w1", edits).orElseThrow();
+
+		assertThat(edited.getVersion()).isEqualTo(1);
+		assertThat(edited.getProducts()).extracting(Product::getName).containsExactly("Edited", "Product p2", "$cheap");
+		assertAggregates(edited, 3, 37, 5.0, 20.0);
+		assertStoredAggregates("w1", 3, 37, 5.0, 20.0);
+	}
+
+	@Test
+	void batchesOfASingleKindMoveTheAggregatesByTheirDelta() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+
+		Wishlist added = repository.applyProductChanges("w1",
+				new ProductChanges(List.of(product("p3", 50, "$50 voucher"), product("p4", 1, "Product p4")), Map.of(), Set.of()), 0L).orElseThrow();
+		assertThat(added.getProducts()).extracting(Product::getName).containsExactly("Product p1", "Product p2", "$50 voucher", "Product p4");
+		assertAggregates(added, 4, 81, 1.0, 50.0);
+
+		Wishlist edited = repository.applyProductChanges("w1",
+				new ProductChanges(List.of(), Map.of("p3", edit(30, "$30 voucher"), "p9", edit(1, "Gone")), Set.of()), 1L).orElseThrow();
+		assertThat(edited.getProducts()).extracting(Product::getName).contains("$30 voucher");
+		assertAggregates(edited, 4, 61, 1.0, 30.0);
+
+		Wishlist removed = repository.applyProductChanges("w1", new ProductChanges(List.of(), Map.of(), Set.of("p4", "p1", "p9")), 2L).orElseThrow();
+		assertThat(removed.getVersion()).isEqualTo(3);
+		assertThat(removed.getProducts()).extracting(Product::getId).containsExactly("p2", "p3");
+		assertAggregates(removed, 2, 50, 20.0, 30.0);
+		assertStoredAggregates("w1", 2, 50, 20.0, 30.0);
+	}
+
+	@Test
+	void mixedBatchesAreOnePipelineUpdateWithEveryValueALiteral() {
+		ProductChanges changes = new ProductChanges(List.of(product("p4", 4, "$4 added")), Map.of("p2", edit(25, "$25 edited")), Set.of("p1", "p9"));
+
+		WishlistQueries.ProductWrite write = WishlistQueries.applyChanges(changes, Map.of("p1", 10.0, "p2", 20.0, "p3", 30.0), mongoTemplate.getConverter());
+
+		List<Document> pipeline = ((AggregationUpdate) write.update()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+		String products = pipeline.get(0).toJson();
+		assertThat(products).contains("{\"$literal\": [\"p1\"]}", "{\"$literal\": {\"name\": \"$25 edited\"", "{\"$literal\": [{\"_id\": \"p4\", \"name\": \"$4 added\"");
+		Document aggregates = pipeline.get(1).get("$set", Document.class);
+		assertThat(aggregates.get("productCount", Document.class).getList("$add", Object.class).get(1)).isEqualTo(0);
+		assertThat(aggregates.get("totalPrice", Document.class).getList("$add", Object.class).get(1)).isEqualTo(-1.0);
+		assertThat(aggregates.get("minPrice", Document.class).getList("$min", Object.class)).containsExactly("$minPrice", 4.0);
+		assertThat(aggregates.get("maxPrice", Document.class).getList("$max", Object.class)).containsExactly("$maxPrice", 25.0);
+		assertThat(write.pricesGone()).containsExactlyInAnyOrder(10.0, 20.0);
+	}
+
+	@Test
+	void aWriteThatLostARaceReadsAgainAndRetries() {
+		mongoTemplate.save(wishlist("w1", 10, 20));
+		// Another edit lands between reading the old price and writing
+		MongoTemplate racing = Mockito.spy(mongoTemplate);
+		AtomicBoolean raced = new AtomicBoolean();
+		Mockito.doAnswer(invocation -> {
+			if (raced.compareAndSet(false, true)) {
+				repository(mongoTemplate).setProductFields("w1", "p1", edit(15, "Racing"), LocalDateTime.now(), null);
+			}
+			return invocation.callRealMethod();
+		}).when(racing).findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(Wishlist.class));
+		useTemplate(racing);
+
+		Wishlist edited = repository.setProductFields("w1", "p1", edit(12, "Edited"), LocalDateTime.now(), null).orElseThrow();
+
+		assertThat(edited.getVersion()).isEqualTo(2);
+		assertThat(edited.getProducts().get(0).getName()).isEqualTo("Edited");
+		assertAggregates(edited, 2, 32, 12.0, 20.0);
+		assertStoredAggregates("w1", 2, 32, 12.0, 20.0);
+	}
+
+	@Test
+	void aWriteRacingOnAnotherProductDoesNotRetryAndStillRederivesTheMin() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+		// Another removal takes the min away between reading p2's price and removing p2, which makes p2 the min
+		MongoTemplate racing = Mockito.spy(mongoTemplate);
+		AtomicBoolean raced = new AtomicBoolean();
+		Mockito.doAnswer(invocation -> {
+			if (raced.compareAndSet(false, true)) {
+				repository(mongoTemplate).pullProduct("w1", "p1", null);
+			}
+			return invocation.callRealMethod();
+		}).when(racing).findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(Wishlist.class));
+		useTemplate(racing);
+
+		Wishlist removed = repository.pullProduct("w1", "p2", null).orElseThrow();
+
+		Mockito.verify(racing, Mockito.times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(Wishlist.class));
+		assertThat(removed.getProducts()).extracting(Product::getId).containsExactly("p3");
+		assertStoredAggregates("w1", 1, 30, 30.0, 30.0);
+	}
+
+	@Test
+	void pagesFollowTheOffsetCursorAndRejectNegativeOnes() {
+		mongoTemplate.save(wishlist("w1", 10, 20, 30));
+
+		ProductPage first = repository.findProductsPage("w1", null, 2);
+		assertThat(first.getItems()).extracting(Product::getId).containsExactly("p1", "p2");
+		assertThat(repository.findProductsPage("w1", first.getNextCursor(), 2).getItems()).extracting(Product::getId).containsExactly("p3");
+		assertThatThrownBy(() -> repository.findProductsPage("w1", "-1", 2)).isInstanceOf(NumberFormatException.class);
+	}
+
+	@Test
+	void searchRejectsNegativeCursors() {
+		assertThatThrownBy(() -> repository.searchProducts("owner", List.of("gift"), null, null, "-20", 10)).isInstanceOf(NumberFormatException.class);
+	}
+
+	private void useTemplate(MongoTemplate template) {
+		repository = repository(template);
+	}
+
+	private static WishlistRepositoryCustomImpl repository(MongoTemplate template) {
+		WishlistRepositoryCustomImpl repository = new WishlistRepositoryCustomImpl();
+		ReflectionTestUtils.setField(repository, "mongoTemplate", template);
+		ReflectionTestUtils.setField(repository, "productsCollection", new WishlistProductsCollection(template));
+		return repository;
+	}
+
+	private void assertStoredAggregates(String wishlistId, int productCount, double totalPrice, Double minPrice, Double maxPrice) {
+		Wishlist stored = mongoTemplate.findById(wishlistId, Wishlist.class);
+		assertAggregates(stored, productCount, totalPrice, minPrice, maxPrice);
+		// And they agree with the products themselves
+		Wishlist recomputed = mongoTemplate.findById(wishlistId, Wishlist.class);
+		recomputed.recomputeAggregates();
+		assertAggregates(stored, recomputed.getProductCount(), recomputed.getTotalPrice(), recomputed.getMinPrice(), recomputed.getMaxPrice());
+	}
+
+	private static void assertAggregates(Wishlist wishlist, int productCount, double totalPrice, Double minPrice, Double maxPrice) {
+		assertThat(wishlist.getProductCount()).isEqualTo(productCount);
+		assertThat(wishlist.getTotalPrice()).isEqualTo(totalPrice);
+		assertThat(wishlist.getMinPrice()).isEqualTo(minPrice);
+		assertThat(wishlist.getMaxPrice()).isEqualTo(maxPrice);
+	}
+
+	private Document storedWishlist(String wishlistId) {
+		return mongoTemplate.findOne(Query.query(Criteria.where("_id").is(wishlistId)), Document.class, "wishlists");
+	}
+
+	private static Wishlist wishlist(String id, double... prices) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId(id);
+		wishlist.setOwnerId("owner");
+		for (int i = 0; i < prices.length; i++) {
+			wishlist.getProducts().add(product("p" + (i + 1), prices[i], "Product p" + (i + 1)));
+		}
+		wishlist.recomputeAggregates();
+		return wishlist;
+	}
+
+	private static Product product(String id, double price, String name) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setPrice(price);
+		return product;
+	}
+
+	private static Product edit(double price, String name) {
+		Product edit = new Product();
+		edit.setName(name);
+		edit.setPrice(price);
+		edit.setLastEditedAt(LocalDateTime.now());
+		return edit;
+	}
+}
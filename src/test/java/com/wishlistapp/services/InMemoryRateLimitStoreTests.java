@@ -0,0 +1,55 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.services.RateLimitStore.Budget;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryRateLimitStoreTests {
+
+	private static final Budget BUDGET = new Budget(3, Duration.ofHours(1));
+
+	@Test
+	void burstUpToCapacityThenRefusedWithWait() {
+		try (InMemoryRateLimitStore store = new InMemoryRateLimitStore(100, Duration.ofHours(1))) {
+			for (int i = 0; i < 3; i++) {
+				assertThat(store.tryAcquire("ip:1", BUDGET)).isZero();
+			}
+
+			long wait = store.tryAcquire("ip:1", BUDGET);
+			assertThat(wait).isPositive().isLessThanOrEqualTo(Duration.ofHours(1).toNanos());
+			assertThat(store.tryAcquire("ip:2", BUDGET)).isZero();
+		}
+	}
+
+	@Test
+	void sweepDropsOnlyFullBuckets() {
+		Budget fast = new Budget(1, Duration.ofNanos(1));
+		try (InMemoryRateLimitStore store = new InMemoryRateLimitStore(100, Duration.ofHours(1))) {
+			store.tryAcquire("idle", fast);
+			store.tryAcquire("busy", BUDGET);
+
+			store.sweep();
+
+			assertThat(store.size()).isEqualTo(1);
+			assertThat(store.tryAcquire("busy", BUDGET)).isZero();
+			assertThat(store.tryAcquire("busy", BUDGET)).isZero();
+			assertThat(store.tryAcquire("busy", BUDGET)).isPositive();
+		}
+	}
+
+	@Test
+	void keysBeyondMaxShareTheOverflowBucket() {
+		try (InMemoryRateLimitStore store = new InMemoryRateLimitStore(1, Duration.ofHours(1))) {
+			store.tryAcquire("a", BUDGET);
+			for (int i = 0; i < 3; i++) {
+				assertThat(store.tryAcquire("new-" + i, BUDGET)).isZero();
+			}
+
+			assertThat(store.tryAcquire("new-3", BUDGET)).isPositive();
+			assertThat(store.size()).isEqualTo(1);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrincipalCacheTests {
+
+	@Test
+	void secondLookupIsServedFromCache() {
+		PrincipalCache cache = new PrincipalCache(true, 10, Duration.ofMinutes(5));
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get("u1", id -> { loads.incrementAndGet(); return Optional.of(user(id)); });
+		Optional<User> cached = cache.get("u1", id -> { loads.incrementAndGet(); return Optional.of(user(id)); });
+
+		assertThat(cached).map(User::getId).contains("u1");
+		assertThat(loads).hasValue(1);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvictedWhenFull() {
+		PrincipalCache cache = new PrincipalCache(true, 2, Duration.ofMinutes(5));
+		cache.get("a", id -> Optional.of(user(id)));
+		cache.get("b", id -> Optional.of(user(id)));
+		cache.get("a", id -> Optional.of(user(id)));
+		cache.get("c", id -> Optional.of(user(id)));
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("b", id -> { loads.incrementAndGet(); return Optional.of(user(id)); });
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void invalidateForcesReload() {
+		PrincipalCache cache = new PrincipalCache(true, 10, Duration.ofMinutes(5));
+		cache.get("u1", id -> Optional.of(user(id)));
+		cache.invalidate("u1");
+
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("u1", id -> { loads.incrementAndGet(); return Optional.of(user(id)); });
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void missingUsersAreNotCached() {
+		PrincipalCache cache = new PrincipalCache(true, 10, Duration.ofMinutes(5));
+		cache.get("ghost", id -> Optional.empty());
+
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	void loadThatRacedAnInvalidationIsNotCached() {
+		PrincipalCache cache = new PrincipalCache(true, 10, Duration.ofMinutes(5));
+		// The user is saved (and invalidated) while the old document is still being read
+		cache.get("u1", id -> { cache.invalidate(id); return Optional.of(user(id)); });
+
+		assertThat(cache.size()).isZero();
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("u1", id -> { loads.incrementAndGet(); return Optional.of(user(id)); });
+		assertThat(loads).hasValue(1);
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	void callersGetCopiesWithoutThePasswordHash() {
+		PrincipalCache cache = new PrincipalCache(true, 10, Duration.ofMinutes(5));
+		User loaded = cache.get("u1", id -> Optional.of(user(id))).orElseThrow();
+		loaded.setUsername("changed");
+
+		User cached = cache.get("u1", id -> Optional.empty()).orElseThrow();
+		assertThat(loaded.getPasswordHash()).isNull();
+		assertThat(cached.getUsername()).isEqualTo("user-u1");
+		assertThat(cached.getPasswordHash()).isNull();
+		assertThat(cached).isNotSameAs(cache.get("u1", id -> Optional.empty()).orElseThrow());
+	}
+
+	private static User user(String id) {
+		User user = new User();
+		user.setId(id);
+		user.setUsername("user-" + id);
+		user.setPasswordHash("$2a$10$hash");
+		return user;
+	}
+}
@@ -0,0 +1,74 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.User;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import com.wishlistapp.repositories.ReactiveWishlistRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveWishlistServiceTests {
+
+	private final InMemoryWishlistEventBus eventBus = new InMemoryWishlistEventBus();
+	private final WishlistCache cache = new WishlistCache(eventBus, true, 1000, Duration.ofMinutes(5));
+	private final ReactiveWishlistRepository repository = mock(ReactiveWishlistRepository.class);
+	private final ReactiveWishlistService service = new ReactiveWishlistService();
+	private final List<WishlistChangeEvent> published = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void wireService() {
+		ReflectionTestUtils.setField(service, "wishlistRepository", repository);
+		ReflectionTestUtils.setField(service, "eventBus", eventBus);
+		ReflectionTestUtils.setField(service, "wishlistCache", cache);
+		eventBus.subscribe(published::add);
+	}
+
+	@Test
+	void writesPublishTheSameEventsAsTheServletStackAndDropTheCachedCopy() {
+		cache.get("w1", () -> Optional.of(wishlist(0)));
+		when(repository.pushProduct(eq("w1"), any(Product.class), isNull())).thenReturn(Mono.just(wishlist(1)));
+		when(repository.pullProduct("w1", "p1", null)).thenReturn(Mono.just(wishlist(2)));
+
+		service.addProductToWishlist(wishlist(0), new Product(), new User()).block();
+		assertThat(cache.getIfPresent("w1")).isEmpty();
+		service.removeProductFromWishlist(wishlist(1), "p1").block();
+
+		assertThat(published).extracting(WishlistChangeEvent::getType)
+				.containsExactly(WishlistChangeEvent.Type.PRODUCT_ADDED, WishlistChangeEvent.Type.PRODUCT_REMOVED);
+		assertThat(published).extracting(WishlistChangeEvent::getVersion).containsExactly(1L, 2L);
+	}
+
+	@Test
+	void removingAProductThatIsGoneReturnsTheStoredWishlistAndPublishesNothing() {
+		when(repository.pullProduct("w1", "p9", null)).thenReturn(Mono.empty());
+		when(repository.findById("w1")).thenReturn(Mono.just(wishlist(7)));
+
+		Wishlist returned = service.removeProductFromWishlist(wishlist(3), "p9").block();
+
+		assertThat(returned.getVersion()).isEqualTo(7);
+		assertThat(published).isEmpty();
+	}
+
+	private static Wishlist wishlist(long version) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId("w1");
+		wishlist.setOwnerId("owner");
+		wishlist.setVersion(version);
+		return wishlist;
+	}
+}
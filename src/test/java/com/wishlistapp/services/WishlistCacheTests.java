@@ -0,0 +1,98 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WishlistCacheTests {
+
+	private final InMemoryWishlistEventBus eventBus = new InMemoryWishlistEventBus();
+
+	@Test
+	void secondLookupIsServedFromCacheAsACopy() {
+		WishlistCache cache = cache(1000);
+		AtomicInteger loads = new AtomicInteger();
+
+		Wishlist first = cache.get("w1", () -> { loads.incrementAndGet(); return Optional.of(wishlist("w1", 1)); }).orElseThrow();
+		first.setTitle("changed by a caller");
+		Wishlist second = cache.get("w1", () -> { loads.incrementAndGet(); return Optional.of(wishlist("w1", 1)); }).orElseThrow();
+
+		assertThat(second.getTitle()).isEqualTo("Wishlist w1");
+		assertThat(loads).hasValue(1);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	void leastRecentlyUsedEntriesAreEvictedByWeight() {
+		WishlistCache cache = cache(10);
+		cache.get("small", () -> Optional.of(wishlist("small", 2)));
+		cache.get("large", () -> Optional.of(wishlist("large", 8)));
+
+		assertThat(cache.weight()).isLessThanOrEqualTo(10);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+		assertThat(cache.getIfPresent("small")).isEmpty();
+		assertThat(cache.getIfPresent("large")).isPresent();
+	}
+
+	@Test
+	void loadOverlappingAWriteIsNotCached() {
+		WishlistCache cache = cache(1000);
+		// The write lands, and invalidates, after the loader has read the old document
+		cache.get("w1", () -> {
+			Optional<Wishlist> old = Optional.of(wishlist("w1", 1));
+			cache.invalidate("w1");
+			return old;
+		});
+
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("w1", () -> { loads.incrementAndGet(); return Optional.of(wishlist("w1", 2)); });
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void changeEventsFromTheBusInvalidate() {
+		WishlistCache cache = cache(1000);
+		cache.get("w1", () -> Optional.of(wishlist("w1", 1)));
+		eventBus.publish(WishlistChangeEvent.metadataChanged(wishlist("w1", 1)));
+
+		assertThat(cache.getIfPresent("w1")).isEmpty();
+	}
+
+	@Test
+	void disabledCacheAlwaysLoads() {
+		WishlistCache cache = new WishlistCache(eventBus, false, 1000, Duration.ofMinutes(5));
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("w1", () -> { loads.incrementAndGet(); return Optional.of(wishlist("w1", 1)); });
+		cache.get("w1", () -> { loads.incrementAndGet(); return Optional.of(wishlist("w1", 1)); });
+
+		assertThat(loads).hasValue(2);
+		assertThat(cache.size()).isZero();
+	}
+
+	private WishlistCache cache(long maxWeight) {
+		WishlistCache cache = new WishlistCache(eventBus, true, maxWeight, Duration.ofMinutes(5));
+		cache.start();
+		return cache;
+	}
+
+	private static Wishlist wishlist(String id, int productCount) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId(id);
+		wishlist.setTitle("Wishlist " + id);
+		wishlist.setOwnerId("owner");
+		for (int i = 0; i < productCount; i++) {
+			Product product = new Product();
+			product.setId(id + "-p" + i);
+			wishlist.getProducts().add(product);
+		}
+		return wishlist;
+	}
+}
@@ -0,0 +1,80 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.models.WishlistChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class WishlistChangeFeedTests {
+
+	private final InMemoryWishlistEventBus eventBus = new InMemoryWishlistEventBus();
+	private WishlistChangeFeed feed;
+
+	@BeforeEach
+	void startFeed() {
+		// Long window and a one-event buffer: tests flush by hand, the second delta overflows
+		feed = new WishlistChangeFeed(eventBus, new SimpleMeterRegistry(), Duration.ofHours(1), 1, Duration.ofMinutes(5));
+		feed.start();
+	}
+
+	@AfterEach
+	void stopFeed() throws Exception {
+		feed.stop();
+	}
+
+	@Test
+	void revocationAfterResyncCompletesTheStream() {
+		SseEmitter emitter = feed.subscribe("w1", "collaborator");
+		eventBus.publish(WishlistChangeEvent.productAdded(wishlist(1, "collaborator"), product("p1")));
+		eventBus.publish(WishlistChangeEvent.productAdded(wishlist(2, "collaborator"), product("p2")));
+		eventBus.publish(WishlistChangeEvent.metadataChanged(wishlist(3)));
+
+		feed.flushAll();
+
+		awaitCompleted(emitter);
+	}
+
+	@Test
+	void deletionSurvivesOverflow() {
+		SseEmitter emitter = feed.subscribe("w1", "collaborator");
+		eventBus.publish(WishlistChangeEvent.deleted(wishlist(1, "collaborator")));
+		eventBus.publish(WishlistChangeEvent.productRemoved(wishlist(2, "collaborator"), "p1"));
+
+		feed.flushAll();
+
+		awaitCompleted(emitter);
+	}
+
+	// A completed emitter refuses further sends
+	private static void awaitCompleted(SseEmitter emitter) {
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThatThrownBy(() -> emitter.send("probe")).isInstanceOf(IllegalStateException.class));
+	}
+
+	private static Wishlist wishlist(long version, String... collaboratorIds) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId("w1");
+		wishlist.setOwnerId("owner");
+		wishlist.setVersion(version);
+		wishlist.setCollaboratorIds(new ArrayList<>(List.of(collaboratorIds)));
+		return wishlist;
+	}
+
+	private static Product product(String id) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(id);
+		return product;
+	}
+}
@@ -0,0 +1,194 @@
+package com.wishlistapp.services;
+
+import com.wishlistapp.models.Product;
+import com.wishlistapp.models.Wishlist;
+import com.wishlistapp.repositories.WishlistRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WishlistWriteBufferTests {
+
+	private final InMemoryWishlistEventBus eventBus = new InMemoryWishlistEventBus();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final WishlistRepository repository = mock(WishlistRepository.class);
+	// What the repository mock holds; every read gets a fresh copy, like a real load
+	private final Map<String, Wishlist> stored = new HashMap<>();
+
+	@BeforeEach
+	void storeWishlists() {
+		stored.put("w1", wishlist("w1", 3, 10, 20, 30));
+		stored.put("w2", wishlist("w2", 1, 5));
+		when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<String>getArgument(0)))
+				.map(WishlistService::copyOf));
+		when(repository.setProductFields(anyString(), anyMap())).thenAnswer(invocation -> {
+			Wishlist wishlist = stored.get(invocation.<String>getArgument(0));
+			Map<String, Product> edits = invocation.getArgument(1);
+			wishlist.getProducts().forEach(product -> {
+				if (edits.containsKey(product.getId())) {
+					product.setPrice(edits.get(product.getId()).getPrice());
+				}
+			});
+			wishlist.setVersion(wishlist.getVersion() + 1);
+			wishlist.recomputeAggregates();
+			return Optional.of(WishlistService.copyOf(wishlist));
+		});
+	}
+
+	@Test
+	void readsSeeBufferedEditsAtTheVersionTheFlushWillWrite() {
+		WishlistWriteBuffer buffer = buffer(100);
+
+		Wishlist staged = buffer.stageProductEdit("w1", "w1-p1", edit(25)).orElseThrow();
+		Wishlist read = buffer.read("w1", () -> repository.findById("w1")).orElseThrow();
+
+		for (Wishlist wishlist : new Wishlist[] {staged, read}) {
+			assertThat(wishlist.getVersion()).isEqualTo(4);
+			assertThat(wishlist.getProducts()).extracting(Product::getPrice).containsExactly(25.0, 20.0, 30.0);
+			assertThat(wishlist.getTotalPrice()).isEqualTo(75);
+		}
+		verify(repository, never()).setProductFields(anyString(), anyMap());
+
+		buffer.flush("w1");
+		assertThat(buffer.read("w1", () -> repository.findById("w1")).orElseThrow().getVersion()).isEqualTo(4);
+	}
+
+	@Test
+	void repeatedEditsToOneProductAreWrittenOnceWithTheLatestValue() {
+		WishlistWriteBuffer buffer = buffer(100);
+		buffer.stageProductEdit("w1", "w1-p1", edit(11));
+		buffer.stageProductEdit("w1", "w1-p2", edit(22));
+		buffer.stageProductEdit("w1", "w1-p1", edit(12));
+
+		buffer.flush("w1");
+
+		Map<String, Product> written = writtenEdits("w1");
+		assertThat(written).containsOnlyKeys("w1-p1", "w1-p2");
+		assertThat(written.get("w1-p1").getPrice()).isEqualTo(12);
+		assertThat(meterRegistry.counter("wishlist.write-buffer.coalesced").count()).isEqualTo(1);
+		assertThat(stored.get("w1").getVersion()).isEqualTo(4);
+	}
+
+	@Test
+	void otherWritesFlushTheBufferedEditsFirst() {
+		WishlistWriteBuffer buffer = buffer(100);
+		WishlistService service = service(buffer);
+		when(repository.pullProduct(eq("w1"), eq("w1-p3"), isNull())).thenReturn(Optional.of(wishlist("w1", 5, 12)));
+
+		service.updateProductInWishlist(stored.get("w1"), "w1-p1", edit(12));
+		verify(repository, never()).setProductFields(anyString(), anyMap());
+		service.removeProductFromWishlist(stored.get("w1"), "w1-p3");
+
+		InOrder order = inOrder(repository);
+		order.verify(repository).setProductFields(eq("w1"), anyMap());
+		order.verify(repository).pullProduct(eq("w1"), eq("w1-p3"), isNull());
+	}
+
+	@Test
+	void removingAProductThatIsGoneReturnsTheStoredWishlistNotTheCallersCopy() {
+		WishlistService service = service(buffer(100));
+		Wishlist loaded = WishlistService.copyOf(stored.get("w1"));
+		stored.get("w1").setVersion(7); // Written elsewhere since the caller loaded it
+
+		Wishlist returned = service.removeProductFromWishlist(loaded, "w1-p9").orElseThrow();
+
+		assertThat(returned.getVersion()).isEqualTo(7);
+	}
+
+	@Test
+	void theEditThatOverflowsTheBufferIsWrittenThroughWithItsBatch() {
+		WishlistWriteBuffer buffer = buffer(2);
+		buffer.stageProductEdit("w1", "w1-p1", edit(11));
+		buffer.stageProductEdit("w1", "w1-p2", edit(22));
+		verify(repository, never()).setProductFields(anyString(), anyMap());
+
+		Wishlist written = buffer.stageProductEdit("w1", "w1-p3", edit(33)).orElseThrow();
+
+		assertThat(writtenEdits("w1")).containsOnlyKeys("w1-p1", "w1-p2", "w1-p3");
+		assertThat(written.getVersion()).isEqualTo(4);
+		assertThat(written.getProducts()).extracting(Product::getPrice).containsExactly(11.0, 22.0, 33.0);
+		assertThat(meterRegistry.get("wishlist.write-buffer.pending").gauge().value()).isZero();
+		// Nothing left behind: a later flush writes nothing more
+		buffer.flush("w1");
+		verify(repository, times(1)).setProductFields(anyString(), anyMap());
+	}
+
+	@Test
+	void stopFlushesEveryPendingBatch() {
+		WishlistWriteBuffer buffer = buffer(100);
+		buffer.stageProductEdit("w1", "w1-p1", edit(11));
+		buffer.stageProductEdit("w2", "w2-p1", edit(6));
+
+		buffer.stop();
+
+		assertThat(writtenEdits("w1")).containsOnlyKeys("w1-p1");
+		assertThat(writtenEdits("w2")).containsOnlyKeys("w2-p1");
+		assertThat(stored.get("w2").getProducts().get(0).getPrice()).isEqualTo(6);
+	}
+
+	// Never started, so nothing flushes on the window; the tests flush explicitly
+	private WishlistWriteBuffer buffer(int maxPendingEdits) {
+		WishlistCache cache = new WishlistCache(eventBus, true, 1000, Duration.ofMinutes(5));
+		cache.start();
+		return new WishlistWriteBuffer(repository, eventBus, cache, meterRegistry, true, Duration.ofHours(1), maxPendingEdits);
+	}
+
+	private WishlistService service(WishlistWriteBuffer buffer) {
+		WishlistService service = new WishlistService();
+		ReflectionTestUtils.setField(service, "wishlistRepository", repository);
+		ReflectionTestUtils.setField(service, "eventBus", eventBus);
+		ReflectionTestUtils.setField(service, "writeBuffer", buffer);
+		ReflectionTestUtils.setField(service, "wishlistCache", ReflectionTestUtils.getField(buffer, "wishlistCache"));
+		return service;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Product> writtenEdits(String wishlistId) {
+		ArgumentCaptor<Map<String, Product>> edits = ArgumentCaptor.forClass(Map.class);
+		verify(repository).setProductFields(eq(wishlistId), edits.capture());
+		return edits.getValue();
+	}
+
+	private static Wishlist wishlist(String id, long version, double... prices) {
+		Wishlist wishlist = new Wishlist();
+		wishlist.setId(id);
+		wishlist.setOwnerId("owner");
+		wishlist.setVersion(version);
+		for (int i = 0; i < prices.length; i++) {
+			Product product = new Product();
+			product.setId(id + "-p" + (i + 1));
+			product.setName("Product " + (i + 1));
+			product.setPrice(prices[i]);
+			wishlist.getProducts().add(product);
+		}
+		wishlist.recomputeAggregates();
+		return wishlist;
+	}
+
+	private static Product edit(double price) {
+		Product edit = new Product();
+		edit.setName("Edited");
+		edit.setPrice(price);
+		return edit;
+	}
+}